@@ -0,0 +1,83 @@
+package com.mapzen.jpostal;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the JNI and FFM backends. The backend is fixed per process, so each parameter value runs in its own fork.
+ * Run with {@code ./gradlew jmh -PjpostalDataDir=/path/to/data}, or without it to use the data directory libpostal was built with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class BackendBenchmark {
+    private static final List<String> ADDRESSES = Arrays.asList(
+            "Barboncino 781 Franklin Ave, Crown Heights, Brooklyn, NY 11238",
+            "30 W 26th St, New York, NY 10010",
+            "Quatre-vingt-douze Ave des Champs-Élysées",
+            "Rua Augusta 1500, São Paulo, SP 01304-001",
+            "Friedrichstraße 43-45, 10117 Berlin",
+            "1600 Pennsylvania Avenue NW, Washington, DC 20500",
+            "Calle de Alcalá 23, 28014 Madrid",
+            "221B Baker Street, London NW1 6XE");
+
+    @Param({"JNI", "FFM"})
+    public Backend backend;
+
+    private AddressParser parser;
+    private AddressExpander expander;
+    private ParserOptions parserOptions;
+    private ExpanderOptions expanderOptions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Config.Builder config = Config.builder().backend(backend);
+        String dataDir = System.getProperty("jpostal.dataDir");
+        if (dataDir != null) {
+            config.dataDir(dataDir);
+        }
+        Config built = config.build();
+        parser = AddressParser.getInstanceConfig(built);
+        expander = AddressExpander.getInstanceConfig(built);
+        parserOptions = new ParserOptions.Builder().build();
+        expanderOptions = new ExpanderOptions.Builder().build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        LibPostal.close();
+    }
+
+    @Benchmark
+    public ParsedComponent[] parse() {
+        return parser.parseAddress(ADDRESSES.get(0));
+    }
+
+    @Benchmark
+    public ParsedComponent[][] parseBatch() {
+        return parser.parseAddresses(ADDRESSES, parserOptions);
+    }
+
+    @Benchmark
+    public String[] expand() {
+        return expander.expandAddress(ADDRESSES.get(0));
+    }
+
+    @Benchmark
+    public String[][] expandBatch() {
+        return expander.expandAddresses(ADDRESSES, expanderOptions);
+    }
+}
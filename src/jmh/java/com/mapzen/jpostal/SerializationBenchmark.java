@@ -0,0 +1,140 @@
+package com.mapzen.jpostal;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the serialized size and speed of a parsed address with {@link ComponentCodec}, Java serialization, Kryo
+ * with {@link KryoSerializers} and Kryo's default field serializer. Needs no libpostal data; the sizes are printed at
+ * setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+public class SerializationBenchmark {
+    private static final ParsedComponent[] ROW = {
+            new ParsedComponent("barboncino", "house"),
+            new ParsedComponent("781", "house_number"),
+            new ParsedComponent("franklin ave", "road"),
+            new ParsedComponent("crown heights", "suburb"),
+            new ParsedComponent("brooklyn", "city_district"),
+            new ParsedComponent("ny", "state"),
+            new ParsedComponent("11238", "postcode")};
+
+    private byte[] codec;
+    private ByteBuffer heap;
+    private ByteBuffer direct;
+    private byte[] java;
+    private Kryo compact;
+    private byte[] compactBytes;
+    private Kryo fields;
+    private byte[] fieldsBytes;
+    private Output output;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        codec = ComponentCodec.encode(ROW);
+        heap = ByteBuffer.wrap(codec);
+        direct = ByteBuffer.allocateDirect(codec.length);
+        direct.put(codec);
+        java = javaSerialize();
+
+        output = new Output(4096, -1);
+        compact = new Kryo();
+        KryoSerializers.register(compact);
+        compactBytes = kryoSerialize(compact);
+        fields = new Kryo();
+        fields.register(ParsedComponent.class);
+        fields.register(ParsedComponent[].class);
+        fieldsBytes = kryoSerialize(fields);
+
+        System.out.printf("%nBytes per row: codec %d, java %d, kryo %d, kryo fields %d%n",
+                codec.length, java.length, compactBytes.length, fieldsBytes.length);
+    }
+
+    @Benchmark
+    public byte[] codecEncode() {
+        return ComponentCodec.encode(ROW);
+    }
+
+    @Benchmark
+    public ParsedComponent[] codecDecodeHeap() {
+        heap.rewind();
+        return ComponentCodec.decode(heap);
+    }
+
+    @Benchmark
+    public ParsedComponent[] codecDecodeDirect() {
+        direct.rewind();
+        return ComponentCodec.decode(direct);
+    }
+
+    @Benchmark
+    public byte[] javaSerialize() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(ROW);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    public Object javaDeserialize() {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(java))) {
+            return in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public byte[] kryoSerialize() {
+        return kryoSerialize(compact);
+    }
+
+    @Benchmark
+    public ParsedComponent[] kryoDeserialize() {
+        return compact.readObject(new Input(compactBytes), ParsedComponent[].class);
+    }
+
+    @Benchmark
+    public byte[] kryoFieldsSerialize() {
+        return kryoSerialize(fields);
+    }
+
+    @Benchmark
+    public ParsedComponent[] kryoFieldsDeserialize() {
+        return fields.readObject(new Input(fieldsBytes), ParsedComponent[].class);
+    }
+
+    private byte[] kryoSerialize(final Kryo kryo) {
+        output.clear();
+        kryo.writeObject(output, ROW);
+        return output.toBytes();
+    }
+}
@@ -3,6 +3,8 @@
 #include <jni.h>
 #include <libpostal/libpostal.h>
 
+#include "jpostal_expander.h"
+
 JNIEXPORT void JNICALL Java_com_mapzen_jpostal_AddressExpander_setup
   (JNIEnv *env, jclass cls) {
 
@@ -25,21 +27,16 @@ JNIEXPORT void JNICALL Java_com_mapzen_jpostal_AddressExpander_setupDataDir
     }
 }
 
-JNIEXPORT jobjectArray JNICALL Java_com_mapzen_jpostal_AddressExpander_libpostalExpand
-  (JNIEnv *env, jclass cls, jbyteArray jAddress, jobject jOptions) {
-    jbyte* addressElements = (*env)->GetByteArrayElements(env, jAddress, NULL);
-    jsize size = (*env)->GetArrayLength(env, jAddress);
-    char address[size + 1];
-
-    for (size_t z = 0; z < size; z++) {
-        address[z] = addressElements[z];
-    }
-    (*env) -> ReleaseByteArrayElements(env, jAddress, addressElements, 0);
-
-    address[size] = '\0';
+static void throw_out_of_memory(JNIEnv *env) {
+    jclass exceptionClass = (*env)->FindClass(env, "java/lang/OutOfMemoryError");
+    if (exceptionClass == NULL) return;
+    (*env)->ThrowNew(env, exceptionClass, "Could not copy arguments for libpostal");
+}
 
-    size_t num_expansions = 0;
-    libpostal_normalize_options_t options = libpostal_get_default_options();
+// Reads an ExpanderOptions object once, so that a batch pays for the field lookups and string copies only once.
+int jpostal_expander_call_init(JNIEnv *env, jobject jOptions, expander_call_t *call) {
+    memset(call, 0, sizeof(expander_call_t));
+    call->options = libpostal_get_default_options();
 
     jfieldID fid;
 
@@ -47,207 +44,533 @@ JNIEXPORT jobjectArray JNICALL Java_com_mapzen_jpostal_AddressExpander_libpostal
 
     fid = (*env)->GetFieldID(env, optionsCls, "languages", "[Ljava/lang/String;");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
     jobject jLanguages = (*env)->GetObjectField(env, jOptions, fid);
 
-    size_t num_languages = 0;
-    char **languages = NULL;
-    int i;
-
     if (jLanguages != NULL) {
         jsize jNumLanguages = (*env)->GetArrayLength(env, jLanguages);
 
-        languages = malloc(sizeof(char *) * jNumLanguages);
-        jboolean is_copy = JNI_FALSE;
-
-        num_languages = (size_t)jNumLanguages;
+        // Zeroed, so that the destroy function can free a partially copied array.
+        call->languages = calloc(jNumLanguages > 0 ? jNumLanguages : 1, sizeof(char *));
+        if (call->languages == NULL) {
+            throw_out_of_memory(env);
+            return 0;
+        }
+        call->num_languages = (size_t)jNumLanguages;
 
-        for (i = 0; i < jNumLanguages; i++) {
+        for (jsize i = 0; i < jNumLanguages; i++) {
             jstring jLanguage = (*env)->GetObjectArrayElement(env, jLanguages, i);
-            
-            const char *lang = (*env)->GetStringUTFChars(env, jLanguage, &is_copy);
 
-            char *language = strdup(lang);
-            languages[i] = language;
+            // A NULL result leaves an OutOfMemoryError pending.
+            const char *lang = (*env)->GetStringUTFChars(env, jLanguage, NULL);
+            if (lang == NULL) {
+                (*env)->DeleteLocalRef(env, jLanguage);
+                return 0;
+            }
+            call->languages[i] = strdup(lang);
 
             (*env)->ReleaseStringUTFChars(env, jLanguage, lang);
+            (*env)->DeleteLocalRef(env, jLanguage);
+            if (call->languages[i] == NULL) {
+                throw_out_of_memory(env);
+                return 0;
+            }
         }
-        options.languages = languages;
-        options.num_languages = num_languages;
+        call->options.languages = call->languages;
+        call->options.num_languages = call->num_languages;
     }
 
 
     fid = (*env)->GetFieldID(env, optionsCls, "addressComponents", "S");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.address_components = (uint16_t) (*env)->GetShortField(env, jOptions, fid);
+    call->options.address_components = (uint16_t) (*env)->GetShortField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "latinAscii", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.latin_ascii = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.latin_ascii = (*env)->GetBooleanField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "transliterate", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.transliterate = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.transliterate = (*env)->GetBooleanField(env, jOptions, fid);
 
 
     fid = (*env)->GetFieldID(env, optionsCls, "stripAccents", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.strip_accents = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.strip_accents = (*env)->GetBooleanField(env, jOptions, fid);
 
 
     fid = (*env)->GetFieldID(env, optionsCls, "decompose", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.decompose = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.decompose = (*env)->GetBooleanField(env, jOptions, fid);
 
 
     fid = (*env)->GetFieldID(env, optionsCls, "lowercase", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.lowercase = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.lowercase = (*env)->GetBooleanField(env, jOptions, fid);
 
 
     fid = (*env)->GetFieldID(env, optionsCls, "trimString", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.trim_string = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.trim_string = (*env)->GetBooleanField(env, jOptions, fid);
 
 
     fid = (*env)->GetFieldID(env, optionsCls, "dropParentheticals", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.drop_parentheticals = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.drop_parentheticals = (*env)->GetBooleanField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "replaceNumericHyphens", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.replace_numeric_hyphens = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.replace_numeric_hyphens = (*env)->GetBooleanField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "deleteNumericHyphens", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.delete_numeric_hyphens = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.delete_numeric_hyphens = (*env)->GetBooleanField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "splitAlphaFromNumeric", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.split_alpha_from_numeric = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.split_alpha_from_numeric = (*env)->GetBooleanField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "replaceWordHyphens", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.replace_word_hyphens = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.replace_word_hyphens = (*env)->GetBooleanField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "deleteWordHyphens", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.delete_word_hyphens = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.delete_word_hyphens = (*env)->GetBooleanField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "deleteFinalPeriods", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.delete_final_periods = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.delete_final_periods = (*env)->GetBooleanField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "deleteAcronymPeriods", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.delete_acronym_periods = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.delete_acronym_periods = (*env)->GetBooleanField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "dropEnglishPossessives", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.drop_english_possessives = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.drop_english_possessives = (*env)->GetBooleanField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "deleteApostrophes", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.delete_apostrophes = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.delete_apostrophes = (*env)->GetBooleanField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "expandNumex", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.expand_numex = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.expand_numex = (*env)->GetBooleanField(env, jOptions, fid);
 
     fid = (*env)->GetFieldID(env, optionsCls, "romanNumerals", "Z");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    options.roman_numerals = (*env)->GetBooleanField(env, jOptions, fid);
+    call->options.roman_numerals = (*env)->GetBooleanField(env, jOptions, fid);
 
-    char **expansions = libpostal_expand_address((char *)address, options, &num_expansions);
+    return 1;
+}
 
+void jpostal_expander_call_destroy(expander_call_t *call) {
+    if (call->languages != NULL) {
+        for (size_t i = 0; i < call->num_languages; i++) {
+            free(call->languages[i]);
+        }
+        free(call->languages);
+    }
+}
+
+// Copies a Java byte[] into a NUL-terminated string owned by the caller.
+static char *copy_address(JNIEnv *env, jbyteArray jAddress) {
+    jsize size = (*env)->GetArrayLength(env, jAddress);
+    char *address = malloc(size + 1);
+    if (address == NULL) {
+        return NULL;
+    }
+    (*env)->GetByteArrayRegion(env, jAddress, 0, size, (jbyte *)address);
+    address[size] = '\0';
+    return address;
+}
+
+jobjectArray jpostal_expand_to_bytes(JNIEnv *env, char *address, expander_call_t *call, jclass byteArrayClass) {
+    size_t num_expansions = 0;
+    char **expansions = libpostal_expand_address(address, call->options, &num_expansions);
 
     jobjectArray ret = (jobjectArray)(*env)->NewObjectArray(env,
                                                             num_expansions,
-                                                            (*env)->FindClass(env, "[B"),
-                                                            (*env)->NewStringUTF(env, ""));
+                                                            byteArrayClass,
+                                                            NULL);
 
-    if (num_expansions > 0) {
+    if (ret != NULL && num_expansions > 0) {
         for (size_t i = 0; i < num_expansions; i++) {
-            jbyteArray bytes = (*env)->NewByteArray(env,strlen(expansions[i]));
-            (*env)->SetByteArrayRegion(env, bytes, 0, strlen(expansions[i]), (jbyte*) expansions[i]);
+            size_t len = strlen(expansions[i]);
+            jbyteArray bytes = (*env)->NewByteArray(env, len);
+            (*env)->SetByteArrayRegion(env, bytes, 0, len, (jbyte*) expansions[i]);
             (*env)->SetObjectArrayElement(env, ret, i, bytes);
+            (*env)->DeleteLocalRef(env, bytes);
+        }
+    }
+
+    if (expansions != NULL) {
+        libpostal_expansion_array_destroy(expansions, num_expansions);
+    }
+
+    return ret;
+}
+
+// xxHash64 of the expansions, matching com.mapzen.jpostal.XxHash64, so that callers which only use expansions as join
+// keys get them without a byte[] and a String per expansion.
+#define XXH_PRIME64_1 0x9E3779B185EBCA87ULL
+#define XXH_PRIME64_2 0xC2B2AE3D27D4EB4FULL
+#define XXH_PRIME64_3 0x165667B19E3779F9ULL
+#define XXH_PRIME64_4 0x85EBCA77C2B2AE63ULL
+#define XXH_PRIME64_5 0x27D4EB2F165667C5ULL
+
+static inline uint64_t xxh64_rotl(uint64_t x, int r) {
+    return (x << r) | (x >> (64 - r));
+}
+
+static inline uint64_t xxh64_read64(const unsigned char *p) {
+    return (uint64_t)p[0] | (uint64_t)p[1] << 8 | (uint64_t)p[2] << 16 | (uint64_t)p[3] << 24
+        | (uint64_t)p[4] << 32 | (uint64_t)p[5] << 40 | (uint64_t)p[6] << 48 | (uint64_t)p[7] << 56;
+}
+
+static inline uint64_t xxh64_read32(const unsigned char *p) {
+    return (uint64_t)p[0] | (uint64_t)p[1] << 8 | (uint64_t)p[2] << 16 | (uint64_t)p[3] << 24;
+}
+
+static inline uint64_t xxh64_round(uint64_t acc, uint64_t input) {
+    acc += input * XXH_PRIME64_2;
+    acc = xxh64_rotl(acc, 31);
+    return acc * XXH_PRIME64_1;
+}
+
+static inline uint64_t xxh64_merge_round(uint64_t acc, uint64_t value) {
+    acc ^= xxh64_round(0, value);
+    return acc * XXH_PRIME64_1 + XXH_PRIME64_4;
+}
+
+static uint64_t xxh64(const char *input, size_t len, uint64_t seed) {
+    const unsigned char *p = (const unsigned char *)input;
+    const unsigned char *end = p + len;
+    uint64_t h;
+
+    if (len >= 32) {
+        uint64_t v1 = seed + XXH_PRIME64_1 + XXH_PRIME64_2;
+        uint64_t v2 = seed + XXH_PRIME64_2;
+        uint64_t v3 = seed;
+        uint64_t v4 = seed - XXH_PRIME64_1;
+        do {
+            v1 = xxh64_round(v1, xxh64_read64(p));
+            v2 = xxh64_round(v2, xxh64_read64(p + 8));
+            v3 = xxh64_round(v3, xxh64_read64(p + 16));
+            v4 = xxh64_round(v4, xxh64_read64(p + 24));
+            p += 32;
+        } while (p <= end - 32);
+
+        h = xxh64_rotl(v1, 1) + xxh64_rotl(v2, 7) + xxh64_rotl(v3, 12) + xxh64_rotl(v4, 18);
+        h = xxh64_merge_round(h, v1);
+        h = xxh64_merge_round(h, v2);
+        h = xxh64_merge_round(h, v3);
+        h = xxh64_merge_round(h, v4);
+    } else {
+        h = seed + XXH_PRIME64_5;
+    }
+
+    h += (uint64_t)len;
+
+    while (end - p >= 8) {
+        h ^= xxh64_round(0, xxh64_read64(p));
+        h = xxh64_rotl(h, 27) * XXH_PRIME64_1 + XXH_PRIME64_4;
+        p += 8;
+    }
+    if (end - p >= 4) {
+        h ^= xxh64_read32(p) * XXH_PRIME64_1;
+        h = xxh64_rotl(h, 23) * XXH_PRIME64_2 + XXH_PRIME64_3;
+        p += 4;
+    }
+    while (p < end) {
+        h ^= (uint64_t)(*p) * XXH_PRIME64_5;
+        h = xxh64_rotl(h, 11) * XXH_PRIME64_1;
+        p++;
+    }
+
+    h ^= h >> 33;
+    h *= XXH_PRIME64_2;
+    h ^= h >> 29;
+    h *= XXH_PRIME64_3;
+    h ^= h >> 32;
+    return h;
+}
+
+static int compare_hashes(const void *a, const void *b) {
+    jlong x = *(const jlong *)a;
+    jlong y = *(const jlong *)b;
+    return (x > y) - (x < y);
+}
+
+// Hashes each space-separated token of the expansions and returns the distinct hashes in ascending order.
+static size_t hash_tokens(char **expansions, size_t num_expansions, jlong *hashes) {
+    size_t n = 0;
+    for (size_t i = 0; i < num_expansions; i++) {
+        const char *token = expansions[i];
+        for (const char *p = expansions[i]; ; p++) {
+            if (*p == ' ' || *p == '\0') {
+                if (p > token) {
+                    hashes[n++] = (jlong)xxh64(token, p - token, 0);
+                }
+                if (*p == '\0') {
+                    break;
+                }
+                token = p + 1;
+            }
+        }
+    }
+    if (n == 0) {
+        return 0;
+    }
+    qsort(hashes, n, sizeof(jlong), compare_hashes);
+    size_t distinct = 1;
+    for (size_t i = 1; i < n; i++) {
+        if (hashes[i] != hashes[distinct - 1]) {
+            hashes[distinct++] = hashes[i];
         }
+    }
+    return distinct;
+}
+
+// The hash of each expansion or, with tokens set, the distinct hashes of the tokens of all expansions.
+static jlongArray expand_to_hashes(JNIEnv *env, char *address, expander_call_t *call, int tokens) {
+    size_t num_expansions = 0;
+    char **expansions = libpostal_expand_address(address, call->options, &num_expansions);
 
+    size_t capacity = num_expansions;
+    if (tokens) {
+        for (size_t i = 0; i < num_expansions; i++) {
+            for (const char *p = expansions[i]; *p != '\0'; p++) {
+                if (*p == ' ') {
+                    capacity++;
+                }
+            }
+        }
+    }
+
+    jlongArray ret = NULL;
+    jlong *hashes = malloc(sizeof(jlong) * (capacity > 0 ? capacity : 1));
+    if (hashes == NULL) {
+        throw_out_of_memory(env);
+    } else {
+        size_t num_hashes = num_expansions;
+        if (tokens) {
+            num_hashes = hash_tokens(expansions, num_expansions, hashes);
+        } else {
+            for (size_t i = 0; i < num_expansions; i++) {
+                hashes[i] = (jlong)xxh64(expansions[i], strlen(expansions[i]), 0);
+            }
+        }
+        ret = (*env)->NewLongArray(env, num_hashes);
+        if (ret != NULL && num_hashes > 0) {
+            (*env)->SetLongArrayRegion(env, ret, 0, num_hashes, hashes);
+        }
+        free(hashes);
     }
 
     if (expansions != NULL) {
         libpostal_expansion_array_destroy(expansions, num_expansions);
     }
 
-    if (languages != NULL) {
-        for (i = 0; i < num_languages; i++) {
-            free(languages[i]);
+    return ret;
+}
+
+JNIEXPORT jobjectArray JNICALL Java_com_mapzen_jpostal_AddressExpander_libpostalExpand
+  (JNIEnv *env, jclass cls, jbyteArray jAddress, jobject jOptions) {
+    expander_call_t call;
+    jobjectArray ret = NULL;
+
+    if (jpostal_expander_call_init(env, jOptions, &call)) {
+        jclass byteArrayClass = (*env)->FindClass(env, "[B");
+        char *address = copy_address(env, jAddress);
+        if (address == NULL) {
+            throw_out_of_memory(env);
+        } else if (byteArrayClass != NULL) {
+            ret = jpostal_expand_to_bytes(env, address, &call, byteArrayClass);
         }
-        free(languages);
+        free(address);
     }
 
+    jpostal_expander_call_destroy(&call);
     return ret;
 }
 
+JNIEXPORT jobjectArray JNICALL Java_com_mapzen_jpostal_AddressExpander_libpostalExpandBatch
+  (JNIEnv *env, jclass cls, jobjectArray jAddresses, jobject jOptions) {
+    expander_call_t call;
+    jobjectArray ret = NULL;
+
+    if (jpostal_expander_call_init(env, jOptions, &call)) {
+        jsize num_addresses = (*env)->GetArrayLength(env, jAddresses);
+        jclass byteArrayClass = (*env)->FindClass(env, "[B");
+        jclass rowClass = (*env)->FindClass(env, "[[B");
+        if (byteArrayClass != NULL && rowClass != NULL) {
+            ret = (*env)->NewObjectArray(env, num_addresses, rowClass, NULL);
+        }
+
+        for (jsize i = 0; ret != NULL && i < num_addresses; i++) {
+            // Each row gets its own local frame so that a large batch does not exhaust the local reference table.
+            if ((*env)->PushLocalFrame(env, 16) != 0) {
+                ret = NULL;
+                break;
+            }
+            jbyteArray jAddress = (jbyteArray)(*env)->GetObjectArrayElement(env, jAddresses, i);
+            char *address = copy_address(env, jAddress);
+            if (address == NULL) {
+                (*env)->PopLocalFrame(env, NULL);
+                throw_out_of_memory(env);
+                ret = NULL;
+                break;
+            }
+            jobjectArray row = jpostal_expand_to_bytes(env, address, &call, byteArrayClass);
+            free(address);
+            row = (jobjectArray)(*env)->PopLocalFrame(env, row);
+            if (row == NULL) {
+                ret = NULL;
+                break;
+            }
+            (*env)->SetObjectArrayElement(env, ret, i, row);
+            (*env)->DeleteLocalRef(env, row);
+        }
+    }
+
+    jpostal_expander_call_destroy(&call);
+    return ret;
+}
+
+static jlongArray expand_hashes_call(JNIEnv *env, jbyteArray jAddress, jobject jOptions, int tokens) {
+    expander_call_t call;
+    jlongArray ret = NULL;
+
+    if (jpostal_expander_call_init(env, jOptions, &call)) {
+        char *address = copy_address(env, jAddress);
+        if (address == NULL) {
+            throw_out_of_memory(env);
+        } else {
+            ret = expand_to_hashes(env, address, &call, tokens);
+        }
+        free(address);
+    }
+
+    jpostal_expander_call_destroy(&call);
+    return ret;
+}
+
+static jobjectArray expand_hashes_batch_call(JNIEnv *env, jobjectArray jAddresses, jobject jOptions, int tokens) {
+    expander_call_t call;
+    jobjectArray ret = NULL;
+
+    if (jpostal_expander_call_init(env, jOptions, &call)) {
+        jsize num_addresses = (*env)->GetArrayLength(env, jAddresses);
+        jclass rowClass = (*env)->FindClass(env, "[J");
+        if (rowClass != NULL) {
+            ret = (*env)->NewObjectArray(env, num_addresses, rowClass, NULL);
+        }
+
+        for (jsize i = 0; ret != NULL && i < num_addresses; i++) {
+            jbyteArray jAddress = (jbyteArray)(*env)->GetObjectArrayElement(env, jAddresses, i);
+            char *address = copy_address(env, jAddress);
+            (*env)->DeleteLocalRef(env, jAddress);
+            if (address == NULL) {
+                throw_out_of_memory(env);
+                ret = NULL;
+                break;
+            }
+            jlongArray row = expand_to_hashes(env, address, &call, tokens);
+            free(address);
+            if (row == NULL) {
+                ret = NULL;
+                break;
+            }
+            (*env)->SetObjectArrayElement(env, ret, i, row);
+            (*env)->DeleteLocalRef(env, row);
+        }
+    }
+
+    jpostal_expander_call_destroy(&call);
+    return ret;
+}
+
+JNIEXPORT jlongArray JNICALL Java_com_mapzen_jpostal_AddressExpander_libpostalExpandHashes
+  (JNIEnv *env, jclass cls, jbyteArray jAddress, jobject jOptions) {
+    return expand_hashes_call(env, jAddress, jOptions, 0);
+}
+
+JNIEXPORT jobjectArray JNICALL Java_com_mapzen_jpostal_AddressExpander_libpostalExpandHashesBatch
+  (JNIEnv *env, jclass cls, jobjectArray jAddresses, jobject jOptions) {
+    return expand_hashes_batch_call(env, jAddresses, jOptions, 0);
+}
+
+JNIEXPORT jlongArray JNICALL Java_com_mapzen_jpostal_AddressExpander_libpostalExpandTokenHashes
+  (JNIEnv *env, jclass cls, jbyteArray jAddress, jobject jOptions) {
+    return expand_hashes_call(env, jAddress, jOptions, 1);
+}
+
+JNIEXPORT jobjectArray JNICALL Java_com_mapzen_jpostal_AddressExpander_libpostalExpandTokenHashesBatch
+  (JNIEnv *env, jclass cls, jobjectArray jAddresses, jobject jOptions) {
+    return expand_hashes_batch_call(env, jAddresses, jOptions, 1);
+}
+
 JNIEXPORT void JNICALL Java_com_mapzen_jpostal_AddressExpander_teardown
   (JNIEnv *env, jclass cls) {
     libpostal_teardown_language_classifier();
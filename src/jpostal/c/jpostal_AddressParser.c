@@ -1,7 +1,22 @@
 #include <jni.h>
 #include <libpostal/libpostal.h>
+#include <stdlib.h>
 #include <string.h>
 
+#include "jpostal_expander.h"
+
+static int label_selected(const char *label, char **labels, size_t num_labels) {
+    if (labels == NULL) {
+        return 1;
+    }
+    for (size_t i = 0; i < num_labels; i++) {
+        if (strcmp(label, labels[i]) == 0) {
+            return 1;
+        }
+    }
+    return 0;
+}
+
 JNIEXPORT void JNICALL Java_com_mapzen_jpostal_AddressParser_setup
   (JNIEnv *env, jclass cls) {
 
@@ -24,83 +39,167 @@ JNIEXPORT void JNICALL Java_com_mapzen_jpostal_AddressParser_setupDataDir
     }    
 }
 
-JNIEXPORT jobjectArray JNICALL Java_com_mapzen_jpostal_AddressParser_libpostalParse
-  (JNIEnv *env, jobject thisObj, jbyteArray jAddress, jobject jOptions) {
-    
-    jbyte* addressElements = (*env)->GetByteArrayElements(env, jAddress, NULL);
-    jsize size = (*env)->GetArrayLength(env, jAddress);
-    char address[size + 1];
-
-    for (int i = 0; i < size; ++i) {
-        address[i] = addressElements[i];
-    }
-    (*env) -> ReleaseByteArrayElements(env, jAddress, addressElements, 0);
-
-    address[size] = '\0';
-
+static void throw_out_of_memory(JNIEnv *env) {
+    jclass exceptionClass = (*env)->FindClass(env, "java/lang/OutOfMemoryError");
+    if (exceptionClass == NULL) return;
+    (*env)->ThrowNew(env, exceptionClass, "Could not copy arguments for libpostal");
+}
 
-    libpostal_address_parser_options_t options = libpostal_get_address_parser_default_options();
+typedef struct {
+    libpostal_address_parser_options_t options;
+    jstring jLanguage;
+    jstring jCountry;
+    char **labels;
+    size_t num_labels;
+    jclass parsedComponentClass;
+    jmethodID parsedComponentInit;
+} parser_call_t;
+
+// Reads a ParserOptions object once, so that a batch pays for the field lookups and string copies only once.
+static int parser_call_init(JNIEnv *env, jobject jOptions, parser_call_t *call) {
+    memset(call, 0, sizeof(parser_call_t));
+    call->options = libpostal_get_address_parser_default_options();
 
     jfieldID fid;
- 
+
     jclass optionsCls = (*env)->GetObjectClass(env, jOptions);
 
     fid = (*env)->GetFieldID(env, optionsCls, "language", "Ljava/lang/String;");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    jstring jLanguage = (*env)->GetObjectField(env, jOptions, fid);
+    call->jLanguage = (*env)->GetObjectField(env, jOptions, fid);
 
-    if (jLanguage != NULL) {
-        options.language = (char *)(*env)->GetStringUTFChars(env, jLanguage, 0);
+    if (call->jLanguage != NULL) {
+        // A NULL result leaves an OutOfMemoryError pending.
+        call->options.language = (char *)(*env)->GetStringUTFChars(env, call->jLanguage, 0);
+        if (call->options.language == NULL) {
+            return 0;
+        }
     }
 
     fid = (*env)->GetFieldID(env, optionsCls, "country", "Ljava/lang/String;");
     if (fid == 0) {
-        return NULL;
+        return 0;
     }
 
-    jstring jCountry = (*env)->GetObjectField(env, jOptions, fid);
+    call->jCountry = (*env)->GetObjectField(env, jOptions, fid);
 
-    if (jCountry != NULL) {
-        options.country = (char *)(*env)->GetStringUTFChars(env, jCountry, 0);
+    if (call->jCountry != NULL) {
+        call->options.country = (char *)(*env)->GetStringUTFChars(env, call->jCountry, 0);
+        if (call->options.country == NULL) {
+            return 0;
+        }
+    }
+
+    fid = (*env)->GetFieldID(env, optionsCls, "labels", "[Ljava/lang/String;");
+    if (fid == 0) {
+        return 0;
+    }
+
+    jobjectArray jLabels = (jobjectArray)(*env)->GetObjectField(env, jOptions, fid);
+
+    if (jLabels != NULL) {
+        jsize jNumLabels = (*env)->GetArrayLength(env, jLabels);
+
+        // Zeroed, so that parser_call_destroy can free a partially copied array.
+        call->labels = calloc(jNumLabels > 0 ? jNumLabels : 1, sizeof(char *));
+        if (call->labels == NULL) {
+            throw_out_of_memory(env);
+            return 0;
+        }
+        call->num_labels = (size_t)jNumLabels;
+
+        for (size_t j = 0; j < call->num_labels; j++) {
+            jstring jLabel = (*env)->GetObjectArrayElement(env, jLabels, j);
+
+            const char *label = (*env)->GetStringUTFChars(env, jLabel, NULL);
+            if (label == NULL) {
+                (*env)->DeleteLocalRef(env, jLabel);
+                return 0;
+            }
+            call->labels[j] = strdup(label);
+            (*env)->ReleaseStringUTFChars(env, jLabel, label);
+            (*env)->DeleteLocalRef(env, jLabel);
+            if (call->labels[j] == NULL) {
+                throw_out_of_memory(env);
+                return 0;
+            }
+        }
     }
 
-    libpostal_address_parser_response_t *response = libpostal_parse_address((char *)address, options);
+    call->parsedComponentClass = (*env)->FindClass(env, "com/mapzen/jpostal/ParsedComponent");
+    if (call->parsedComponentClass == NULL) {
+        return 0;
+    }
+    call->parsedComponentInit = (*env)->GetMethodID(env, call->parsedComponentClass, "<init>", "([BLjava/lang/String;)V");
+    return call->parsedComponentInit != NULL;
+}
 
-    if (jLanguage != NULL) {
-        (*env)->ReleaseStringUTFChars(env, jLanguage, 0);
+static void parser_call_destroy(JNIEnv *env, parser_call_t *call) {
+    if (call->jLanguage != NULL && call->options.language != NULL) {
+        (*env)->ReleaseStringUTFChars(env, call->jLanguage, call->options.language);
     }
 
-    if (jCountry != NULL) {
-        (*env)->ReleaseStringUTFChars(env, jCountry, 0);
+    if (call->jCountry != NULL && call->options.country != NULL) {
+        (*env)->ReleaseStringUTFChars(env, call->jCountry, call->options.country);
     }
 
-    jmethodID mid;
+    if (call->labels != NULL) {
+        for (size_t j = 0; j < call->num_labels; j++) {
+            free(call->labels[j]);
+        }
+        free(call->labels);
+    }
+}
+
+// Copies a Java byte[] into a NUL-terminated string owned by the caller.
+static char *copy_address(JNIEnv *env, jbyteArray jAddress) {
+    jsize size = (*env)->GetArrayLength(env, jAddress);
+    char *address = malloc(size + 1);
+    if (address == NULL) {
+        return NULL;
+    }
+    (*env)->GetByteArrayRegion(env, jAddress, 0, size, (jbyte *)address);
+    address[size] = '\0';
+    return address;
+}
 
-    jclass parsedComponentClass = (*env)->FindClass(env, "com/mapzen/jpostal/ParsedComponent");
-    mid = (*env)->GetMethodID(env, parsedComponentClass, "<init>", "([BLjava/lang/String;)V");
+static jobjectArray parse_components(JNIEnv *env, char *address, parser_call_t *call) {
+    libpostal_address_parser_response_t *response = libpostal_parse_address(address, call->options);
 
     size_t num_components = response != NULL ? response->num_components : 0;
 
+    // Only components whose label was requested are materialized as Java objects.
+    size_t num_selected = 0;
+    for (size_t i = 0; i < num_components; i++) {
+        if (label_selected(response->labels[i], call->labels, call->num_labels)) {
+            num_selected++;
+        }
+    }
+
     jobjectArray ret = (*env)->NewObjectArray(env,
-                                              num_components,
-                                              parsedComponentClass,
+                                              num_selected,
+                                              call->parsedComponentClass,
                                               NULL);
 
-    if (num_components > 0) {
+    if (ret != NULL && num_selected > 0) {
+        size_t j = 0;
         for (size_t i = 0; i < num_components; i++) {
+            if (!label_selected(response->labels[i], call->labels, call->num_labels)) {
+                continue;
+            }
+            size_t len = strlen(response->components[i]);
             jstring jLabel = (*env)->NewStringUTF(env, response->labels[i]);
-            jbyteArray bytes = (*env)->NewByteArray(env,strlen(response->components[i]));
-            (*env)->SetByteArrayRegion(env, bytes, 0, strlen(response->components[i]), (jbyte*) response->components[i]);
-            jobject jParsedComponent = (*env)->NewObject(env, parsedComponentClass, mid, bytes, jLabel);
-            (*env)->SetObjectArrayElement(env, ret, i, jParsedComponent);
-
-            // // These might be necessary to help ensure we're not leaking memory in the cluster.
-            // (*env)->DeleteLocalRef(env, bytes);
-            // (*env)->DeleteLocalRef(env, jLabel);
-            // (*env)->DeleteLocalRef(env, jParsedComponent);
+            jbyteArray bytes = (*env)->NewByteArray(env, len);
+            (*env)->SetByteArrayRegion(env, bytes, 0, len, (jbyte*) response->components[i]);
+            jobject jParsedComponent = (*env)->NewObject(env, call->parsedComponentClass, call->parsedComponentInit, bytes, jLabel);
+            (*env)->SetObjectArrayElement(env, ret, j++, jParsedComponent);
+
+            (*env)->DeleteLocalRef(env, bytes);
+            (*env)->DeleteLocalRef(env, jLabel);
+            (*env)->DeleteLocalRef(env, jParsedComponent);
         }
     }
 
@@ -109,9 +208,161 @@ JNIEXPORT jobjectArray JNICALL Java_com_mapzen_jpostal_AddressParser_libpostalPa
     }
 
     return ret;
+}
+
+JNIEXPORT jobjectArray JNICALL Java_com_mapzen_jpostal_AddressParser_libpostalParse
+  (JNIEnv *env, jclass cls, jbyteArray jAddress, jobject jOptions) {
+
+    parser_call_t call;
+    jobjectArray ret = NULL;
+
+    if (parser_call_init(env, jOptions, &call)) {
+        char *address = copy_address(env, jAddress);
+        if (address == NULL) {
+            throw_out_of_memory(env);
+        } else {
+            ret = parse_components(env, address, &call);
+            free(address);
+        }
+    }
+
+    parser_call_destroy(env, &call);
+    return ret;
+}
+
+JNIEXPORT jobjectArray JNICALL Java_com_mapzen_jpostal_AddressParser_libpostalParseBatch
+  (JNIEnv *env, jclass cls, jobjectArray jAddresses, jobject jOptions) {
+
+    parser_call_t call;
+    jobjectArray ret = NULL;
+
+    if (parser_call_init(env, jOptions, &call)) {
+        jsize num_addresses = (*env)->GetArrayLength(env, jAddresses);
+        jclass rowClass = (*env)->FindClass(env, "[Lcom/mapzen/jpostal/ParsedComponent;");
+        if (rowClass != NULL) {
+            ret = (*env)->NewObjectArray(env, num_addresses, rowClass, NULL);
+        }
+
+        for (jsize i = 0; ret != NULL && i < num_addresses; i++) {
+            // Each row gets its own local frame so that a large batch does not exhaust the local reference table.
+            if ((*env)->PushLocalFrame(env, 16) != 0) {
+                ret = NULL;
+                break;
+            }
+            jbyteArray jAddress = (jbyteArray)(*env)->GetObjectArrayElement(env, jAddresses, i);
+            char *address = copy_address(env, jAddress);
+            if (address == NULL) {
+                (*env)->PopLocalFrame(env, NULL);
+                throw_out_of_memory(env);
+                ret = NULL;
+                break;
+            }
+            jobjectArray row = parse_components(env, address, &call);
+            free(address);
+            row = (jobjectArray)(*env)->PopLocalFrame(env, row);
+            if (row == NULL) {
+                ret = NULL;
+                break;
+            }
+            (*env)->SetObjectArrayElement(env, ret, i, row);
+            (*env)->DeleteLocalRef(env, row);
+        }
+    }
+
+    parser_call_destroy(env, &call);
+    return ret;
+}
 
+// The address components whose expansion rules apply to a parser label.
+static uint16_t component_mask(const char *label) {
+    if (strcmp(label, "house_number") == 0) return LIBPOSTAL_ADDRESS_HOUSE_NUMBER;
+    if (strcmp(label, "road") == 0) return LIBPOSTAL_ADDRESS_STREET;
+    if (strcmp(label, "house") == 0) return LIBPOSTAL_ADDRESS_NAME;
+    if (strcmp(label, "unit") == 0) return LIBPOSTAL_ADDRESS_UNIT;
+    if (strcmp(label, "level") == 0) return LIBPOSTAL_ADDRESS_LEVEL;
+    if (strcmp(label, "staircase") == 0) return LIBPOSTAL_ADDRESS_STAIRCASE;
+    if (strcmp(label, "entrance") == 0) return LIBPOSTAL_ADDRESS_ENTRANCE;
+    if (strcmp(label, "category") == 0) return LIBPOSTAL_ADDRESS_CATEGORY;
+    if (strcmp(label, "near") == 0) return LIBPOSTAL_ADDRESS_NEAR;
+    if (strcmp(label, "po_box") == 0) return LIBPOSTAL_ADDRESS_PO_BOX;
+    if (strcmp(label, "postcode") == 0) return LIBPOSTAL_ADDRESS_POSTAL_CODE;
+    if (strcmp(label, "suburb") == 0 || strcmp(label, "city_district") == 0 || strcmp(label, "city") == 0
+            || strcmp(label, "island") == 0 || strcmp(label, "state_district") == 0 || strcmp(label, "state") == 0
+            || strcmp(label, "country_region") == 0 || strcmp(label, "country") == 0
+            || strcmp(label, "world_region") == 0) {
+        return LIBPOSTAL_ADDRESS_TOPONYM;
+    }
+    return LIBPOSTAL_ADDRESS_ANY;
 }
 
+// Parses the address and expands each selected component with the rules of its label, in one call.
+JNIEXPORT jobjectArray JNICALL Java_com_mapzen_jpostal_AddressParser_libpostalParseAndExpand
+  (JNIEnv *env, jclass cls, jbyteArray jAddress, jobject jParserOptions, jobject jExpanderOptions) {
+
+    parser_call_t call;
+    expander_call_t expander;
+    jobjectArray ret = NULL;
+    memset(&expander, 0, sizeof(expander_call_t));
+
+    if (parser_call_init(env, jParserOptions, &call) && jpostal_expander_call_init(env, jExpanderOptions, &expander)) {
+        jclass byteArrayClass = (*env)->FindClass(env, "[B");
+        jclass componentClass = (*env)->FindClass(env, "com/mapzen/jpostal/ExpandedComponent");
+        jmethodID componentInit = componentClass == NULL ? NULL
+            : (*env)->GetMethodID(env, componentClass, "<init>", "([BLjava/lang/String;[[B)V");
+        char *address = componentInit == NULL || byteArrayClass == NULL ? NULL : copy_address(env, jAddress);
+
+        if (componentInit != NULL && byteArrayClass != NULL && address == NULL) {
+            throw_out_of_memory(env);
+        } else if (address != NULL) {
+            libpostal_address_parser_response_t *response = libpostal_parse_address(address, call.options);
+            size_t num_components = response != NULL ? response->num_components : 0;
+
+            size_t num_selected = 0;
+            for (size_t i = 0; i < num_components; i++) {
+                if (label_selected(response->labels[i], call.labels, call.num_labels)) {
+                    num_selected++;
+                }
+            }
+
+            ret = (*env)->NewObjectArray(env, num_selected, componentClass, NULL);
+
+            size_t j = 0;
+            for (size_t i = 0; ret != NULL && i < num_components; i++) {
+                if (!label_selected(response->labels[i], call.labels, call.num_labels)) {
+                    continue;
+                }
+                expander.options.address_components = component_mask(response->labels[i]);
+                jobjectArray expansions = jpostal_expand_to_bytes(env, response->components[i], &expander,
+                                                                  byteArrayClass);
+                if (expansions == NULL) {
+                    ret = NULL;
+                    break;
+                }
+
+                size_t len = strlen(response->components[i]);
+                jstring jLabel = (*env)->NewStringUTF(env, response->labels[i]);
+                jbyteArray bytes = (*env)->NewByteArray(env, len);
+                (*env)->SetByteArrayRegion(env, bytes, 0, len, (jbyte*) response->components[i]);
+                jobject jComponent = (*env)->NewObject(env, componentClass, componentInit, bytes, jLabel, expansions);
+                (*env)->SetObjectArrayElement(env, ret, j++, jComponent);
+
+                (*env)->DeleteLocalRef(env, bytes);
+                (*env)->DeleteLocalRef(env, jLabel);
+                (*env)->DeleteLocalRef(env, expansions);
+                (*env)->DeleteLocalRef(env, jComponent);
+            }
+
+            if (response != NULL) {
+                libpostal_address_parser_response_destroy(response);
+            }
+            free(address);
+        }
+    }
+
+    jpostal_expander_call_destroy(&expander);
+    parser_call_destroy(env, &call);
+    return ret;
+}
 
 JNIEXPORT void JNICALL Java_com_mapzen_jpostal_AddressParser_teardown
   (JNIEnv *env, jclass cls) {
@@ -141,4 +392,11 @@ JNIEXPORT void JNICALL Java_com_mapzen_jpostal_ParserOptions_00024Builder_setDef
 
     (*env)->SetObjectField(env, builder, fid, NULL);
 
+    fid = (*env)->GetFieldID(env, cls, "labels", "[Ljava/lang/String;");
+    if (fid == 0) {
+        return;
+    }
+
+    (*env)->SetObjectField(env, builder, fid, NULL);
+
 }
@@ -0,0 +1,25 @@
+#ifndef JPOSTAL_EXPANDER_H
+#define JPOSTAL_EXPANDER_H
+
+#include <jni.h>
+#include <libpostal/libpostal.h>
+
+// Expansion helpers shared by jpostal_AddressExpander.c and the combined parse-and-expand call of
+// jpostal_AddressParser.c.
+
+typedef struct {
+    libpostal_normalize_options_t options;
+    char **languages;
+    size_t num_languages;
+} expander_call_t;
+
+// Reads an ExpanderOptions object into call. Returns 0 with a pending exception on failure; call must be destroyed
+// either way.
+int jpostal_expander_call_init(JNIEnv *env, jobject jOptions, expander_call_t *call);
+
+void jpostal_expander_call_destroy(expander_call_t *call);
+
+// Expands address with the options of call, returning the expansions as a byte[][].
+jobjectArray jpostal_expand_to_bytes(JNIEnv *env, char *address, expander_call_t *call, jclass byteArrayClass);
+
+#endif
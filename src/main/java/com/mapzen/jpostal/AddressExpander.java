@@ -2,30 +2,75 @@ package com.mapzen.jpostal;
 
 import com.mapzen.jpostal.ExpanderOptions;
 
-import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
 
 public class AddressExpander {
 
-    private static native synchronized void setup();
-    private static native synchronized void setupDataDir(String dataDir);
-    private static native synchronized byte[][] libpostalExpand(byte[] address, ExpanderOptions options);
-    private static native synchronized void teardown();
+    static native synchronized void setup();
+    static native synchronized void setupDataDir(String dataDir);
+    static native byte[][] libpostalExpand(byte[] address, ExpanderOptions options);
+    static native byte[][][] libpostalExpandBatch(byte[][] addresses, ExpanderOptions options);
+    static native long[] libpostalExpandHashes(byte[] address, ExpanderOptions options);
+    static native long[][] libpostalExpandHashesBatch(byte[][] addresses, ExpanderOptions options);
+    static native long[] libpostalExpandTokenHashes(byte[] address, ExpanderOptions options);
+    static native long[][] libpostalExpandTokenHashesBatch(byte[][] addresses, ExpanderOptions options);
+    static native synchronized void teardown();
 
     private volatile static AddressExpander instance = null;
 
     private final LibPostal libPostal;
 
+    // Serializes native calls and teardown, serving interactive calls before batch ones. A lock rather than a monitor
+    // so that calls can wait within a time budget, and so that virtual threads waiting for it are not pinned.
+    private final PriorityLock nativeLock = new PriorityLock();
+    private final InputLimits.Counters inputCounters = new InputLimits.Counters();
+
+    // Lifecycle state, guarded by AddressExpander.class.
+    private int references = 0;
+    private volatile boolean pinned = false;
+    private volatile boolean closed = false;
+
     public static AddressExpander getInstanceDataDir(String dataDir) {
         return getInstanceConfig(Config.builder().dataDir(dataDir).build());
     }
 
+    /**
+     * Returns the singleton, creating it if necessary. It stays loaded until {@link #close()} is called,
+     * regardless of any {@link NativeHandle}s.
+     */
     public static AddressExpander getInstanceConfig(Config config) {
-        if (instance == null) {
+        AddressExpander current = instance;
+        if (current == null || !current.pinned) {
             synchronized(AddressExpander.class) {
-                if (instance == null) {
-                    instance = new AddressExpander(LibPostal.getInstance(config));
-                }
+                current = getOrCreate(config);
+                current.pinned = true;
             }
+        } else if (!current.libPostal.getConfig().equals(config)) {
+            throw Config.mismatchException(current.libPostal.getConfig(), config);
+        }
+        return current;
+    }
+
+    /**
+     * Returns a counted handle to the singleton, creating it if necessary. The language classifier is torn down
+     * when the last handle is closed, unless the singleton was also requested through {@code getInstance*}.
+     */
+    public static NativeHandle<AddressExpander> acquire(Config config) {
+        synchronized (AddressExpander.class) {
+            AddressExpander expander = getOrCreate(config);
+            expander.references++;
+            return new NativeHandle<>(expander, expander::release);
+        }
+    }
+
+    private static AddressExpander getOrCreate(Config config) {
+        if (instance == null) {
+            instance = new AddressExpander(LibPostal.retainInstance(config));
         } else if (!instance.libPostal.getConfig().equals(config)) {
             throw Config.mismatchException(instance.libPostal.getConfig(), config);
         }
@@ -45,6 +90,56 @@ public class AddressExpander {
     }
 
     public String[] expandAddressWithOptions(String address, ExpanderOptions options) {
+        return expandOne(address, options, NativeCalls::expand, new String[0]);
+    }
+
+    /**
+     * Expands a batch of addresses with a single native call, returning the expansions of each address in input order.
+     */
+    public String[][] expandAddresses(List<String> addresses, ExpanderOptions options) {
+        return expandBatch(addresses, options, NativeCalls::expandBatch, String[][]::new, new String[0]);
+    }
+
+    /**
+     * Returns the {@link XxHash64} of the UTF-8 bytes of each expansion of the address, in the order of
+     * {@link #expandAddressWithOptions(String, ExpanderOptions)}. The hashes are computed natively, so no string is
+     * created per expansion; use this when expansions are only needed as join or dedupe keys.
+     */
+    public long[] expandToHashes(String address, ExpanderOptions options) {
+        return expandOne(address, options, NativeCalls::expandHashes, new long[0]);
+    }
+
+    /**
+     * Hashes the expansions of a batch of addresses with a single native call, returning the hashes of each address
+     * in input order. See {@link #expandToHashes(String, ExpanderOptions)}.
+     */
+    public long[][] expandToHashes(List<String> addresses, ExpanderOptions options) {
+        return expandBatch(addresses, options, NativeCalls::expandHashesBatch, long[][]::new, new long[0]);
+    }
+
+    /**
+     * Returns the distinct {@link XxHash64} hashes of the space-separated tokens of all expansions of the address, in
+     * ascending order. Addresses written differently share most of their tokens even when none of their full
+     * expansions is identical, e.g. when only the city or the unit differs.
+     */
+    public long[] expandToTokenHashes(String address, ExpanderOptions options) {
+        return expandOne(address, options, NativeCalls::expandTokenHashes, new long[0]);
+    }
+
+    /**
+     * Hashes the expansion tokens of a batch of addresses with a single native call. See
+     * {@link #expandToTokenHashes(String, ExpanderOptions)}.
+     */
+    public long[][] expandToTokenHashes(List<String> addresses, ExpanderOptions options) {
+        return expandBatch(addresses, options, NativeCalls::expandTokenHashesBatch, long[][]::new, new long[0]);
+    }
+
+    private interface NativeCall<A, T> {
+        T apply(NativeCalls calls, A addresses, ExpanderOptions options);
+    }
+
+    private <T> T expandOne(String address, ExpanderOptions options, NativeCall<byte[], T> call,
+                            T empty) {
         if (address == null) {
             throw new NullPointerException("String address must not be null");
         }
@@ -52,12 +147,171 @@ public class AddressExpander {
             throw new NullPointerException("ExpanderOptions options must not be null");
         }
 
-        byte[][] expansionBytes = libpostalExpand(address.getBytes(), options);
-        String[] expansions = new String[expansionBytes.length];
-        for (int i = 0; i < expansionBytes.length; i++) {
-            expansions[i] = new String(expansionBytes[i], StandardCharsets.UTF_8);
+        final ExpandEvent event = new ExpandEvent();
+        event.begin();
+        final InputLimits limits = options.getInputLimits();
+        final byte[] addressBytes = limits.apply(address, inputCounters);
+        final long lockStart = event.mark();
+        limits.lock(nativeLock, options.getPriority(), 1, inputCounters);
+        final T result;
+        try {
+            ensureOpen();
+            event.lockAcquired(lockStart);
+            final long nativeStart = event.mark();
+            result = addressBytes == null ? empty : libPostal.getExecutor().call(
+                    () -> call.apply(libPostal.getCalls(), addressBytes, options));
+            event.nativeDone(nativeStart);
+        } finally {
+            nativeLock.unlock();
+        }
+        event.finish(addressBytes, result, options);
+        return result;
+    }
+
+    private <T> T[] expandBatch(List<String> addresses, ExpanderOptions options,
+                                NativeCall<byte[][], T[]> call, IntFunction<T[]> newArray, T empty) {
+        if (options == null) {
+            throw new NullPointerException("ExpanderOptions options must not be null");
+        }
+        final ExpandEvent event = new ExpandEvent();
+        event.begin();
+        final InputLimits limits = options.getInputLimits();
+        final byte[][] addressBytes = limits.apply(addresses, inputCounters);
+        final byte[][] accepted = InputLimits.accepted(addressBytes);
+        final BatchDedupe dedupe = inputCounters.dedupe(accepted, options.getDedupe());
+        final byte[][] distinct = dedupe.distinct();
+        final T[] results = newArray.apply(distinct.length);
+        final int chunkSize = PriorityLock.chunkSize(options.getPriority(), distinct.length);
+        int from = 0;
+        do {
+            final byte[][] chunk = chunkSize == distinct.length ? distinct
+                    : Arrays.copyOfRange(distinct, from, Math.min(distinct.length, from + chunkSize));
+            final long lockStart = event.mark();
+            limits.lock(nativeLock, options.getPriority(), distinct.length - from, inputCounters);
+            try {
+                ensureOpen();
+                event.lockAcquired(lockStart);
+                if (chunk.length > 0) {
+                    final long nativeStart = event.mark();
+                    final T[] chunkResults = libPostal.getExecutor().call(
+                            () -> call.apply(libPostal.getCalls(), chunk, options));
+                    event.nativeDone(nativeStart);
+                    System.arraycopy(chunkResults, 0, results, from, chunkResults.length);
+                }
+            } finally {
+                nativeLock.unlock();
+            }
+            from += chunk.length;
+        } while (from < distinct.length);
+        final T[] acceptedResults = dedupe.fanOut(results, newArray.apply(accepted.length));
+        event.finish(addressBytes, acceptedResults, options);
+        return InputLimits.scatter(addressBytes, acceptedResults, newArray.apply(addressBytes.length), empty);
+    }
+
+    /**
+     * Expands addresses as they are pulled from the returned iterator, reading up to {@code batchSize} addresses at a
+     * time and expanding each batch with a single native call. The input is consumed lazily and only one batch is held
+     * in memory, so this suits per-partition processing such as Spark's {@code mapPartitions}.
+     */
+    public Iterator<String[]> expandIterator(Iterator<String> addresses, ExpanderOptions options, int batchSize) {
+        if (options == null) {
+            throw new NullPointerException("ExpanderOptions options must not be null");
+        }
+        return new BatchIterator<>(addresses, batchSize, batch -> expandAddresses(batch, options));
+    }
+
+    public Stream<String[]> expandAll(Stream<String> addresses) {
+        return expandAll(addresses, new ExpanderOptions.Builder().build(), Batches.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Expands a stream of addresses in batches of up to {@code batchSize}, one native call per batch, keeping the
+     * encounter order. See {@link AddressParser#parseAll(Stream, ParserOptions, int)} for how parallel input is handled.
+     */
+    public Stream<String[]> expandAll(Stream<String> addresses, ExpanderOptions options, int batchSize) {
+        if (options == null) {
+            throw new NullPointerException("ExpanderOptions options must not be null");
+        }
+        return Batches.map(addresses, batchSize, batch -> expandAddresses(batch, options));
+    }
+
+    public String[][] expandParallel(List<String> addresses) {
+        return expandParallel(addresses, new ExpanderOptions.Builder().build(), Batches.DEFAULT_BATCH_SIZE,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Expands a list of addresses on the given pool, splitting it into batches of {@code batchSize} that are each
+     * expanded with one native call, and returns the expansions of each address in input order.
+     */
+    public String[][] expandParallel(List<String> addresses, ExpanderOptions options, int batchSize, ForkJoinPool pool) {
+        if (options == null) {
+            throw new NullPointerException("ExpanderOptions options must not be null");
+        }
+        return Batches.parallel(addresses, batchSize, pool, batch -> expandAddresses(batch, options), String[][]::new);
+    }
+
+    /**
+     * Returns how many addresses were rejected, by the byte and token limits of their options or because their call
+     * could not start within its time budget, since this instance was created.
+     */
+    public long getRejectedCount() {
+        return inputCounters.rejected.sum();
+    }
+
+    /**
+     * Returns how many addresses were truncated to the limits of their options since this instance was created.
+     */
+    public long getTruncatedCount() {
+        return inputCounters.truncated.sum();
+    }
+
+    /**
+     * Returns how many addresses of batches with a {@link DedupeMode} other than NONE were not passed to libpostal
+     * because an earlier address of their batch was the same, since this instance was created.
+     */
+    public long getDeduplicatedCount() {
+        return inputCounters.deduplicated.sum();
+    }
+
+    /**
+     * Returns the share of the addresses of deduplicated batches that reused the result of another address, from 0
+     * when every address was distinct to nearly 1 when most were repeats.
+     */
+    public double getDedupeRatio() {
+        return inputCounters.dedupeRatio();
+    }
+
+    /**
+     * Returns the singleton, or null if it is not initialized.
+     */
+    static AddressExpander currentOrNull() {
+        return instance;
+    }
+
+    /**
+     * Returns the singleton, for calls that expand while holding another lock.
+     */
+    static AddressExpander current() {
+        final AddressExpander current = instance;
+        if (current == null) {
+            throw new IllegalStateException("Initialize AddressExpander through getInstance* before expanding");
+        }
+        return current;
+    }
+
+    PriorityLock getNativeLock() {
+        return nativeLock;
+    }
+
+    InputLimits.Counters getInputCounters() {
+        return inputCounters;
+    }
+
+    void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("AddressExpander has been closed");
         }
-        return expansions;
     }
 
     AddressExpander(final LibPostal libPostal) {
@@ -65,40 +319,68 @@ public class AddressExpander {
             throw new NullPointerException("LibPostal must not be null");
         }
 
+        if (!libPostal.getConfig().getExpanderEnabled()) {
+            throw new IllegalStateException("AddressExpander is disabled in the Config used to initialize libpostal (expanderEnabled=false)");
+        }
+
         this.libPostal = libPostal;
 
-        final String dataDir = libPostal.getConfig().getDataDir();
-        synchronized (this.libPostal) {
-            if (dataDir == null) {
-                setup();
-            } else {
-                setupDataDir(dataDir);
+        try {
+            loadModule(libPostal.getConfig());
+        } catch (RuntimeException e) {
+            libPostal.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the native module backing this class unless it is already loaded. This does not wait for the rest of
+     * libpostal, which lets {@link LibPostal#initializeAsync(Config)} load modules concurrently.
+     */
+    static void loadModule(final Config config) {
+        final NativeCalls calls = NativeCalls.forBackend(config.getBackend());
+        final String dataDir = config.getDataDir();
+        LibPostal.loadModule(LibPostal.Module.LANGUAGE_CLASSIFIER,
+                () -> calls.setup(LibPostal.Module.LANGUAGE_CLASSIFIER, dataDir));
+    }
+
+    private void release() {
+        synchronized (AddressExpander.class) {
+            if (closed || --references > 0 || pinned) {
+                return;
             }
+            shutdown();
         }
-    } 
+    }
 
-    @Override
-    protected void finalize() {
-        synchronized (libPostal) {
-            teardown();
+    // Called with AddressExpander.class held.
+    private void shutdown() {
+        nativeLock.lock(Priority.INTERACTIVE); // waits for an expansion in progress
+        try {
+            closed = true;
+            LibPostal.unloadModule(LibPostal.Module.LANGUAGE_CLASSIFIER,
+                    () -> libPostal.getCalls().teardown(LibPostal.Module.LANGUAGE_CLASSIFIER));
+        } finally {
+            nativeLock.unlock();
+        }
+        if (instance == this) {
+            instance = null;
         }
+        libPostal.release();
     }
 
     /**
      * Closes the singleton instances of LibPostal, AddressParser, and AddressExpander, releasing native resources and allowing re-initialization.
-     * This is not thread-safe. Use with caution.
+     * Calls already in progress complete first; later calls on the closed instances throw IllegalStateException.
      */
     public static void close() {
         LibPostal.close();
     }
 
     public static void _close() {
-        if (instance != null) {
-            synchronized (AddressExpander.class) {
-                if (instance != null) {
-                    teardown();
-                    instance = null;
-                }
+        synchronized (AddressExpander.class) {
+            if (instance != null) {
+                instance.shutdown();
             }
         }
     }
@@ -3,34 +3,78 @@ package com.mapzen.jpostal;
 import com.mapzen.jpostal.ParsedComponent;
 import com.mapzen.jpostal.ParserOptions;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
 public class AddressParser {
 
-    private static native synchronized void setup();
-    private static native synchronized void setupDataDir(String dataDir);
-    private native synchronized ParsedComponent[] libpostalParse(byte[] address, ParserOptions options);
-    private static native synchronized void teardown();
+    static native synchronized void setup();
+    static native synchronized void setupDataDir(String dataDir);
+    static native ParsedComponent[] libpostalParse(byte[] address, ParserOptions options);
+    static native ParsedComponent[][] libpostalParseBatch(byte[][] addresses, ParserOptions options);
+    static native ExpandedComponent[] libpostalParseAndExpand(byte[] address, ParserOptions parserOptions,
+                                                              ExpanderOptions expanderOptions);
+    static native synchronized void teardown();
 
     private volatile static AddressParser instance = null;
 
     private final LibPostal libPostal;
 
+    // Serializes native calls and teardown, serving interactive calls before batch ones. A lock rather than a monitor
+    // so that calls can wait within a time budget, and so that virtual threads waiting for it are not pinned.
+    private final PriorityLock nativeLock = new PriorityLock();
+    private final InputLimits.Counters inputCounters = new InputLimits.Counters();
+
+    // Lifecycle state, guarded by AddressParser.class.
+    private int references = 0;
+    private volatile boolean pinned = false;
+    private volatile boolean closed = false;
+
     public static AddressParser getInstanceDataDir(String dataDir) {
         return getInstanceConfig(Config.builder().dataDir(dataDir).build());
     }
 
+    /**
+     * Returns the singleton, creating it if necessary. It stays loaded until {@link #close()} is called,
+     * regardless of any {@link NativeHandle}s.
+     */
     public static AddressParser getInstanceConfig(Config config) {
-        if (instance == null) {
+        AddressParser current = instance;
+        if (current == null || !current.pinned) {
             synchronized(AddressParser.class) {
-                if (instance == null) {
-                    instance = new AddressParser(LibPostal.getInstance(config));
-                }
+                current = getOrCreate(config);
+                current.pinned = true;
             }
+        } else if (!current.libPostal.getConfig().equals(config)) {
+            throw Config.mismatchException(current.libPostal.getConfig(), config);
+        }
+        return current;
+    }
+
+    /**
+     * Returns a counted handle to the singleton, creating it if necessary. The parser model is torn down when the
+     * last handle is closed, unless the singleton was also requested through {@code getInstance*}.
+     */
+    public static NativeHandle<AddressParser> acquire(Config config) {
+        synchronized (AddressParser.class) {
+            AddressParser parser = getOrCreate(config);
+            parser.references++;
+            return new NativeHandle<>(parser, parser::release);
+        }
+    }
+
+    private static AddressParser getOrCreate(Config config) {
+        if (instance == null) {
+            instance = new AddressParser(LibPostal.retainInstance(config));
         } else if (!instance.libPostal.getConfig().equals(config)) {
             throw Config.mismatchException(instance.libPostal.getConfig(), config);
         }
         return instance;
     }
-        
+
     public static AddressParser getInstance() {
         return getInstanceDataDir(null);
     }
@@ -50,48 +94,297 @@ public class AddressParser {
         if (options == null) {
             throw new NullPointerException("ParserOptions options must not be null");
         }
-        return libpostalParse(address.getBytes(), options);
-    } 
+        final ParseEvent event = new ParseEvent();
+        event.begin();
+        final InputLimits limits = options.getInputLimits();
+        final byte[] addressBytes = limits.apply(address, inputCounters);
+        final long lockStart = event.mark();
+        limits.lock(nativeLock, options.getPriority(), 1, inputCounters);
+        final ParsedComponent[] components;
+        try {
+            ensureOpen();
+            event.lockAcquired(lockStart);
+            final long nativeStart = event.mark();
+            components = addressBytes == null ? new ParsedComponent[0] : libPostal.getExecutor().call(
+                    () -> libPostal.getCalls().parse(addressBytes, options));
+            event.nativeDone(nativeStart);
+        } finally {
+            nativeLock.unlock();
+        }
+        event.finish(addressBytes, components, options);
+        return components;
+    }
+
+    /**
+     * Parses the address and expands each component with the rules for its label in the same native call: a road
+     * with street rules, a house number with house number rules, a city or country as a toponym, and so on. The
+     * {@link ExpanderOptions#getAddressComponents() address components} of {@code expanderOptions} are replaced per
+     * component; its other options apply as they are. Requires an initialized {@link AddressExpander}, whose lock is
+     * held for the call along with this parser's. The input limits and priority of {@code parserOptions} apply; the
+     * time budget bounds the wait for both locks together, and a call rejected for it is counted by the
+     * {@code getRejectedCount()} of the parser or of the expander, whichever was busy.
+     */
+    public ExpandedComponent[] parseAndExpand(String address, ParserOptions parserOptions,
+                                              ExpanderOptions expanderOptions) {
+        if (address == null) {
+            throw new NullPointerException("String address must not be null");
+        }
+        if (parserOptions == null) {
+            throw new NullPointerException("ParserOptions parserOptions must not be null");
+        }
+        if (expanderOptions == null) {
+            throw new NullPointerException("ExpanderOptions expanderOptions must not be null");
+        }
+        final AddressExpander expander = AddressExpander.current();
+
+        final ParseEvent event = new ParseEvent();
+        event.begin();
+        final InputLimits limits = parserOptions.getInputLimits();
+        final byte[] addressBytes = limits.apply(address, inputCounters);
+        final long lockStart = event.mark();
+        // One budget for both locks; a rejection is counted by the instance that was busy.
+        final long deadline = limits.deadline();
+        // Always the parser lock first, so this cannot deadlock with other calls.
+        limits.lock(nativeLock, parserOptions.getPriority(), 1, inputCounters, deadline);
+        final ExpandedComponent[] components;
+        try {
+            limits.lock(expander.getNativeLock(), parserOptions.getPriority(), 1, expander.getInputCounters(),
+                    deadline);
+            try {
+                ensureOpen();
+                expander.ensureOpen();
+                event.lockAcquired(lockStart);
+                final long nativeStart = event.mark();
+                components = addressBytes == null ? new ExpandedComponent[0] : libPostal.getExecutor().call(
+                        () -> libPostal.getCalls().parseAndExpand(addressBytes, parserOptions, expanderOptions));
+                event.nativeDone(nativeStart);
+            } finally {
+                expander.getNativeLock().unlock();
+            }
+        } finally {
+            nativeLock.unlock();
+        }
+        event.finish(addressBytes, components, parserOptions);
+        return components;
+    }
+
+    /**
+     * Parses a batch of addresses with a single native call, returning the components of each address in input order.
+     */
+    public ParsedComponent[][] parseAddresses(List<String> addresses, ParserOptions options) {
+        if (options == null) {
+            throw new NullPointerException("ParserOptions options must not be null");
+        }
+        final ParseEvent event = new ParseEvent();
+        event.begin();
+        final InputLimits limits = options.getInputLimits();
+        final byte[][] addressBytes = limits.apply(addresses, inputCounters);
+        final byte[][] accepted = InputLimits.accepted(addressBytes);
+        final BatchDedupe dedupe = inputCounters.dedupe(accepted, options.getDedupe());
+        final byte[][] distinct = dedupe.distinct();
+        final ParsedComponent[][] results = new ParsedComponent[distinct.length][];
+        final int chunkSize = PriorityLock.chunkSize(options.getPriority(), distinct.length);
+        int from = 0;
+        do {
+            final byte[][] chunk = chunkSize == distinct.length ? distinct
+                    : Arrays.copyOfRange(distinct, from, Math.min(distinct.length, from + chunkSize));
+            final long lockStart = event.mark();
+            limits.lock(nativeLock, options.getPriority(), distinct.length - from, inputCounters);
+            try {
+                ensureOpen();
+                event.lockAcquired(lockStart);
+                if (chunk.length > 0) {
+                    final long nativeStart = event.mark();
+                    final ParsedComponent[][] chunkResults = libPostal.getExecutor().call(
+                            () -> libPostal.getCalls().parseBatch(chunk, options));
+                    event.nativeDone(nativeStart);
+                    System.arraycopy(chunkResults, 0, results, from, chunkResults.length);
+                }
+            } finally {
+                nativeLock.unlock();
+            }
+            from += chunk.length;
+        } while (from < distinct.length);
+        final ParsedComponent[][] acceptedResults = dedupe.fanOut(results, new ParsedComponent[accepted.length][]);
+        event.finish(addressBytes, acceptedResults, options);
+        return InputLimits.scatter(addressBytes, acceptedResults, new ParsedComponent[addressBytes.length][],
+                new ParsedComponent[0]);
+    }
+
+    /**
+     * Parses addresses as they are pulled from the returned iterator, reading up to {@code batchSize} addresses at a
+     * time and parsing each batch with a single native call. The input is consumed lazily and only one batch is held
+     * in memory, so this suits per-partition processing such as Spark's {@code mapPartitions}.
+     */
+    public Iterator<ParsedComponent[]> parseIterator(Iterator<String> addresses, ParserOptions options, int batchSize) {
+        if (options == null) {
+            throw new NullPointerException("ParserOptions options must not be null");
+        }
+        return new BatchIterator<>(addresses, batchSize, batch -> parseAddresses(batch, options));
+    }
+
+    public Stream<ParsedComponent[]> parseAll(Stream<String> addresses) {
+        return parseAll(addresses, new ParserOptions.Builder().build(), Batches.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Parses a stream of addresses in batches of up to {@code batchSize}, one native call per batch, keeping the
+     * encounter order. A parallel input stream yields a parallel result whose workers each take whole batches.
+     *
+     * libpostal's parser model is process-wide state, so native calls still run one at a time. Parallelism overlaps
+     * the conversions to and from UTF-8 and the rest of the pipeline with them, and batching takes the native lock
+     * once per batch instead of once per address, so workers are not queued on it for every row.
+     */
+    public Stream<ParsedComponent[]> parseAll(Stream<String> addresses, ParserOptions options, int batchSize) {
+        if (options == null) {
+            throw new NullPointerException("ParserOptions options must not be null");
+        }
+        return Batches.map(addresses, batchSize, batch -> parseAddresses(batch, options));
+    }
+
+    public ParsedComponent[][] parseParallel(List<String> addresses) {
+        return parseParallel(addresses, new ParserOptions.Builder().build(), Batches.DEFAULT_BATCH_SIZE,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses a list of addresses on the given pool, splitting it into batches of {@code batchSize} that are each
+     * parsed with one native call, and returns the components of each address in input order. See
+     * {@link #parseAll(Stream, ParserOptions, int)} for how the work overlaps.
+     */
+    public ParsedComponent[][] parseParallel(List<String> addresses, ParserOptions options, int batchSize,
+                                             ForkJoinPool pool) {
+        if (options == null) {
+            throw new NullPointerException("ParserOptions options must not be null");
+        }
+        return Batches.parallel(addresses, batchSize, pool, batch -> parseAddresses(batch, options),
+                ParsedComponent[][]::new);
+    }
+
+    /**
+     * Returns how many addresses were rejected, by the byte and token limits of their options or because their call
+     * could not start within its time budget, since this instance was created.
+     */
+    public long getRejectedCount() {
+        return inputCounters.rejected.sum();
+    }
+
+    /**
+     * Returns how many addresses were truncated to the limits of their options since this instance was created.
+     */
+    public long getTruncatedCount() {
+        return inputCounters.truncated.sum();
+    }
+
+    /**
+     * Returns how many addresses of batches with a {@link DedupeMode} other than NONE were not passed to libpostal
+     * because an earlier address of their batch was the same, since this instance was created.
+     */
+    public long getDeduplicatedCount() {
+        return inputCounters.deduplicated.sum();
+    }
+
+    /**
+     * Returns the share of the addresses of deduplicated batches that reused the result of another address, from 0
+     * when every address was distinct to nearly 1 when most were repeats.
+     */
+    public double getDedupeRatio() {
+        return inputCounters.dedupeRatio();
+    }
+
+    /**
+     * Returns the singleton, or null if it is not initialized.
+     */
+    static AddressParser currentOrNull() {
+        return instance;
+    }
+
+    /**
+     * Returns the singleton, for work that runs on behalf of whoever initialized it.
+     */
+    static AddressParser current() {
+        final AddressParser current = instance;
+        if (current == null) {
+            throw new IllegalStateException("Initialize AddressParser through getInstance* before parsing");
+        }
+        return current;
+    }
+
+    PriorityLock getNativeLock() {
+        return nativeLock;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("AddressParser has been closed");
+        }
+    }
 
     AddressParser(final LibPostal libPostal) {
         if (libPostal == null) {
             throw new NullPointerException("LibPostal must not be null");
         }
 
+        if (!libPostal.getConfig().getParserEnabled()) {
+            throw new IllegalStateException("AddressParser is disabled in the Config used to initialize libpostal (parserEnabled=false)");
+        }
+
         this.libPostal = libPostal;
 
-        final String dataDir = libPostal.getConfig().getDataDir();
-        synchronized (this.libPostal) {
-            if (dataDir == null) {
-                setup();
-            } else {
-                setupDataDir(dataDir);
+        try {
+            loadModule(libPostal.getConfig());
+        } catch (RuntimeException e) {
+            libPostal.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the native module backing this class unless it is already loaded. This does not wait for the rest of
+     * libpostal, which lets {@link LibPostal#initializeAsync(Config)} load modules concurrently.
+     */
+    static void loadModule(final Config config) {
+        final NativeCalls calls = NativeCalls.forBackend(config.getBackend());
+        final String dataDir = config.getDataDir();
+        LibPostal.loadModule(LibPostal.Module.PARSER, () -> calls.setup(LibPostal.Module.PARSER, dataDir));
+    }
+
+    private void release() {
+        synchronized (AddressParser.class) {
+            if (closed || --references > 0 || pinned) {
+                return;
             }
+            shutdown();
         }
     }
 
-    @Override
-    protected void finalize() {
-        synchronized (libPostal) {
-            teardown();
+    // Called with AddressParser.class held.
+    private void shutdown() {
+        nativeLock.lock(Priority.INTERACTIVE); // waits for a parse in progress
+        try {
+            closed = true;
+            LibPostal.unloadModule(LibPostal.Module.PARSER, () -> libPostal.getCalls().teardown(LibPostal.Module.PARSER));
+        } finally {
+            nativeLock.unlock();
+        }
+        if (instance == this) {
+            instance = null;
         }
+        libPostal.release();
     }
 
     /**
      * Closes the singleton instances of LibPostal, AddressParser, and AddressExpander, releasing native resources and allowing re-initialization.
-     * This is not thread-safe. Use with caution.
+     * Calls already in progress complete first; later calls on the closed instances throw IllegalStateException.
      */
     public static void close() {
         LibPostal.close();
     }
 
     public static void _close() {
-        if (instance != null) {
-            synchronized (AddressParser.class) {
-                if (instance != null) {
-                    teardown();
-                    instance = null;
-                }
+        synchronized (AddressParser.class) {
+            if (instance != null) {
+                instance.shutdown();
             }
         }
     }
@@ -0,0 +1,14 @@
+package com.mapzen.jpostal;
+
+/**
+ * How jpostal calls into libpostal.
+ */
+public enum Backend {
+    /** Through the bundled JNI glue library (libjpostal). Works on every supported Java version. */
+    JNI,
+    /**
+     * Directly through the Foreign Function &amp; Memory API, without the glue library. Requires Java 22 or later and
+     * {@code --enable-native-access=ALL-UNNAMED} (or the jpostal module) to avoid restricted-method warnings.
+     */
+    FFM
+}
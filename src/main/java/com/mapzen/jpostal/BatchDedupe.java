@@ -0,0 +1,99 @@
+package com.mapzen.jpostal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The distinct addresses of a batch, and which of them each address of the batch maps to. Only the distinct
+ * addresses are passed to libpostal; their results are then fanned out to every position, so duplicates share the
+ * same result arrays.
+ */
+final class BatchDedupe {
+    private final byte[][] distinct;
+    // Index into distinct of each address of the batch, or null when every address is distinct.
+    private final int[] positions;
+
+    private BatchDedupe(final byte[][] distinct, final int[] positions) {
+        this.distinct = distinct;
+        this.positions = positions;
+    }
+
+    static BatchDedupe of(final byte[][] addresses, final DedupeMode mode) {
+        if (mode == DedupeMode.NONE || addresses.length < 2) {
+            return new BatchDedupe(addresses, null);
+        }
+
+        // Open addressing from the hash of a key to the index of its first address.
+        final int[] table = new int[Integer.highestOneBit(addresses.length * 2 - 1) * 2];
+        Arrays.fill(table, -1);
+        final int mask = table.length - 1;
+        final byte[][] keys = mode == DedupeMode.NORMALIZED ? normalize(addresses) : addresses;
+        final long[] hashes = new long[addresses.length];
+        final int[] positions = new int[addresses.length];
+        final int[] firsts = new int[addresses.length];
+        int count = 0;
+        for (int i = 0; i < addresses.length; i++) {
+            final long hash = XxHash64.hash(keys[i]);
+            hashes[i] = hash;
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            while (table[slot] != -1) {
+                final int first = firsts[table[slot]];
+                if (hashes[first] == hash && Arrays.equals(keys[first], keys[i])) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (table[slot] == -1) {
+                table[slot] = count;
+                firsts[count++] = i;
+            }
+            positions[i] = table[slot];
+        }
+
+        if (count == addresses.length) {
+            return new BatchDedupe(addresses, null);
+        }
+        final byte[][] distinct = new byte[count][];
+        for (int j = 0; j < count; j++) {
+            distinct[j] = addresses[firsts[j]];
+        }
+        return new BatchDedupe(distinct, positions);
+    }
+
+    private static byte[][] normalize(final byte[][] addresses) {
+        final byte[][] keys = new byte[addresses.length][];
+        for (int i = 0; i < addresses.length; i++) {
+            keys[i] = new String(addresses[i], StandardCharsets.UTF_8).strip().toLowerCase(Locale.ROOT)
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the addresses to pass to libpostal.
+     */
+    byte[][] distinct() {
+        return distinct;
+    }
+
+    /**
+     * Returns how many addresses of the batch share the result of an earlier one.
+     */
+    int duplicates() {
+        return positions == null ? 0 : positions.length - distinct.length;
+    }
+
+    /**
+     * Places the result of each distinct address at every position of the batch that maps to it.
+     */
+    <T> T[] fanOut(final T[] results, final T[] target) {
+        if (positions == null) {
+            return results;
+        }
+        for (int i = 0; i < positions.length; i++) {
+            target[i] = results[positions[i]];
+        }
+        return target;
+    }
+}
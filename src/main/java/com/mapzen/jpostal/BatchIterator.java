@@ -0,0 +1,60 @@
+package com.mapzen.jpostal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Lazily maps an iterator of addresses through a batch call. Input is pulled only when the previous batch has been
+ * consumed, so at most one batch of input and results is held in memory at a time.
+ */
+final class BatchIterator<T> implements Iterator<T> {
+    private final Iterator<String> addresses;
+    private final int batchSize;
+    private final Function<List<String>, T[]> call;
+
+    private T[] results;
+    private int position = 0;
+
+    BatchIterator(final Iterator<String> addresses, final int batchSize, final Function<List<String>, T[]> call) {
+        if (addresses == null) {
+            throw new NullPointerException("Iterator addresses must not be null");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, got " + batchSize);
+        }
+        this.addresses = addresses;
+        this.batchSize = batchSize;
+        this.call = call;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (results != null && position < results.length) {
+            return true;
+        }
+        if (!addresses.hasNext()) {
+            return false;
+        }
+
+        final List<String> batch = new ArrayList<>(batchSize);
+        while (batch.size() < batchSize && addresses.hasNext()) {
+            batch.add(addresses.next());
+        }
+        results = call.apply(batch);
+        position = 0;
+        return results.length > 0;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final T result = results[position];
+        results[position++] = null; // let consumed results be collected while the rest of the batch is in use
+        return result;
+    }
+}
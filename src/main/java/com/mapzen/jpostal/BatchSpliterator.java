@@ -0,0 +1,78 @@
+package com.mapzen.jpostal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Groups the addresses of a source spliterator into batches of up to {@code batchSize}, so that a parallel stream
+ * hands each worker whole batches for a single native call instead of single addresses. Splitting follows the source
+ * where it can split, and otherwise hands off one batch at a time.
+ */
+final class BatchSpliterator implements Spliterator<List<String>> {
+    private final Spliterator<String> source;
+    private final int batchSize;
+
+    BatchSpliterator(final Spliterator<String> source, final int batchSize) {
+        if (source == null) {
+            throw new NullPointerException("Spliterator source must not be null");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, got " + batchSize);
+        }
+        this.source = source;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super List<String>> action) {
+        final List<String> batch = nextBatch();
+        if (batch.isEmpty()) {
+            return false;
+        }
+        action.accept(batch);
+        return true;
+    }
+
+    @Override
+    public Spliterator<List<String>> trySplit() {
+        // Splitting a source that holds a single batch would only produce undersized batches.
+        final long size = source.getExactSizeIfKnown();
+        if (size != -1 && size <= batchSize) {
+            return null;
+        }
+
+        final Spliterator<String> prefix = source.trySplit();
+        if (prefix != null) {
+            return new BatchSpliterator(prefix, batchSize);
+        }
+
+        final List<String> batch = nextBatch();
+        if (batch.isEmpty()) {
+            return null;
+        }
+        return Spliterators.spliterator(Collections.singletonList(batch), characteristics());
+    }
+
+    @Override
+    public long estimateSize() {
+        final long size = source.estimateSize();
+        return size == Long.MAX_VALUE ? size : (size + batchSize - 1) / batchSize;
+    }
+
+    @Override
+    public int characteristics() {
+        return (source.characteristics() & ORDERED) | NONNULL;
+    }
+
+    private List<String> nextBatch() {
+        final List<String> batch = new ArrayList<>(batchSize);
+        while (batch.size() < batchSize && source.tryAdvance(batch::add)) {
+            // filling the batch
+        }
+        return batch;
+    }
+}
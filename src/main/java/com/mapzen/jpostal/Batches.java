@@ -0,0 +1,88 @@
+package com.mapzen.jpostal;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs a batch call over streams and lists of addresses, shared by {@link AddressParser} and {@link AddressExpander}.
+ */
+final class Batches {
+    static final int DEFAULT_BATCH_SIZE = 256;
+
+    private Batches() {}
+
+    /**
+     * Maps each address of the stream through {@code call}, one batch at a time. The result is parallel if the input
+     * is, keeps the encounter order of the input, and is evaluated lazily.
+     */
+    static <T> Stream<T> map(final Stream<String> addresses, final int batchSize, final Function<List<String>, T[]> call) {
+        if (addresses == null) {
+            throw new NullPointerException("Stream addresses must not be null");
+        }
+        final BatchSpliterator batches = new BatchSpliterator(addresses.spliterator(), batchSize);
+        return StreamSupport.stream(batches, addresses.isParallel())
+                .onClose(addresses::close)
+                .flatMap(batch -> Arrays.stream(call.apply(batch)));
+    }
+
+    /**
+     * Maps every address of the list through {@code call} on the given pool, splitting the list into batches that
+     * are each handled by one call, and returns the results in input order.
+     */
+    static <T> T[] parallel(final List<String> addresses, final int batchSize, final ForkJoinPool pool,
+                            final Function<List<String>, T[]> call, final IntFunction<T[]> newArray) {
+        if (addresses == null) {
+            throw new NullPointerException("List addresses must not be null");
+        }
+        if (pool == null) {
+            throw new NullPointerException("ForkJoinPool pool must not be null");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, got " + batchSize);
+        }
+        final T[] results = newArray.apply(addresses.size());
+        pool.invoke(new BatchTask<>(addresses, 0, addresses.size(), batchSize, call, results));
+        return results;
+    }
+
+    private static final class BatchTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> addresses;
+        private final int from;
+        private final int to;
+        private final int batchSize;
+        private final Function<List<String>, T[]> call;
+        private final T[] results;
+
+        private BatchTask(final List<String> addresses, final int from, final int to, final int batchSize,
+                          final Function<List<String>, T[]> call, final T[] results) {
+            this.addresses = addresses;
+            this.from = from;
+            this.to = to;
+            this.batchSize = batchSize;
+            this.call = call;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                final T[] batch = call.apply(addresses.subList(from, to));
+                System.arraycopy(batch, 0, results, from, batch.length);
+                return;
+            }
+            // Split on a batch boundary so that only the last batch of the list can be short.
+            final int batches = (to - from + batchSize - 1) / batchSize;
+            final int middle = from + (batches / 2) * batchSize;
+            invokeAll(new BatchTask<>(addresses, from, middle, batchSize, call, results),
+                    new BatchTask<>(addresses, middle, to, batchSize, call, results));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.mapzen.jpostal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory index from the expansion tokens of reference addresses to their record ids, for retrieving the
+ * candidate matches of an address. Each record is posted under the distinct tokens of all its expansions, so two
+ * addresses are candidates for each other when they share a token, and candidates are ranked by how many distinct
+ * tokens they share: "30 W 26th St, New York" retrieves "30 West 26th Street, Boston" but ranks "30 West 26th Street,
+ * New York" above it. Tokens are kept only as their native {@link XxHash64} hashes, in primitive posting
+ * lists, so an index of millions of addresses takes tens of bytes per token rather than a String and a boxed list
+ * entry.
+ *
+ * Very common tokens such as "street", "new" or small house numbers say little about a match and have posting lists
+ * spanning much of the index. Tokens posted for more than {@code maxTokenRecords} records are skipped by queries, so
+ * a query walks at most that many postings per token however large the index grows.
+ *
+ * Adding and querying may happen concurrently from several threads; expansion runs outside the index lock.
+ */
+public final class BlockingIndex {
+
+    /**
+     * A record sharing expansion tokens with a queried address.
+     */
+    public static final class Candidate {
+        private final long recordId;
+        private final int sharedKeys;
+
+        Candidate(final long recordId, final int sharedKeys) {
+            this.recordId = recordId;
+            this.sharedKeys = sharedKeys;
+        }
+
+        public long getRecordId() {
+            return recordId;
+        }
+
+        /**
+         * Returns how many distinct expansion tokens the record shares with the queried address, not counting tokens
+         * too common to be used in queries.
+         */
+        public int getSharedKeys() {
+            return sharedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Candidate that = (Candidate) o;
+            return recordId == that.recordId && sharedKeys == that.sharedKeys;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(recordId) * 31 + sharedKeys;
+        }
+
+        @Override
+        public String toString() {
+            return "Candidate{recordId=" + recordId + ", sharedKeys=" + sharedKeys + "}";
+        }
+    }
+
+    /** The default of {@code maxTokenRecords}. */
+    public static final int DEFAULT_MAX_TOKEN_RECORDS = 10000;
+
+    private final AddressExpander expander;
+    private final ExpanderOptions options;
+    private final int maxTokenRecords;
+    private final HashPostings postings = new HashPostings();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates an empty index that expands addresses with the given expander and options, and skips tokens of more
+     * than {@link #DEFAULT_MAX_TOKEN_RECORDS} records in queries.
+     */
+    public BlockingIndex(final AddressExpander expander, final ExpanderOptions options) {
+        this(expander, options, DEFAULT_MAX_TOKEN_RECORDS);
+    }
+
+    /**
+     * Creates an empty index that expands addresses with the given expander and options. Queries must use the same
+     * options as the indexed addresses for their expansions to be comparable, so they are fixed here. Queries skip
+     * tokens posted for more than {@code maxTokenRecords} records, which bounds their cost; use
+     * {@link Integer#MAX_VALUE} to use every token.
+     */
+    public BlockingIndex(final AddressExpander expander, final ExpanderOptions options, final int maxTokenRecords) {
+        if (expander == null) {
+            throw new NullPointerException("AddressExpander expander must not be null");
+        }
+        if (options == null) {
+            throw new NullPointerException("ExpanderOptions options must not be null");
+        }
+        if (maxTokenRecords <= 0) {
+            throw new IllegalArgumentException("maxTokenRecords must be positive, got " + maxTokenRecords);
+        }
+        this.expander = expander;
+        this.options = options;
+        this.maxTokenRecords = maxTokenRecords;
+    }
+
+    public void add(final long recordId, final String address) {
+        final long[] keys = expander.expandToTokenHashes(address, options);
+        lock.writeLock().lock();
+        try {
+            postings.add(recordId, keys);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a batch of records, expanding their addresses with a single native call. {@code recordIds[i]} is the id of
+     * {@code addresses.get(i)}.
+     */
+    public void addAll(final long[] recordIds, final List<String> addresses) {
+        if (recordIds.length != addresses.size()) {
+            throw new IllegalArgumentException("Got " + recordIds.length + " record ids for " + addresses.size()
+                    + " addresses");
+        }
+        final long[][] keys = expander.expandToTokenHashes(addresses, options);
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < recordIds.length; i++) {
+                postings.add(recordIds[i], keys[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} records sharing at least one expansion token with the address, those sharing the
+     * most first, then in the order they were added. Tokens of more than {@code maxTokenRecords} records are left out,
+     * both for retrieving and for counting shared tokens.
+     */
+    public List<Candidate> candidates(final String address, final int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative, got " + limit);
+        }
+        final long[] keys = expander.expandToTokenHashes(address, options);
+        lock.readLock().lock();
+        try {
+            final int[][] ranked = postings.candidates(keys, limit, maxTokenRecords);
+            if (ranked[0].length == 0) {
+                return Collections.emptyList();
+            }
+            final List<Candidate> candidates = new ArrayList<>(ranked[0].length);
+            for (int i = 0; i < ranked[0].length; i++) {
+                candidates.add(new Candidate(postings.recordId(ranked[0][i]), ranked[1][i]));
+            }
+            return candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Returns how many records were added. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return postings.recordCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Returns how many distinct expansion tokens the added records have. */
+    public int keyCount() {
+        lock.readLock().lock();
+        try {
+            return postings.keyCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Returns how many (token, record) postings the index holds. */
+    public long postingCount() {
+        lock.readLock().lock();
+        try {
+            return postings.postingCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.mapzen.jpostal;
+
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Prepares libpostal for Coordinated Restore at Checkpoint. Before a checkpoint it waits for the native calls in
+ * progress and holds the parser and expander locks, so that the image never captures libpostal in the middle of a
+ * call; the locks are released after the restore. The loaded models live in process memory and are restored with it,
+ * but the native libraries are mapped from files that must exist at the same paths when the image is restored, and
+ * modules that were not loaded yet still need their data. Both are checked before the checkpoint and after the
+ * restore.
+ *
+ * Only loaded when the {@code org.crac} API is on the class path; see {@link LibPostal}.
+ */
+final class CheckpointResource implements Resource {
+    // Contexts reference their resources weakly, so the registered resource is kept here.
+    private static CheckpointResource registered = null;
+
+    private final List<PriorityLock> held = new ArrayList<>();
+
+    private CheckpointResource() {}
+
+    static synchronized CheckpointResource register() {
+        if (registered == null) {
+            registered = new CheckpointResource();
+            Core.getGlobalContext().register(registered);
+        }
+        return registered;
+    }
+
+    @Override
+    public synchronized void beforeCheckpoint(final Context<? extends Resource> context) {
+        // In the order parseAndExpand takes them.
+        final AddressParser parser = AddressParser.currentOrNull();
+        if (parser != null) {
+            lock(parser.getNativeLock());
+        }
+        final AddressExpander expander = AddressExpander.currentOrNull();
+        if (expander != null) {
+            lock(expander.getNativeLock());
+        }
+        try {
+            checkLibraries(libraryFiles());
+            checkData(LibPostal.currentOrNull());
+        } catch (RuntimeException e) {
+            unlockAll();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void afterRestore(final Context<? extends Resource> context) {
+        try {
+            checkLibraries(libraryFiles());
+            checkData(LibPostal.currentOrNull());
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private void lock(final PriorityLock lock) {
+        lock.lock(Priority.INTERACTIVE);
+        held.add(lock);
+    }
+
+    private void unlockAll() {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+        held.clear();
+    }
+
+    private static List<Path> libraryFiles() {
+        final List<Path> files = new ArrayList<>(Config.getExtractedLibraries().values());
+        final LibPostal libPostal = LibPostal.currentOrNull();
+        if (libPostal != null && libPostal.getConfig().getLibraryFile() != null) {
+            files.add(Paths.get(libPostal.getConfig().getLibraryFile()));
+        }
+        return files;
+    }
+
+    /**
+     * Throws if a loaded native library file is missing. The restored process maps it again from the same path, so
+     * the library cache directory must be part of the restored file system.
+     */
+    static void checkLibraries(final Collection<Path> files) {
+        for (Path file : files) {
+            if (!Files.isRegularFile(file)) {
+                throw new IllegalStateException("Native library " + file + " is loaded but the file is missing; "
+                        + "a restored process maps it from the same path, so set jpostal.library.cache.dir to a "
+                        + "directory that is part of the restored file system");
+            }
+        }
+    }
+
+    /**
+     * Throws if a module the config enables is not loaded yet and its data is missing, since it would fail to load
+     * after the restore. Loaded modules are in memory and no longer need their data.
+     */
+    static void checkData(final LibPostal libPostal) {
+        if (libPostal == null || libPostal.getConfig().getDataDir() == null) {
+            return;
+        }
+        final Set<LibPostal.Module> pending = EnumSet.noneOf(LibPostal.Module.class);
+        for (LibPostal.Module module : libPostal.getConfig().getModules()) {
+            if (!LibPostal.isModuleLoaded(module)) {
+                pending.add(module);
+            }
+        }
+        final String dataDir = libPostal.getConfig().getDataDir();
+        if (!pending.isEmpty() && !DataDownloadUtils.isDataDirPopulated(dataDir, pending)) {
+            throw new IllegalStateException("The data of modules " + pending + " is missing from " + dataDir
+                    + "; initialize them before the checkpoint or make the data directory available");
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.mapzen.jpostal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of parse results, for shuffling or caching them in distributed jobs. A row of components
+ * is a varint count followed by each component:
+ * <ul>
+ *     <li>one byte whose low 7 bits are the ordinal of the label in {@link #LABELS}, {@code 0x7E} for a null label or
+ *     {@code 0x7F} for any other label, which then follows as a string, and whose high bit is set for an
+ *     {@link ExpandedComponent};</li>
+ *     <li>the value as a string;</li>
+ *     <li>for an {@link ExpandedComponent}, a varint of the count of expansions plus one, 0 standing for null, and
+ *     each of them as a string.</li>
+ * </ul>
+ * A string is a varint of its UTF-8 length plus one, 0 standing for null, followed by its UTF-8 bytes. Varints are
+ * unsigned LEB128. A typical component takes two bytes plus its value, against tens of bytes for generic serializers,
+ * which write the class and field names or ids along with every label.
+ *
+ * The label ordinals are part of the format: labels may only be appended to {@link #LABELS}.
+ */
+public final class ComponentCodec {
+    /** The labels the parser assigns, in the order of their ordinals on the wire. */
+    static final String[] LABELS = {"house", "category", "near", "house_number", "road", "unit", "level",
+            "staircase", "entrance", "po_box", "postcode", "suburb", "city_district", "city", "island",
+            "state_district", "state", "country_region", "country", "world_region"};
+
+    static final int NULL_LABEL = 0x7E;
+    static final int OTHER_LABEL = 0x7F;
+    static final int EXPANDED = 0x80;
+
+    private static final Map<String, Integer> ORDINALS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < LABELS.length; i++) {
+            ORDINALS.put(LABELS[i], i);
+        }
+    }
+
+    private ComponentCodec() {}
+
+    /**
+     * Returns the encoding of a row of components.
+     */
+    public static byte[] encode(final ParsedComponent[] row) {
+        final ByteBuffer buffer = ByteBuffer.allocate(encodedSize(row));
+        encode(row, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the encoding of a row of components to the buffer at its position, advancing it.
+     *
+     * @throws java.nio.BufferOverflowException if the buffer has less than {@link #encodedSize} bytes remaining
+     */
+    public static void encode(final ParsedComponent[] row, final ByteBuffer out) {
+        try {
+            writeRow(new BufferSink(out), row);
+        } catch (IOException e) {
+            // A buffer sink throws no IOException.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the number of bytes {@link #encode} writes for a row.
+     */
+    public static int encodedSize(final ParsedComponent[] row) {
+        int size = varintSize(row.length);
+        for (ParsedComponent component : row) {
+            size += 1;
+            if (labelCode(component.getLabel()) == OTHER_LABEL) {
+                size += stringSize(component.getLabel());
+            }
+            size += stringSize(component.getValue());
+            if (component instanceof ExpandedComponent) {
+                final String[] expansions = ((ExpandedComponent) component).getExpansions();
+                if (expansions == null) {
+                    size += 1;
+                } else {
+                    size += varintSize(expansions.length + 1);
+                    for (String expansion : expansions) {
+                        size += stringSize(expansion);
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    public static ParsedComponent[] decode(final byte[] encoded) {
+        return decode(ByteBuffer.wrap(encoded));
+    }
+
+    /**
+     * Reads a row of components from the buffer at its position, advancing it past the row. Strings of a heap buffer
+     * are decoded straight from its backing array; the bytes of a direct buffer are copied once, into a reused
+     * scratch array.
+     *
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     * @throws java.nio.BufferUnderflowException if the row is cut short
+     */
+    public static ParsedComponent[] decode(final ByteBuffer in) {
+        try {
+            return readRow(new BufferSource(in));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    // Streams, for Java and Kryo serialization.
+
+    static void writeRow(final DataOutput out, final ParsedComponent[] row) throws IOException {
+        writeRow(new StreamSink(out), row);
+    }
+
+    static ParsedComponent[] readRow(final DataInput in) throws IOException {
+        return readRow(new StreamSource(in));
+    }
+
+    static void writeComponent(final DataOutput out, final ParsedComponent component) throws IOException {
+        writeComponent(new StreamSink(out), component);
+    }
+
+    static ParsedComponent readComponent(final DataInput in) throws IOException {
+        return readComponent(new StreamSource(in));
+    }
+
+    static void writeLabel(final DataOutput out, final String label) throws IOException {
+        final StreamSink sink = new StreamSink(out);
+        final int code = labelCode(label);
+        sink.writeByte(code);
+        writeLabel(sink, code, label);
+    }
+
+    static String readLabel(final DataInput in) throws IOException {
+        final StreamSource source = new StreamSource(in);
+        return readLabel(source, source.readByte());
+    }
+
+    static void writeString(final DataOutput out, final String value) throws IOException {
+        writeString(new StreamSink(out), value);
+    }
+
+    static String readString(final DataInput in) throws IOException {
+        return readString(new StreamSource(in));
+    }
+
+    static void writeExpansions(final DataOutput out, final String[] expansions) throws IOException {
+        writeExpansions(new StreamSink(out), expansions);
+    }
+
+    static String[] readExpansions(final DataInput in) throws IOException {
+        return readExpansions(new StreamSource(in));
+    }
+
+    // The format, once for every destination.
+
+    private static void writeRow(final Sink out, final ParsedComponent[] row) throws IOException {
+        writeVarint(out, row.length);
+        for (ParsedComponent component : row) {
+            writeComponent(out, component);
+        }
+    }
+
+    private static ParsedComponent[] readRow(final Source in) throws IOException {
+        final ParsedComponent[] row = new ParsedComponent[in.count(readVarint(in))];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = readComponent(in);
+        }
+        return row;
+    }
+
+    private static void writeComponent(final Sink out, final ParsedComponent component) throws IOException {
+        final boolean expanded = component instanceof ExpandedComponent;
+        final String label = component.getLabel();
+        final int code = labelCode(label);
+        out.writeByte(code | (expanded ? EXPANDED : 0));
+        writeLabel(out, code, label);
+        writeString(out, component.getValue());
+        if (expanded) {
+            writeExpansions(out, ((ExpandedComponent) component).getExpansions());
+        }
+    }
+
+    private static ParsedComponent readComponent(final Source in) throws IOException {
+        final int header = in.readByte();
+        final String label = readLabel(in, header & ~EXPANDED);
+        final String value = readString(in);
+        if ((header & EXPANDED) == 0) {
+            return new ParsedComponent(value, label);
+        }
+        return new ExpandedComponent(value, label, readExpansions(in));
+    }
+
+    // The code of a label in the component header byte.
+    static int labelCode(final String label) {
+        if (label == null) {
+            return NULL_LABEL;
+        }
+        final Integer ordinal = ORDINALS.get(label);
+        return ordinal == null ? OTHER_LABEL : ordinal;
+    }
+
+    // Whatever follows the header byte for a label.
+    private static void writeLabel(final Sink out, final int code, final String label) throws IOException {
+        if (code == OTHER_LABEL) {
+            writeString(out, label);
+        }
+    }
+
+    private static String readLabel(final Source in, final int code) throws IOException {
+        if (code < LABELS.length) {
+            return LABELS[code];
+        } else if (code == NULL_LABEL) {
+            return null;
+        } else if (code == OTHER_LABEL) {
+            return ComponentInterner.label(readString(in));
+        }
+        throw new IOException("Unknown label code " + code);
+    }
+
+    // Like a string, the count is written plus one, 0 standing for null.
+    private static void writeExpansions(final Sink out, final String[] expansions) throws IOException {
+        if (expansions == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, expansions.length + 1);
+        for (String expansion : expansions) {
+            writeString(out, expansion);
+        }
+    }
+
+    private static String[] readExpansions(final Source in) throws IOException {
+        final int count = readVarint(in) - 1;
+        if (count < 0) {
+            return null;
+        }
+        final String[] expansions = new String[in.count(count)];
+        for (int i = 0; i < expansions.length; i++) {
+            expansions[i] = readString(in);
+        }
+        return expansions;
+    }
+
+    private static void writeString(final Sink out, final String value) throws IOException {
+        if (value == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(final Source in) throws IOException {
+        final int length = readVarint(in) - 1;
+        return length < 0 ? null : in.readString(length);
+    }
+
+    private static void writeVarint(final Sink out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(final Source in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private interface Sink {
+        void writeByte(int b) throws IOException;
+
+        void write(byte[] bytes) throws IOException;
+    }
+
+    private interface Source {
+        // The next byte, unsigned.
+        int readByte() throws IOException;
+
+        // The next length bytes as UTF-8.
+        String readString(int length) throws IOException;
+
+        // Checks a decoded element count before it is allocated.
+        int count(int count) throws IOException;
+    }
+
+    private static final class BufferSink implements Sink {
+        private final ByteBuffer out;
+
+        BufferSink(final ByteBuffer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void writeByte(final int b) {
+            out.put((byte) b);
+        }
+
+        @Override
+        public void write(final byte[] bytes) {
+            out.put(bytes);
+        }
+    }
+
+    private static final class BufferSource implements Source {
+        private final ByteBuffer in;
+        private byte[] scratch;
+
+        BufferSource(final ByteBuffer in) {
+            this.in = in;
+        }
+
+        @Override
+        public int readByte() {
+            return in.get() & 0xFF;
+        }
+
+        @Override
+        public String readString(final int length) throws IOException {
+            if (length > in.remaining()) {
+                throw new IOException("String of " + length + " bytes exceeds the " + in.remaining()
+                        + " remaining bytes");
+            }
+            final String value;
+            if (in.hasArray()) {
+                value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+            } else {
+                if (scratch == null || scratch.length < length) {
+                    scratch = new byte[Math.max(length, 64)];
+                }
+                in.get(scratch, 0, length);
+                value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+            return value;
+        }
+
+        @Override
+        public int count(final int count) throws IOException {
+            // Every element takes at least a byte, which bounds the allocation for corrupt input.
+            if (count > in.remaining()) {
+                throw new IOException("Count " + count + " exceeds the " + in.remaining() + " remaining bytes");
+            }
+            return count;
+        }
+    }
+
+    private static final class StreamSink implements Sink {
+        private final DataOutput out;
+
+        StreamSink(final DataOutput out) {
+            this.out = out;
+        }
+
+        @Override
+        public void writeByte(final int b) throws IOException {
+            out.writeByte(b);
+        }
+
+        @Override
+        public void write(final byte[] bytes) throws IOException {
+            out.write(bytes);
+        }
+    }
+
+    private static final class StreamSource implements Source {
+        private final DataInput in;
+
+        StreamSource(final DataInput in) {
+            this.in = in;
+        }
+
+        @Override
+        public int readByte() throws IOException {
+            return in.readUnsignedByte();
+        }
+
+        @Override
+        public String readString(final int length) throws IOException {
+            final byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int count(final int count) {
+            return count;
+        }
+    }
+
+    static int varintSize(final int value) {
+        int size = 1;
+        for (int rest = value >>> 7; rest != 0; rest >>>= 7) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int stringSize(final String value) {
+        if (value == null) {
+            return 1;
+        }
+        final int length = utf8Length(value);
+        return varintSize(length + 1) + length;
+    }
+
+    // The UTF-8 length of a string, without encoding it. Unpaired surrogates encode as '?', like String.getBytes.
+    static int utf8Length(final String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,118 @@
+package com.mapzen.jpostal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the values of parsed components, so that repeated values such as "new york", "ca" or common
+ * postcodes share one String instead of each parse allocating its own. Values are looked up by their UTF-8 bytes
+ * before a String is created for them, which makes a hit cheaper than a fresh String rather than just smaller.
+ *
+ * The cache has a fixed number of slots and a value replaces whatever its slot held, so it never grows and a value
+ * that stops repeating is eventually evicted. It is lock-free; threads racing on a slot at worst create one String
+ * each. Enable it with {@link Config.Builder#internCapacity(int)}.
+ */
+public final class ComponentInterner {
+    /** Values longer than this, in UTF-8 bytes, are rarely repeated and are not cached. */
+    static final int MAX_VALUE_BYTES = 64;
+
+    // The labels the parser assigns, so that every component with a label references the same String.
+    private static final Map<String, String> LABELS = new HashMap<>();
+
+    static {
+        for (String label : ComponentCodec.LABELS) {
+            LABELS.put(label, label);
+        }
+    }
+
+    private static volatile ComponentInterner active = null;
+
+    private static final class Entry {
+        final byte[] bytes;
+        final String value;
+
+        Entry(final byte[] bytes, final String value) {
+            this.bytes = bytes;
+            this.value = value;
+        }
+    }
+
+    // Entries have only final fields, so racy reads of the slots see them fully constructed.
+    private final Entry[] slots;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    ComponentInterner(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, got " + capacity);
+        }
+        this.slots = new Entry[Integer.highestOneBit(Math.min(capacity, 1 << 30) * 2 - 1)];
+    }
+
+    /**
+     * Returns the cache used by parses, or null when interning is disabled.
+     */
+    public static ComponentInterner getActive() {
+        return active;
+    }
+
+    static void setActive(final ComponentInterner interner) {
+        active = interner;
+    }
+
+    /**
+     * Returns the String for the UTF-8 value of a component, from the active cache if there is one.
+     */
+    static String value(final byte[] bytes) {
+        final ComponentInterner interner = active;
+        return interner == null ? new String(bytes, StandardCharsets.UTF_8) : interner.intern(bytes);
+    }
+
+    /**
+     * Returns the canonical instance of a parser label, or the label itself if it is not one of libpostal's.
+     */
+    static String label(final String label) {
+        final String canonical = label == null ? null : LABELS.get(label);
+        return canonical == null ? label : canonical;
+    }
+
+    String intern(final byte[] bytes) {
+        if (bytes.length > MAX_VALUE_BYTES) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        final int slot = (int) XxHash64.hash(bytes) & (slots.length - 1);
+        final Entry entry = slots[slot];
+        if (entry != null && Arrays.equals(entry.bytes, bytes)) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        final String value = new String(bytes, StandardCharsets.UTF_8);
+        // A copy, since callers of ParsedComponent(byte[], String) may reuse their buffer.
+        slots[slot] = new Entry(Arrays.copyOf(bytes, bytes.length), value);
+        return value;
+    }
+
+    /** Returns the number of values the cache can hold. */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /** Returns how many values were served from the cache. */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** Returns how many cacheable values were not in the cache, and were created and cached. */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentInterner{capacity=" + slots.length + ", hits=" + getHits() + ", misses=" + getMisses() + "}";
+    }
+}
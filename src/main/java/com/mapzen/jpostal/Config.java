@@ -1,25 +1,62 @@
 package com.mapzen.jpostal;
 
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 public final class Config {
     private static boolean libsLoaded = false;
+    private static final Map<String, String> loadedVariants = new HashMap<>();
+    private static final Map<String, Path> extractedLibraries = new HashMap<>();
 
     private final String dataDir;
     private final String libraryFile;
+    private final String libraryCacheDir;
     private final Boolean downloadDataIfNeeded;
     private final Boolean senzing;
+    private final Boolean parserEnabled;
+    private final Boolean expanderEnabled;
+    private final Map<String, String> dataChecksums;
+    private final Backend backend;
+    private final ExecutionMode executionMode;
+    private final int internCapacity;
 
-    private Config(final String dataDir, final String libraryFile, boolean downloadDataIfNeeded, boolean senzing) {
+    private Config(final String dataDir, final String libraryFile, final String libraryCacheDir,
+                   boolean downloadDataIfNeeded, boolean senzing, boolean parserEnabled, boolean expanderEnabled,
+                   final Map<String, String> dataChecksums, final Backend backend, final ExecutionMode executionMode,
+                   final int internCapacity) {
         this.dataDir = dataDir;
         this.libraryFile = libraryFile;
+        this.libraryCacheDir = libraryCacheDir;
         this.downloadDataIfNeeded = downloadDataIfNeeded;
         this.senzing = senzing;
+        this.parserEnabled = parserEnabled;
+        this.expanderEnabled = expanderEnabled;
+        this.dataChecksums = Collections.unmodifiableMap(new HashMap<>(dataChecksums));
+        this.backend = backend;
+        this.executionMode = executionMode;
+        this.internCapacity = internCapacity;
     }
 
     public String getDataDir() {
@@ -30,6 +67,10 @@ public final class Config {
         return libraryFile;
     }
 
+    public String getLibraryCacheDir() {
+        return libraryCacheDir;
+    }
+
     public Boolean getDownloadDataIfNeeded() {
         return downloadDataIfNeeded;
     }
@@ -38,12 +79,53 @@ public final class Config {
         return senzing;
     }
 
+    public Boolean getParserEnabled() {
+        return parserEnabled;
+    }
+
+    public Boolean getExpanderEnabled() {
+        return expanderEnabled;
+    }
+
+    public Map<String, String> getDataChecksums() {
+        return dataChecksums;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public int getInternCapacity() {
+        return internCapacity;
+    }
+
+    /**
+     * Returns the libpostal modules this config allows to be loaded, which also determines the data that is
+     * downloaded when {@link #getDownloadDataIfNeeded()} is set.
+     */
+    Set<LibPostal.Module> getModules() {
+        Set<LibPostal.Module> modules = EnumSet.of(LibPostal.Module.BASE);
+        if (parserEnabled) {
+            modules.add(LibPostal.Module.PARSER);
+        }
+        if (expanderEnabled) {
+            modules.add(LibPostal.Module.LANGUAGE_CLASSIFIER);
+        }
+        return Collections.unmodifiableSet(modules);
+    }
+
     void loadLibrary() {
-        if (this.libraryFile != null) {
+        if (backend == Backend.FFM) {
+            loadPostalLibrary();
+        } else if (this.libraryFile != null) {
             System.load(this.libraryFile);
         } else {
             try {
-                loadLibsFromJar();
+                loadLibsFromJar(libraryCacheDir == null ? defaultLibraryCacheDir() : Paths.get(libraryCacheDir));
             } catch (UnsatisfiedLinkError ex) {
                 System.loadLibrary("jpostal");
             }
@@ -51,6 +133,26 @@ public final class Config {
         libsLoaded = true;
     }
 
+    /**
+     * Loads only libpostal itself, whose symbols the FFM backend then finds through the class loader.
+     */
+    private void loadPostalLibrary() {
+        if (this.libraryFile != null) {
+            System.load(this.libraryFile);
+            return;
+        }
+        synchronized (Config.class) {
+            if (libsLoaded) {
+                return;
+            }
+            try {
+                loadLibraryFromJar("postal", libraryCacheDir == null ? defaultLibraryCacheDir() : Paths.get(libraryCacheDir));
+            } catch (UnsatisfiedLinkError ex) {
+                System.loadLibrary("postal");
+            }
+        }
+    }
+
     static IllegalArgumentException mismatchException(final Config current, final Config requested) {
         return new IllegalArgumentException(String.format("Config mismatch: initialized instance uses [%s], but requested [%s]", current, requested));
     }
@@ -80,13 +182,29 @@ public final class Config {
     public static class Builder {
         private String dataDir;
         private String libraryFile;
+        private String libraryCacheDir;
         private boolean downloadDataIfNeeded = false;
         private boolean senzing = false;
+        private boolean parserEnabled = true;
+        private boolean expanderEnabled = true;
+        private final Map<String, String> dataChecksums = new HashMap<>();
+        private Backend backend = defaultBackend();
+        private ExecutionMode executionMode = ExecutionMode.CALLER_THREAD;
+        private int internCapacity = 0;
 
         private Builder() {}
 
         public Config build() {
-            return new Config(dataDir, libraryFile, downloadDataIfNeeded, senzing);
+            return new Config(dataDir, libraryFile, libraryCacheDir, downloadDataIfNeeded, senzing, parserEnabled,
+                    expanderEnabled, dataChecksums, backend, executionMode, internCapacity);
+        }
+
+        private static Backend defaultBackend() {
+            final String configured = System.getProperty("jpostal.backend");
+            if (configured == null || configured.isEmpty()) {
+                return Backend.JNI;
+            }
+            return Backend.valueOf(configured.toUpperCase(Locale.ROOT));
         }
 
         public Builder dataDir(final String dataDir) {
@@ -99,6 +217,16 @@ public final class Config {
             return this;
         }
 
+        /**
+         * Directory where the native libraries bundled in the jar are extracted, under a name derived from their
+         * content so that later JVMs on the host load the existing copy. Defaults to the
+         * {@code jpostal.library.cache.dir} system property, or a per-user directory under {@code java.io.tmpdir}.
+         */
+        public Builder libraryCacheDir(final String libraryCacheDir) {
+            this.libraryCacheDir = libraryCacheDir;
+            return this;
+        }
+
         public Builder downloadDataIfNeeded(final boolean downloadDataIfNeeded) {
             this.downloadDataIfNeeded = downloadDataIfNeeded;
             return this;
@@ -108,9 +236,100 @@ public final class Config {
             this.senzing = senzing;
             return this;
         }
+
+        /**
+         * Whether {@link AddressParser} may be initialized with this config. Disabling it for expand-only workloads
+         * skips downloading the parser model, the largest part of the libpostal data.
+         */
+        public Builder parserEnabled(final boolean parserEnabled) {
+            this.parserEnabled = parserEnabled;
+            return this;
+        }
+
+        /**
+         * Whether {@link AddressExpander} may be initialized with this config. Disabling it for parse-only workloads
+         * skips downloading and loading the language classifier.
+         */
+        public Builder expanderEnabled(final boolean expanderEnabled) {
+            this.expanderEnabled = expanderEnabled;
+            return this;
+        }
+
+        /**
+         * Requires a downloaded data archive (e.g. "parser.tar.gz") to have the given hex SHA-256 digest.
+         * A mismatch fails the download before any of its data is moved into the data directory.
+         */
+        public Builder dataChecksum(final String archive, final String sha256) {
+            this.dataChecksums.put(archive, sha256);
+            return this;
+        }
+
+        /**
+         * How to call libpostal. Defaults to the {@code jpostal.backend} system property ("jni" or "ffm"), or
+         * {@link Backend#JNI}. With {@link Backend#FFM}, {@link #libraryFile} names libpostal itself, since there is no
+         * glue library. The backend is fixed by the config that first initializes libpostal in the process.
+         */
+        public Builder backend(final Backend backend) {
+            if (backend == null) {
+                throw new NullPointerException("Backend must not be null");
+            }
+            this.backend = backend;
+            return this;
+        }
+
+        /**
+         * Which threads run the native calls. Defaults to {@link ExecutionMode#CALLER_THREAD}; use
+         * {@link ExecutionMode#NATIVE_THREADS} when calling jpostal from virtual threads. Like the backend, it is fixed
+         * by the config that first initializes libpostal in the process.
+         */
+        public Builder executionMode(final ExecutionMode executionMode) {
+            if (executionMode == null) {
+                throw new NullPointerException("ExecutionMode must not be null");
+            }
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        /**
+         * Caches up to about this many distinct component values, so that parsed components with the same value
+         * share one String; see {@link ComponentInterner}. Worth it for jobs that keep many parse results in memory.
+         * Defaults to 0, which disables the cache. Like the backend, it is fixed by the config that first initializes
+         * libpostal in the process.
+         */
+        public Builder internCapacity(final int internCapacity) {
+            if (internCapacity < 0) {
+                throw new IllegalArgumentException("internCapacity must not be negative, got " + internCapacity);
+            }
+            this.internCapacity = internCapacity;
+            return this;
+        }
+    }
+
+    /**
+     * Returns the build of a native library loaded from the jar: "baseline", or the instruction set variant picked
+     * for this CPU, e.g. "avx2". Returns null when the library was not loaded from the jar.
+     */
+    public static synchronized String getLoadedVariant(final String libraryName) {
+        return loadedVariants.get(libraryName);
+    }
+
+    /**
+     * Returns the files that the native libraries loaded from the jar were extracted to, by library name.
+     */
+    static synchronized Map<String, Path> getExtractedLibraries() {
+        return new HashMap<>(extractedLibraries);
     }
 
     public static synchronized void loadLibraryFromJar(String libraryName) {
+        loadLibraryFromJar(libraryName, defaultLibraryCacheDir());
+    }
+
+    /**
+     * Loads a native library bundled in the jar, extracting it into {@code cacheDir} unless an identical copy is
+     * already there. When the jar holds builds of the library for several instruction sets, the best one this CPU
+     * supports is loaded; see the {@code jpostal.cpu.variant} system property to override the choice.
+     */
+    public static synchronized void loadLibraryFromJar(String libraryName, Path cacheDir) {
         if (libsLoaded) {
             return;
         }
@@ -149,29 +368,170 @@ public final class Config {
             throw new UnsupportedOperationException("Unsupported architecture: " + osArch);
         }
 
-        fullPathInJar = "/" + nativeLibOSName + "-" + nativeLibArchName + "/" + nativeLibFileName;
+        // Prefer a build for the instruction sets of this CPU over the baseline build.
+        InputStream in = null;
+        String variant = null;
+        fullPathInJar = null;
+        for (String directory : NativeVariants.directories(nativeLibOSName, nativeLibArchName)) {
+            fullPathInJar = directory + nativeLibFileName;
+            in = Config.class.getResourceAsStream(fullPathInJar);
+            if (in != null) {
+                variant = NativeVariants.name(directory, nativeLibOSName, nativeLibArchName);
+                break;
+            }
+        }
 
-        try (InputStream in = Config.class.getResourceAsStream(fullPathInJar)) {
-            if (in == null) {
+        try (InputStream resource = in) {
+            if (resource == null) {
                 throw new UnsatisfiedLinkError("Native library " + fullPathInJar + " not found in JAR");
             }
 
-            File tempFile = File.createTempFile("lib", nativeLibFileName.substring(nativeLibFileName.lastIndexOf('.')));
-            tempFile.deleteOnExit();
-            Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            System.load(tempFile.getAbsolutePath());
+            byte[] library = readFully(resource);
+            Path libraryPath;
+            try {
+                libraryPath = extractToCache(library, nativeLibFileName, cacheDir);
+            } catch (IOException e) {
+                // Fall back to a private copy if the cache directory is not usable or not safe. The temporary file
+                // has a random name and, on POSIX file systems, is readable and writable by the owner only.
+                libraryPath = Files.createTempFile("lib", nativeLibFileName.substring(nativeLibFileName.lastIndexOf('.')));
+                libraryPath.toFile().deleteOnExit();
+                Files.write(libraryPath, library);
+            }
+            System.load(libraryPath.toAbsolutePath().toString());
+            loadedVariants.put(libraryName, variant);
+            extractedLibraries.put(libraryName, libraryPath);
         } catch (IOException e) {
             throw new UnsatisfiedLinkError("Failed to load native library " + libraryName + ": " + e.getMessage());
         }
     }
 
-    private static synchronized void loadLibsFromJar() {
+    static Path defaultLibraryCacheDir() {
+        String configured = System.getProperty("jpostal.library.cache.dir");
+        if (configured != null && !configured.isEmpty()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("java.io.tmpdir"), "jpostal-" + System.getProperty("user.name", "unknown"));
+    }
+
+    /**
+     * Returns the path of {@code library} in the cache, writing it first if it is missing. The file lives in a
+     * directory named after the SHA-256 of its content, so a path is only ever written with one content. It is
+     * written to a temporary file and renamed into place, which makes concurrent extraction by several processes
+     * safe: they all end up loading a complete file.
+     *
+     * The cache holds code that gets loaded into the JVM, and the default one sits in the shared temporary directory
+     * under a predictable name. On POSIX file systems, the cache directories, and every directory between them and
+     * {@code java.io.tmpdir}, must therefore be owned by the current user and not be writable by anyone else, or an
+     * {@link IOException} is thrown. A cached file is only reused if its bytes are those of {@code library}.
+     */
+    static Path extractToCache(final byte[] library, final String fileName, final Path cacheDir) throws IOException {
+        final Path dir = cacheDir.resolve(sha256(library));
+        final Path target = dir.resolve(fileName);
+        createPrivateDirectory(cacheDir);
+        createPrivateDirectory(dir);
+        checkPrivate(cacheDir, dir);
+
+        if (Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS)) {
+            if (Arrays.equals(Files.readAllBytes(target), library)) {
+                return target;
+            }
+            // Not what its name promises, so it was tampered with or cut short: replace it.
+            Files.delete(target);
+        }
+
+        final Path temp = Files.createTempFile(dir, fileName, ".tmp");
+        try {
+            Files.write(temp, library);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Another process won the race with identical content.
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return target;
+    }
+
+    private static void createPrivateDirectory(final Path dir) throws IOException {
+        if (Files.isDirectory(dir) || !isPosix()) {
+            Files.createDirectories(dir);
+            return;
+        }
+        try {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (FileAlreadyExistsException ignored) {
+            // Created concurrently.
+        }
+    }
+
+    // Throws unless the cache directories and their parents below java.io.tmpdir belong to the current user alone.
+    private static void checkPrivate(final Path cacheDir, final Path dir) throws IOException {
+        if (!isPosix()) {
+            return;
+        }
+        final UserPrincipal user = FileSystems.getDefault().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        final Path tmpDir = Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize();
+        checkPrivate(dir, user);
+        Path path = cacheDir.toAbsolutePath().normalize();
+        do {
+            checkPrivate(path, user);
+            path = path.getParent();
+        } while (path != null && path.startsWith(tmpDir) && !path.equals(tmpDir));
+    }
+
+    private static void checkPrivate(final Path path, final UserPrincipal user) throws IOException {
+        final PosixFileAttributes attributes = Files.readAttributes(path, PosixFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isDirectory()) {
+            throw new IOException("Library cache path " + path + " is not a directory");
+        }
+        if (!attributes.owner().equals(user)) {
+            throw new IOException("Library cache directory " + path + " is owned by " + attributes.owner().getName()
+                    + ", not " + user.getName());
+        }
+        final Set<PosixFilePermission> permissions = attributes.permissions();
+        if (permissions.contains(PosixFilePermission.GROUP_WRITE)
+                || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+            throw new IOException("Library cache directory " + path + " is writable by other users: "
+                    + PosixFilePermissions.toString(permissions));
+        }
+    }
+
+    private static boolean isPosix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+        byte[] buffer = new byte[1 << 16];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(final byte[] data) {
+        try {
+            StringBuilder sb = new StringBuilder(64);
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static synchronized void loadLibsFromJar(final Path cacheDir) {
         if (libsLoaded) {
             return;
         }
         // both should be present in the JAR
-        loadLibraryFromJar("postal");
-        loadLibraryFromJar("jpostal");
+        loadLibraryFromJar("postal", cacheDir);
+        loadLibraryFromJar("jpostal", cacheDir);
         libsLoaded = true;
     }
 }
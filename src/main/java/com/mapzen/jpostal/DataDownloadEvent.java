@@ -0,0 +1,31 @@
+package com.mapzen.jpostal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Recorded for the download and extraction of each libpostal data archive.
+ */
+@Name("jpostal.DataDownload")
+@Label("Data Download")
+@Category("jpostal")
+final class DataDownloadEvent extends Event {
+    @Label("Archive")
+    String archive;
+
+    @Label("URL")
+    String url;
+
+    @Label("Downloaded")
+    @DataAmount
+    long bytes;
+
+    @Label("Retries")
+    int retries;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
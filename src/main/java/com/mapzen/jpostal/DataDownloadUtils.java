@@ -1,34 +1,83 @@
 package com.mapzen.jpostal;
 
 import java.io.*;
-import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 
 public class DataDownloadUtils {
 
-    private static final String LIBPOSTAL_DATA_FILE="libpostal_data.tar.gz";
-    private static final String LIBPOSTAL_PARSER_FILE="parser.tar.gz";
-    private static final String LIBPOSTAL_LANG_CLASS_FILE="language_classifier.tar.gz";
-    private static final String[] LIBPOST_ARCHIVES = {LIBPOSTAL_DATA_FILE, LIBPOSTAL_PARSER_FILE, LIBPOSTAL_LANG_CLASS_FILE};
+    private static final String STAGING_PREFIX = ".jpostal-staging-";
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_RETRIES = 5;
+    // Staging directories are only removed by other runs once they are this old, so that concurrent downloads into
+    // the same data directory from several processes do not delete each other's work.
+    private static final long STALE_STAGING_MILLIS = 24L * 60 * 60 * 1000;
 
     public static Boolean isDataDirPopulated(String dataDir) {
+        return isDataDirPopulated(dataDir, EnumSet.allOf(LibPostal.Module.class));
+    }
+
+    /**
+     * Returns whether the data directories of the given modules are all present. Directories written by
+     * {@link #populateDataDir} only appear once their archive was completely extracted and verified.
+     */
+    public static Boolean isDataDirPopulated(String dataDir, Set<LibPostal.Module> modules) {
         Path dataPath = Paths.get(dataDir);
-        return Files.exists(dataPath.resolve("transliteration"))
-                && Files.exists(dataPath.resolve("numex"))
-                && Files.exists(dataPath.resolve("address_parser"))
-                && Files.exists(dataPath.resolve("address_expansions"))
-                && Files.exists(dataPath.resolve("language_classifier"));
+        for (LibPostal.Module module : modules) {
+            for (String directory : module.getDirectories()) {
+                if (!Files.exists(dataPath.resolve(directory))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public static void populateDataDir(String dst, Boolean senzing) {
+        populateDataDir(dst, senzing, EnumSet.allOf(LibPostal.Module.class));
+    }
+
+    public static void populateDataDir(String dst, Boolean senzing, Set<LibPostal.Module> modules) {
+        populateDataDir(dst, senzing, modules, Collections.emptyMap());
     }
 
     // Derived from https://github.com/openvenues/libpostal/blob/7855e6a243c9dbab652ca0e099cf050ce035dcc9/src/libpostal_data.in
-    public static synchronized void populateDataDir(String dst, Boolean senzing) {
+    /**
+     * Downloads and extracts the data archives of the given modules only, so that parse-only or expand-only
+     * deployments do not fetch models they never load.
+     *
+     * The archives are downloaded concurrently and extracted while they stream in, into a staging directory next to
+     * the data directories. Dropped connections are resumed with HTTP range requests. Archives listed in
+     * {@code expectedSha256} (keyed by archive file name, e.g. "parser.tar.gz") must match the given hex digest.
+     * Only when every archive was extracted and verified are the extracted directories renamed into place, so an
+     * interrupted run never leaves a directory that {@link #isDataDirPopulated} would accept.
+     */
+    public static synchronized void populateDataDir(String dst, Boolean senzing, Set<LibPostal.Module> modules,
+                                                    Map<String, String> expectedSha256) {
         if (dst == null || dst.isEmpty()) {
             throw new IllegalArgumentException("Data directory must not be null or empty");
         }
@@ -43,64 +92,189 @@ public class DataDownloadUtils {
             versionUrlParam = "/v1.0.0/"; // for some reason, v1.1.0 doesn't exist in the GitHub releases
         }
 
-        Path dataDir = Paths.get(dst);
+        populateDataDir(Paths.get(dst), originUrl + versionUrlParam, modules, expectedSha256);
+    }
+
+    static void populateDataDir(Path dataDir, String baseUrl, Set<LibPostal.Module> modules,
+                                Map<String, String> expectedSha256) {
+        Path staging;
         try {
             if (!Files.exists(dataDir)) {
                 Files.createDirectories(dataDir);
             }
+            deleteStaleStagingDirs(dataDir);
+            staging = Files.createTempDirectory(dataDir, STAGING_PREFIX);
         } catch (IOException e) {
             throw new RuntimeException("Failed to create data directory", e);
         }
 
-        for (String archive : LIBPOST_ARCHIVES) {
-            Path archivePath = dataDir.resolve(archive);
-            String archiveUrl = originUrl + versionUrlParam + archive;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, modules.size()), runnable -> {
+            Thread thread = new Thread(runnable, "jpostal-download");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> downloads = new ArrayList<>();
+            for (LibPostal.Module module : modules) {
+                String archive = module.getArchive();
+                String expected = expectedSha256 == null ? null : expectedSha256.get(archive);
+                downloads.add(executor.submit(() -> {
+                    downloadAndExtract(new URL(baseUrl + archive), staging, archive, expected);
+                    return null;
+                }));
+            }
+            for (Future<?> download : downloads) {
+                try {
+                    download.get();
+                } catch (ExecutionException e) {
+                    for (Future<?> other : downloads) {
+                        other.cancel(true);
+                    }
+                    throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while downloading libpostal data", e);
+                }
+            }
+
+            moveIntoPlace(staging, dataDir);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to move libpostal data into " + dataDir, e);
+        } finally {
+            executor.shutdownNow();
             try {
-                downloadFile(archiveUrl, archivePath);
-                extractTarGz(archivePath, dataDir);
-                Files.deleteIfExists(archivePath);
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to download or extract " + archive, e);
+                deleteRecursively(staging);
+            } catch (IOException ignored) {
+                // A leftover staging directory is removed by a later run once it is stale.
             }
         }
     }
 
-    private static void downloadFile(String urlStr, Path dest) throws IOException {
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestProperty("User-Agent", "jpostal-java");
-        conn.setConnectTimeout(15000);
-        conn.setReadTimeout(30000);
-        try (InputStream in = conn.getInputStream()) {
-            Files.copy(in, dest, StandardCopyOption.REPLACE_EXISTING);
+    private static void downloadAndExtract(URL url, Path staging, String archive, String expectedSha256) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        final DataDownloadEvent event = new DataDownloadEvent();
+        event.begin();
+        try {
+            try (ResumableHttpInputStream http = new ResumableHttpInputStream(url, MAX_RETRIES);
+                 DigestInputStream digested = new DigestInputStream(new BufferedInputStream(http, BUFFER_SIZE), digest)) {
+                extractTarGz(new GZIPInputStream(digested, BUFFER_SIZE), staging);
+                // The tar reader can stop before the end of the archive, but the digest must cover every byte.
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (digested.read(buffer) != -1) {
+                    // drain
+                }
+                event.bytes = http.getPosition();
+                event.retries = http.getRetries();
+            } catch (IOException e) {
+                throw new IOException("Failed to download or extract " + archive + ": " + e.getMessage(), e);
+            }
+
+            if (expectedSha256 != null) {
+                String actual = toHex(digest.digest());
+                if (!actual.equalsIgnoreCase(expectedSha256)) {
+                    throw new IOException("SHA-256 mismatch for " + archive + ": expected " + expectedSha256 + ", got " + actual);
+                }
+            }
+            event.succeeded = true;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.archive = archive;
+                event.url = url.toString();
+                event.commit();
+            }
         }
     }
 
-    private static void extractTarGz(Path tarGzPath, Path destDir) throws IOException {
-        try (InputStream fi = Files.newInputStream(tarGzPath);
-             GZIPInputStream gzi = new GZIPInputStream(fi);
-             TarArchiveInputStream tarIn = new TarArchiveInputStream(gzi)) {
-            TarArchiveEntry entry;
-            while ((entry = tarIn.getNextTarEntry()) != null) {
-                Path entryPath = destDir.resolve(entry.getName());
-                if (entry.isDirectory()) {
-                    Files.createDirectories(entryPath);
-                } else {
-                    if (!Files.exists(entryPath.getParent())) {
-                        Files.createDirectories(entryPath.getParent());
-                    }
-                    try (OutputStream out = Files.newOutputStream(entryPath)) {
-                        byte[] buffer = new byte[4096];
-                        int len;
-                        while ((len = tarIn.read(buffer)) != -1) {
-                            out.write(buffer, 0, len);
-                        }
+    private static void extractTarGz(InputStream gzipped, Path destDir) throws IOException {
+        Path root = destDir.normalize();
+        TarArchiveInputStream tarIn = new TarArchiveInputStream(gzipped);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        TarArchiveEntry entry;
+        while ((entry = tarIn.getNextEntry()) != null) {
+            Path entryPath = root.resolve(entry.getName()).normalize();
+            if (!entryPath.startsWith(root)) {
+                throw new IOException("Archive entry " + entry.getName() + " is outside of the data directory");
+            }
+            if (entry.isDirectory()) {
+                Files.createDirectories(entryPath);
+            } else {
+                if (!Files.exists(entryPath.getParent())) {
+                    Files.createDirectories(entryPath.getParent());
+                }
+                try (OutputStream out = Files.newOutputStream(entryPath)) {
+                    int len;
+                    while ((len = tarIn.read(buffer)) != -1) {
+                        out.write(buffer, 0, len);
                     }
                 }
             }
         }
     }
 
+    /**
+     * Renames each extracted top-level directory into the data directory, replacing an existing copy. Each rename is
+     * atomic, so a directory is either absent, the previous version, or completely extracted.
+     */
+    private static void moveIntoPlace(Path staging, Path dataDir) throws IOException {
+        Path replaced = Files.createTempDirectory(dataDir, STAGING_PREFIX);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(staging)) {
+            for (Path entry : entries) {
+                Path target = dataDir.resolve(entry.getFileName().toString());
+                if (Files.exists(target)) {
+                    Files.move(target, replaced.resolve(entry.getFileName().toString()), StandardCopyOption.ATOMIC_MOVE);
+                }
+                Files.move(entry, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            deleteRecursively(replaced);
+        }
+    }
+
+    private static void deleteStaleStagingDirs(Path dataDir) throws IOException {
+        long cutoff = System.currentTimeMillis() - STALE_STAGING_MILLIS;
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(dataDir, STAGING_PREFIX + "*")) {
+            for (Path dir : stale) {
+                if (Files.getLastModifiedTime(dir).toMillis() < cutoff) {
+                    deleteRecursively(dir);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format(Locale.ROOT, "%02x", b));
+        }
+        return sb.toString();
+    }
+
     public static void populateDataDir(String dst) {
         populateDataDir(dst, false);
     }
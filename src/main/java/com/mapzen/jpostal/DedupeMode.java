@@ -0,0 +1,16 @@
+package com.mapzen.jpostal;
+
+/**
+ * Which addresses of a batch are treated as the same, so that libpostal processes them once and they share the result.
+ */
+public enum DedupeMode {
+    /** Every address is processed. */
+    NONE,
+    /** Addresses with identical text are processed once. */
+    EXACT,
+    /**
+     * Addresses that are identical after trimming surrounding whitespace and lowercasing are processed once, as the
+     * first of them. The parser lowercases its input anyway; for expansions, use this with lowercasing enabled.
+     */
+    NORMALIZED
+}
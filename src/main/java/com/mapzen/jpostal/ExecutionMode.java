@@ -0,0 +1,15 @@
+package com.mapzen.jpostal;
+
+/**
+ * Which threads run the libpostal calls of {@link AddressParser} and {@link AddressExpander}.
+ */
+public enum ExecutionMode {
+    /** On the calling thread. The cheapest mode for platform threads. */
+    CALLER_THREAD,
+    /**
+     * On dedicated platform threads, one per parser and expander, while the caller waits without holding a monitor.
+     * A virtual thread on JDK 21 stays pinned to its carrier for the whole of a native call, so with this mode
+     * virtual threads calling jpostal park instead and leave their carriers free for other work.
+     */
+    NATIVE_THREADS
+}
@@ -0,0 +1,21 @@
+package com.mapzen.jpostal;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Recorded for each {@link AddressExpander} call, single or batch, including expansion hashes.
+ */
+@Name("jpostal.Expand")
+@Label("Expand")
+final class ExpandEvent extends NativeCallEvent {
+    /**
+     * Ends the event and commits it if it passes its threshold. See {@link #commit}.
+     */
+    void finish(final Object input, final Object results, final ExpanderOptions options) {
+        end();
+        if (shouldCommit()) {
+            commit(input, results, options.getPriority(), options.fingerprint());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.mapzen.jpostal;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A parsed component together with its normalized variants, expanded with the rules for its label: street rules for
+ * a road, house number rules for a house number, and so on. Returned by
+ * {@link AddressParser#parseAndExpand(String, ParserOptions, ExpanderOptions)}.
+ */
+public class ExpandedComponent extends ParsedComponent {
+    private static final long serialVersionUID = 1L;
+
+    private String[] expansions;
+
+    public String[] getExpansions() {
+        return this.expansions;
+    }
+
+    public void setExpansions(String[] expansions) {
+        this.expansions = expansions;
+    }
+
+    /**
+     * For deserialization only.
+     */
+    public ExpandedComponent() {
+    }
+
+    public ExpandedComponent(String value, String label, String[] expansions) {
+        super(value, label);
+        this.expansions = expansions;
+    }
+
+    public ExpandedComponent(byte[] value, String label, byte[][] expansions) {
+        super(value, label);
+        this.expansions = new String[expansions.length];
+        for (int i = 0; i < expansions.length; i++) {
+            this.expansions[i] = new String(expansions[i], StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        super.writeExternal(out);
+        ComponentCodec.writeExpansions(out, expansions);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        super.readExternal(in);
+        this.expansions = ComponentCodec.readExpansions(in);
+    }
+}
@@ -1,5 +1,8 @@
 package com.mapzen.jpostal;
 
+import java.time.Duration;
+import java.util.Arrays;
+
 public class ExpanderOptions {
 
     private String[] languages;
@@ -22,6 +25,13 @@ public class ExpanderOptions {
     private boolean deleteApostrophes;
     private boolean expandNumex;
     private boolean romanNumerals;
+    private InputLimits inputLimits;
+    private Priority priority;
+    private DedupeMode dedupe;
+
+    String[] getLanguages() {
+        return languages;
+    }
 
     public short getAddressComponents() {
         return this.addressComponents;
@@ -99,6 +109,47 @@ public class ExpanderOptions {
         return this.romanNumerals;
     }
 
+    public int getMaxInputBytes() {
+        return this.inputLimits.getMaxBytes();
+    }
+
+    public int getMaxTokens() {
+        return this.inputLimits.getMaxTokens();
+    }
+
+    public InputLimitPolicy getInputLimitPolicy() {
+        return this.inputLimits.getPolicy();
+    }
+
+    public Duration getTimeBudget() {
+        return this.inputLimits.getTimeBudget();
+    }
+
+    public Priority getPriority() {
+        return this.priority;
+    }
+
+    public DedupeMode getDedupe() {
+        return this.dedupe;
+    }
+
+    InputLimits getInputLimits() {
+        return inputLimits;
+    }
+
+    /**
+     * Returns a hash of the options that affect libpostal's output, for telling calls apart in JFR events.
+     */
+    int fingerprint() {
+        final boolean[] flags = {
+                latinAscii, transliterate, stripAccents, decompose, lowercase, trimString, dropParentheticals,
+                replaceNumericHyphens, deleteNumericHyphens, splitAlphaFromNumeric, replaceWordHyphens,
+                deleteWordHyphens, deleteFinalPeriods, deleteAcronymPeriods, dropEnglishPossessives,
+                deleteApostrophes, expandNumex, romanNumerals
+        };
+        return (Arrays.hashCode(languages) * 31 + addressComponents) * 31 + Arrays.hashCode(flags);
+    }
+
     public void setAddressComponents(short addressComponents) {
         this.addressComponents = addressComponents;
     }
@@ -196,8 +247,14 @@ public class ExpanderOptions {
         private boolean deleteApostrophes;
         private boolean expandNumex;
         private boolean romanNumerals;
+        private int maxInputBytes = InputLimits.UNLIMITED;
+        private int maxTokens = InputLimits.UNLIMITED;
+        private InputLimitPolicy inputLimitPolicy = InputLimitPolicy.REJECT;
+        private Duration timeBudget;
+        private Priority priority = Priority.INTERACTIVE;
+        private DedupeMode dedupe = DedupeMode.NONE;
 
-        private native void setDefaultOptions();
+        native void setDefaultOptions();
 
         public Builder() {
             if (!AddressExpander.isInitialized()) {
@@ -205,7 +262,7 @@ public class ExpanderOptions {
             }
 
             synchronized (ExpanderOptions.class) {
-                setDefaultOptions(); // Load default options from libpostal into this Builder.
+                LibPostal.currentCalls().setDefaultOptions(this); // Load default options from libpostal into this Builder.
             }
         }
 
@@ -309,6 +366,71 @@ public class ExpanderOptions {
             return this;
         }
 
+        /**
+         * Limits the UTF-8 length of each address passed to libpostal. Longer addresses are handled according to
+         * {@link #inputLimitPolicy}. Unlimited by default.
+         */
+        public Builder maxInputBytes(int maxInputBytes) {
+            this.maxInputBytes = InputLimits.checkLimit("maxInputBytes", maxInputBytes);
+            return this;
+        }
+
+        /**
+         * Limits the number of tokens (runs of letters and digits) of each address passed to libpostal. The number
+         * of expansions grows quickly with the number of tokens, so this bounds the work of a single call. Longer
+         * addresses are handled according to {@link #inputLimitPolicy}. Unlimited by default.
+         */
+        public Builder maxTokens(int maxTokens) {
+            this.maxTokens = InputLimits.checkLimit("maxTokens", maxTokens);
+            return this;
+        }
+
+        /**
+         * Whether addresses over the limits are rejected, getting no expansions, or truncated. Defaults to
+         * {@link InputLimitPolicy#REJECT}. Either way they are counted by {@link AddressExpander#getRejectedCount()}
+         * or {@link AddressExpander#getTruncatedCount()}.
+         */
+        public Builder inputLimitPolicy(InputLimitPolicy inputLimitPolicy) {
+            if (inputLimitPolicy == null) {
+                throw new NullPointerException("InputLimitPolicy must not be null");
+            }
+            this.inputLimitPolicy = inputLimitPolicy;
+            return this;
+        }
+
+        /**
+         * Bounds how long a call waits for other expansions to finish before it gives up with a
+         * {@link java.util.concurrent.RejectedExecutionException}. Null (the default) waits indefinitely.
+         */
+        public Builder timeBudget(Duration timeBudget) {
+            this.timeBudget = InputLimits.checkTimeBudget(timeBudget);
+            return this;
+        }
+
+        /**
+         * The traffic class of calls with these options. Defaults to {@link Priority#INTERACTIVE}; bulk jobs sharing
+         * the JVM with online requests should use {@link Priority#BATCH}.
+         */
+        public Builder priority(Priority priority) {
+            if (priority == null) {
+                throw new NullPointerException("Priority must not be null");
+            }
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Which addresses of a batch are processed once and share their result; see {@link DedupeMode}. Defaults to
+         * {@link DedupeMode#NONE}. Only batch calls deduplicate, and only within a batch.
+         */
+        public Builder dedupe(DedupeMode dedupe) {
+            if (dedupe == null) {
+                throw new NullPointerException("DedupeMode must not be null");
+            }
+            this.dedupe = dedupe;
+            return this;
+        }
+
         public ExpanderOptions build() {
             return new ExpanderOptions(this);
         }
@@ -337,6 +459,10 @@ public class ExpanderOptions {
         deleteApostrophes = builder.deleteApostrophes;
         expandNumex = builder.expandNumex;
         romanNumerals = builder.romanNumerals;
+        inputLimits = new InputLimits(builder.maxInputBytes, builder.maxTokens, builder.inputLimitPolicy,
+                builder.timeBudget);
+        priority = builder.priority;
+        dedupe = builder.dedupe;
     } 
 
 }
@@ -0,0 +1,188 @@
+package com.mapzen.jpostal;
+
+import java.util.Arrays;
+
+/**
+ * Posting lists from 64-bit keys to the records that have them, held in primitive arrays: an open-addressing table
+ * from key to the head of its list, and parallel arrays of entries linking each record to the next one with the same
+ * key. A posting costs 8 bytes, plus about 32 bytes per distinct key. Not thread-safe.
+ */
+final class HashPostings {
+    private static final int NONE = -1;
+
+    // Key table, with heads[slot] == NONE for free slots. lengths[slot] is the number of records posted under the key.
+    private long[] keys = new long[16];
+    private int[] heads = filled(16);
+    private int[] lengths = new int[16];
+    private int keyCount = 0;
+
+    // Entry i posts record entryRecords[i]; entryNext[i] is the previous entry with the same key.
+    private int[] entryRecords = new int[16];
+    private int[] entryNext = new int[16];
+    private int entryCount = 0;
+
+    // Record index to caller record id.
+    private long[] recordIds = new long[16];
+    private int recordCount = 0;
+
+    /**
+     * Adds a record with the given keys, ignoring repeated keys, and returns its index.
+     */
+    int add(final long recordId, final long[] recordKeys) {
+        if (recordCount == recordIds.length) {
+            recordIds = Arrays.copyOf(recordIds, recordCount * 2);
+        }
+        final int record = recordCount++;
+        recordIds[record] = recordId;
+
+        final long[] distinct = distinct(recordKeys);
+        for (long key : distinct) {
+            if (entryCount == entryRecords.length) {
+                entryRecords = Arrays.copyOf(entryRecords, entryCount * 2);
+                entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+            }
+            final int slot = slot(key);
+            if (heads[slot] == NONE) {
+                keys[slot] = key;
+                keyCount++;
+            }
+            entryRecords[entryCount] = record;
+            entryNext[entryCount] = heads[slot];
+            heads[slot] = entryCount++;
+            lengths[slot]++;
+            if (keyCount * 2 > keys.length) {
+                rehash();
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Returns the indexes of the records sharing at least one key with the given keys, paired with how many they
+     * share, best first: {@code result[0]} holds the record indexes and {@code result[1]} the counts. Keys posted for
+     * more than {@code maxRecords} records are skipped, for both retrieval and counting, so a query walks at most
+     * {@code maxRecords} postings per key. At most {@code limit} records are returned; ties are broken by insertion
+     * order.
+     */
+    int[][] candidates(final long[] queryKeys, final int limit, final int maxRecords) {
+        final long[] distinctKeys = distinct(queryKeys);
+        final int[] matches = new int[scannedPostings(distinctKeys, maxRecords)];
+        int matchCount = 0;
+        for (long key : distinctKeys) {
+            final int slot = slot(key);
+            if (lengths[slot] > maxRecords) {
+                continue;
+            }
+            for (int entry = heads[slot]; entry != NONE; entry = entryNext[entry]) {
+                matches[matchCount++] = entryRecords[entry];
+            }
+        }
+        if (matchCount == 0) {
+            return new int[][]{new int[0], new int[0]};
+        }
+
+        // Each record appears once per shared key, so sorting and counting runs gives the shared-key counts.
+        Arrays.sort(matches, 0, matchCount);
+        final int[] records = new int[matchCount];
+        final int[] counts = new int[matchCount];
+        int distinctCount = 0;
+        for (int i = 0; i < matchCount; i++) {
+            if (distinctCount > 0 && records[distinctCount - 1] == matches[i]) {
+                counts[distinctCount - 1]++;
+            } else {
+                records[distinctCount] = matches[i];
+                counts[distinctCount++] = 1;
+            }
+        }
+
+        // Rank by count, descending, then record index, packed into longs for a primitive sort.
+        final long[] ranked = new long[distinctCount];
+        for (int i = 0; i < distinctCount; i++) {
+            ranked[i] = (long) (Integer.MAX_VALUE - counts[i]) << 32 | records[i];
+        }
+        Arrays.sort(ranked);
+        final int size = Math.min(limit, distinctCount);
+        final int[][] result = {new int[size], new int[size]};
+        for (int i = 0; i < size; i++) {
+            result[0][i] = (int) ranked[i];
+            result[1][i] = Integer.MAX_VALUE - (int) (ranked[i] >>> 32);
+        }
+        return result;
+    }
+
+    /**
+     * Returns how many postings {@link #candidates} walks for the given distinct keys.
+     */
+    int scannedPostings(final long[] distinctKeys, final int maxRecords) {
+        int count = 0;
+        for (long key : distinctKeys) {
+            final int length = lengths[slot(key)];
+            if (length <= maxRecords) {
+                count += length;
+            }
+        }
+        return count;
+    }
+
+    long recordId(final int record) {
+        return recordIds[record];
+    }
+
+    int recordCount() {
+        return recordCount;
+    }
+
+    int keyCount() {
+        return keyCount;
+    }
+
+    int postingCount() {
+        return entryCount;
+    }
+
+    // Returns the slot of the key, or the free slot where it would go. Keys are hashes already, so their low bits are
+    // used as they are.
+    private int slot(final long key) {
+        final int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (heads[slot] != NONE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        final long[] oldKeys = keys;
+        final int[] oldHeads = heads;
+        final int[] oldLengths = lengths;
+        keys = new long[oldKeys.length * 2];
+        heads = filled(keys.length);
+        lengths = new int[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] != NONE) {
+                final int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                heads[slot] = oldHeads[i];
+                lengths[slot] = oldLengths[i];
+            }
+        }
+    }
+
+    private static long[] distinct(final long[] values) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    private static int[] filled(final int size) {
+        final int[] array = new int[size];
+        Arrays.fill(array, NONE);
+        return array;
+    }
+}
@@ -0,0 +1,70 @@
+package com.mapzen.jpostal;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * The outcome of {@link LibPostal#initializeAsync(Config)}: the initialized singletons and how long each startup
+ * phase took. Module setup times overlap, so they add up to more than the total.
+ */
+public final class InitializationReport {
+    private final AddressParser parser;
+    private final AddressExpander expander;
+    private final Duration downloadTime;
+    private final Duration libraryLoadTime;
+    private final Map<LibPostal.Module, Duration> moduleSetupTimes;
+    private final Duration totalTime;
+
+    InitializationReport(final AddressParser parser, final AddressExpander expander, final Duration downloadTime,
+                         final Duration libraryLoadTime, final Map<LibPostal.Module, Duration> moduleSetupTimes,
+                         final Duration totalTime) {
+        this.parser = parser;
+        this.expander = expander;
+        this.downloadTime = downloadTime;
+        this.libraryLoadTime = libraryLoadTime;
+        this.moduleSetupTimes = moduleSetupTimes;
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * Returns the parser, or null if the config disabled it.
+     */
+    public AddressParser getParser() {
+        return parser;
+    }
+
+    /**
+     * Returns the expander, or null if the config disabled it.
+     */
+    public AddressExpander getExpander() {
+        return expander;
+    }
+
+    /**
+     * Returns the time spent checking and, if needed, downloading the data directory.
+     */
+    public Duration getDownloadTime() {
+        return downloadTime;
+    }
+
+    /**
+     * Returns the time spent loading the native libraries.
+     */
+    public Duration getLibraryLoadTime() {
+        return libraryLoadTime;
+    }
+
+    public Map<LibPostal.Module, Duration> getModuleSetupTimes() {
+        return moduleSetupTimes;
+    }
+
+    public Duration getTotalTime() {
+        return totalTime;
+    }
+
+    @Override
+    public String toString() {
+        return "InitializationReport{" + "download=" + downloadTime + ",libraryLoad=" + libraryLoadTime
+                + ",modules=" + moduleSetupTimes + ",total=" + totalTime + '}';
+    }
+}
@@ -0,0 +1,11 @@
+package com.mapzen.jpostal;
+
+/**
+ * What to do with an address that exceeds the byte or token limit of its options.
+ */
+public enum InputLimitPolicy {
+    /** Skip the address: it is not passed to libpostal and gets an empty result. */
+    REJECT,
+    /** Cut the address down to the limits, at a token or character boundary, and process the rest. */
+    TRUNCATE
+}
@@ -0,0 +1,242 @@
+package com.mapzen.jpostal;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The input limits and time budget of a call, applied in Java before anything reaches libpostal. Every call holds
+ * the native lock for as long as libpostal works on its input, so one oversized address delays every other thread.
+ */
+final class InputLimits {
+    static final int UNLIMITED = Integer.MAX_VALUE;
+
+    static final InputLimits NONE = new InputLimits(UNLIMITED, UNLIMITED, InputLimitPolicy.REJECT, null);
+
+    private final int maxBytes;
+    private final int maxTokens;
+    private final InputLimitPolicy policy;
+    private final Duration timeBudget;
+
+    InputLimits(final int maxBytes, final int maxTokens, final InputLimitPolicy policy, final Duration timeBudget) {
+        this.maxBytes = maxBytes;
+        this.maxTokens = maxTokens;
+        this.policy = policy;
+        this.timeBudget = timeBudget;
+    }
+
+    static int checkLimit(final String name, final int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException(name + " must be positive, got " + limit);
+        }
+        return limit;
+    }
+
+    static Duration checkTimeBudget(final Duration timeBudget) {
+        if (timeBudget != null && (timeBudget.isNegative() || timeBudget.isZero())) {
+            throw new IllegalArgumentException("Time budget must be positive, got " + timeBudget);
+        }
+        return timeBudget;
+    }
+
+    int getMaxBytes() {
+        return maxBytes;
+    }
+
+    int getMaxTokens() {
+        return maxTokens;
+    }
+
+    InputLimitPolicy getPolicy() {
+        return policy;
+    }
+
+    Duration getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Returns the UTF-8 bytes of the address to pass to libpostal, or null if the address is rejected.
+     */
+    byte[] apply(final String address, final Counters counters) {
+        if (address == null) {
+            throw new NullPointerException("String address must not be null");
+        }
+        String limited = address;
+        if (maxTokens != UNLIMITED) {
+            final int end = endOfToken(address, maxTokens);
+            if (end < address.length()) {
+                if (policy == InputLimitPolicy.REJECT) {
+                    counters.rejected.increment();
+                    return null;
+                }
+                limited = address.substring(0, end);
+            }
+        }
+
+        byte[] bytes = limited.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxBytes) {
+            if (policy == InputLimitPolicy.REJECT) {
+                counters.rejected.increment();
+                return null;
+            }
+            int cut = maxBytes;
+            while (cut > 0 && (bytes[cut] & 0xC0) == 0x80) { // do not split a multi-byte character
+                cut--;
+            }
+            bytes = Arrays.copyOf(bytes, cut);
+        } else if (limited == address) {
+            return bytes;
+        }
+        counters.truncated.increment();
+        return bytes;
+    }
+
+    /**
+     * Applies the limits to each address of a batch. Rejected addresses are null in the result.
+     */
+    byte[][] apply(final List<String> addresses, final Counters counters) {
+        if (addresses == null) {
+            throw new NullPointerException("List addresses must not be null");
+        }
+        final byte[][] addressBytes = new byte[addresses.size()][];
+        int i = 0;
+        for (String address : addresses) {
+            addressBytes[i++] = apply(address, counters);
+        }
+        return addressBytes;
+    }
+
+    /**
+     * Takes the lock within the time budget, or waits for it indefinitely if there is none. A call that cannot start
+     * within its budget is rejected, counting all of its rows. libpostal itself cannot be interrupted, so the budget
+     * bounds the wait for other calls, and the byte and token limits bound the work of each call.
+     */
+    void lock(final PriorityLock lock, final Priority priority, final int rows, final Counters counters) {
+        lock(lock, priority, rows, counters, deadline());
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which a call starting now runs out of its time budget. Only meaningful
+     * with a budget.
+     */
+    long deadline() {
+        return timeBudget == null ? 0L : System.nanoTime() + timeBudget.toNanos();
+    }
+
+    /**
+     * Like {@link #lock(PriorityLock, Priority, int, Counters)}, but waits only until the {@link #deadline()}, so that
+     * a call taking several locks waits at most its time budget in total.
+     */
+    void lock(final PriorityLock lock, final Priority priority, final int rows, final Counters counters,
+              final long deadline) {
+        if (timeBudget == null) {
+            lock.lock(priority);
+            return;
+        }
+        try {
+            if (lock.tryLock(priority, deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            counters.rejected.add(rows);
+            throw new RejectedExecutionException("Interrupted while waiting for libpostal", e);
+        }
+        counters.rejected.add(rows);
+        throw new RejectedExecutionException("libpostal was busy for longer than the time budget of " + timeBudget);
+    }
+
+    // Returns the index just past the given token, or the length of the address if it has fewer tokens. Tokens are
+    // runs of letters and digits, as a cheap upper bound of what libpostal's tokenizer produces.
+    static int endOfToken(final String address, final int token) {
+        int tokens = 0;
+        boolean inToken = false;
+        for (int i = 0; i < address.length(); ) {
+            final int codePoint = address.codePointAt(i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (!inToken && ++tokens > token) {
+                    return trimEnd(address, i);
+                }
+                inToken = true;
+            } else {
+                inToken = false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return address.length();
+    }
+
+    private static int trimEnd(final String address, int end) {
+        while (end > 0 && !Character.isLetterOrDigit(address.codePointBefore(end))) {
+            end -= Character.charCount(address.codePointBefore(end));
+        }
+        return end;
+    }
+
+    /**
+     * Returns the accepted addresses of a batch, without the rejected nulls.
+     */
+    static byte[][] accepted(final byte[][] addressBytes) {
+        int count = 0;
+        for (byte[] bytes : addressBytes) {
+            if (bytes != null) {
+                count++;
+            }
+        }
+        if (count == addressBytes.length) {
+            return addressBytes;
+        }
+        final byte[][] accepted = new byte[count][];
+        int j = 0;
+        for (byte[] bytes : addressBytes) {
+            if (bytes != null) {
+                accepted[j++] = bytes;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Places the results of the accepted addresses back at their input positions, giving rejected ones {@code empty}.
+     */
+    static <T> T[] scatter(final byte[][] addressBytes, final T[] results, final T[] target, final T empty) {
+        if (results.length == addressBytes.length) {
+            return results;
+        }
+        int j = 0;
+        for (int i = 0; i < addressBytes.length; i++) {
+            target[i] = addressBytes[i] == null ? empty : results[j++];
+        }
+        return target;
+    }
+
+    /**
+     * Counts the addresses rejected or truncated by the limits of the calls of one parser or expander, and the
+     * addresses of its deduplicated batches.
+     */
+    static final class Counters {
+        final LongAdder rejected = new LongAdder();
+        final LongAdder truncated = new LongAdder();
+        final LongAdder dedupeRows = new LongAdder();
+        final LongAdder deduplicated = new LongAdder();
+
+        BatchDedupe dedupe(final byte[][] accepted, final DedupeMode mode) {
+            final BatchDedupe dedupe = BatchDedupe.of(accepted, mode);
+            if (mode != DedupeMode.NONE) {
+                dedupeRows.add(accepted.length);
+                deduplicated.add(dedupe.duplicates());
+            }
+            return dedupe;
+        }
+
+        double dedupeRatio() {
+            final long rows = dedupeRows.sum();
+            return rows == 0 ? 0.0 : (double) deduplicated.sum() / rows;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.mapzen.jpostal;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Calls libpostal through the JNI glue library.
+ */
+final class JniNativeCalls implements NativeCalls {
+    static final JniNativeCalls INSTANCE = new JniNativeCalls();
+
+    private JniNativeCalls() {}
+
+    @Override
+    public void setup(final LibPostal.Module module, final String dataDir) {
+        switch (module) {
+            case BASE:
+                if (dataDir == null) {
+                    LibPostal.setup();
+                } else {
+                    LibPostal.setupDataDir(dataDir);
+                }
+                break;
+            case PARSER:
+                if (dataDir == null) {
+                    AddressParser.setup();
+                } else {
+                    AddressParser.setupDataDir(dataDir);
+                }
+                break;
+            case LANGUAGE_CLASSIFIER:
+                if (dataDir == null) {
+                    AddressExpander.setup();
+                } else {
+                    AddressExpander.setupDataDir(dataDir);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown module " + module);
+        }
+    }
+
+    @Override
+    public void teardown(final LibPostal.Module module) {
+        switch (module) {
+            case BASE:
+                LibPostal.teardown();
+                break;
+            case PARSER:
+                AddressParser.teardown();
+                break;
+            case LANGUAGE_CLASSIFIER:
+                AddressExpander.teardown();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown module " + module);
+        }
+    }
+
+    @Override
+    public void setDefaultOptions(final ParserOptions.Builder builder) {
+        builder.setDefaultOptions();
+    }
+
+    @Override
+    public void setDefaultOptions(final ExpanderOptions.Builder builder) {
+        builder.setDefaultOptions();
+    }
+
+    @Override
+    public ParsedComponent[] parse(final byte[] address, final ParserOptions options) {
+        return AddressParser.libpostalParse(address, options);
+    }
+
+    @Override
+    public ParsedComponent[][] parseBatch(final byte[][] addresses, final ParserOptions options) {
+        return AddressParser.libpostalParseBatch(addresses, options);
+    }
+
+    @Override
+    public ExpandedComponent[] parseAndExpand(final byte[] address, final ParserOptions parserOptions,
+                                              final ExpanderOptions expanderOptions) {
+        return AddressParser.libpostalParseAndExpand(address, parserOptions, expanderOptions);
+    }
+
+    @Override
+    public String[] expand(final byte[] address, final ExpanderOptions options) {
+        return toStrings(AddressExpander.libpostalExpand(address, options));
+    }
+
+    @Override
+    public String[][] expandBatch(final byte[][] addresses, final ExpanderOptions options) {
+        final byte[][][] expansionBytes = AddressExpander.libpostalExpandBatch(addresses, options);
+        final String[][] expansions = new String[expansionBytes.length][];
+        for (int i = 0; i < expansionBytes.length; i++) {
+            expansions[i] = toStrings(expansionBytes[i]);
+        }
+        return expansions;
+    }
+
+    @Override
+    public long[] expandHashes(final byte[] address, final ExpanderOptions options) {
+        return AddressExpander.libpostalExpandHashes(address, options);
+    }
+
+    @Override
+    public long[][] expandHashesBatch(final byte[][] addresses, final ExpanderOptions options) {
+        return AddressExpander.libpostalExpandHashesBatch(addresses, options);
+    }
+
+    @Override
+    public long[] expandTokenHashes(final byte[] address, final ExpanderOptions options) {
+        return AddressExpander.libpostalExpandTokenHashes(address, options);
+    }
+
+    @Override
+    public long[][] expandTokenHashesBatch(final byte[][] addresses, final ExpanderOptions options) {
+        return AddressExpander.libpostalExpandTokenHashesBatch(addresses, options);
+    }
+
+    private static String[] toStrings(final byte[][] expansionBytes) {
+        final String[] expansions = new String[expansionBytes.length];
+        for (int i = 0; i < expansionBytes.length; i++) {
+            expansions[i] = new String(expansionBytes[i], StandardCharsets.UTF_8);
+        }
+        return expansions;
+    }
+}
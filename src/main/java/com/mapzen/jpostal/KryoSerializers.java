@@ -0,0 +1,85 @@
+package com.mapzen.jpostal;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Kryo serializers writing parse results in the {@link ComponentCodec} format, for Spark's Kryo serialization of
+ * shuffled and cached data. Register them from a {@code KryoRegistrator}:
+ *
+ * <pre>{@code
+ * public void registerClasses(Kryo kryo) {
+ *     KryoSerializers.register(kryo);
+ * }
+ * }</pre>
+ *
+ * Kryo's streams are read and written through the same code as {@link ComponentCodec} and Java serialization.
+ * Written against the Kryo 4 API that Spark ships; jpostal does not depend on Kryo, so only load this class when it is
+ * on the class path.
+ */
+public final class KryoSerializers {
+    private KryoSerializers() {}
+
+    /**
+     * Registers the serializers of {@link ParsedComponent}, {@link ExpandedComponent} and {@code ParsedComponent[]}.
+     */
+    public static void register(final Kryo kryo) {
+        final ComponentSerializer component = new ComponentSerializer();
+        kryo.register(ParsedComponent.class, component);
+        kryo.register(ExpandedComponent.class, component);
+        kryo.register(ParsedComponent[].class, new RowSerializer());
+    }
+
+    /**
+     * Serializes a single component, as one component of a {@link ComponentCodec} row.
+     */
+    public static final class ComponentSerializer extends Serializer<ParsedComponent> {
+        @Override
+        public void write(final Kryo kryo, final Output output, final ParsedComponent component) {
+            try {
+                ComponentCodec.writeComponent(new DataOutputStream(output), component);
+            } catch (IOException e) {
+                throw new KryoException(e);
+            }
+        }
+
+        @Override
+        public ParsedComponent read(final Kryo kryo, final Input input, final Class<ParsedComponent> type) {
+            try {
+                return ComponentCodec.readComponent(new DataInputStream(input));
+            } catch (IOException e) {
+                throw new KryoException(e);
+            }
+        }
+    }
+
+    /**
+     * Serializes the components of a parsed address as a {@link ComponentCodec} row.
+     */
+    public static final class RowSerializer extends Serializer<ParsedComponent[]> {
+        @Override
+        public void write(final Kryo kryo, final Output output, final ParsedComponent[] row) {
+            try {
+                ComponentCodec.writeRow(new DataOutputStream(output), row);
+            } catch (IOException e) {
+                throw new KryoException(e);
+            }
+        }
+
+        @Override
+        public ParsedComponent[] read(final Kryo kryo, final Input input, final Class<ParsedComponent[]> type) {
+            try {
+                return ComponentCodec.readRow(new DataInputStream(input));
+            } catch (IOException e) {
+                throw new KryoException(e);
+            }
+        }
+    }
+}
@@ -1,8 +1,82 @@
 package com.mapzen.jpostal;
 import static com.mapzen.jpostal.DataDownloadUtils.isDataDirPopulated;
 
-final class LibPostal {
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class LibPostal {
+
+    /**
+     * The independently loadable parts of libpostal, with the data archive and data directories each one needs.
+     */
+    public enum Module {
+        /** Transliteration, numex and address dictionaries, required by both the parser and the expander. */
+        BASE("libpostal_data.tar.gz", "transliteration", "numex", "address_expansions"),
+        /** The address parser model, loaded by {@link AddressParser}. */
+        PARSER("parser.tar.gz", "address_parser"),
+        /** The language classifier, loaded by {@link AddressExpander}. */
+        LANGUAGE_CLASSIFIER("language_classifier.tar.gz", "language_classifier");
+
+        private final String archive;
+        private final List<String> directories;
+
+        Module(final String archive, final String... directories) {
+            this.archive = archive;
+            this.directories = Collections.unmodifiableList(Arrays.asList(directories));
+        }
+
+        String getArchive() {
+            return archive;
+        }
+
+        List<String> getDirectories() {
+            return directories;
+        }
+    }
+
+    private static final class ModuleState {
+        private final long residentBytes;
+        private final Duration setupTime;
+
+        private ModuleState(final long residentBytes, final Duration setupTime) {
+            this.residentBytes = residentBytes;
+            this.setupTime = setupTime;
+        }
+    }
+
+    // Loaded modules, guarded by itself. Each module also has its own lock so that independent modules can load
+    // concurrently while a module is never set up twice.
+    private static final Map<Module, ModuleState> modules = new EnumMap<>(Module.class);
+    private static final Object[] moduleLocks = new Object[Module.values().length];
+
+    static {
+        for (int i = 0; i < moduleLocks.length; i++) {
+            moduleLocks[i] = new Object();
+        }
+    }
+
     private final Config config;
+    private final NativeCalls calls;
+    private final NativeExecutor executor;
+
+    // The AddressParser and AddressExpander instances using this instance, guarded by LibPostal.class.
+    private int references = 0;
 
     private LibPostal(final Config config) {
         if (config == null) {
@@ -11,23 +85,61 @@ final class LibPostal {
 
         config.loadLibrary();
 
+        final NativeCalls calls = NativeCalls.forBackend(config.getBackend());
         final String dataDir = config.getDataDir();
-        if (dataDir == null) {
-            setup();
-        } else {
-            setupDataDir(dataDir);
-        }
+        loadModule(Module.BASE, () -> calls.setup(Module.BASE, dataDir));
 
         this.config = config;
+        this.calls = calls;
+        this.executor = NativeExecutor.create(config.getExecutionMode());
+        ComponentInterner.setActive(config.getInternCapacity() > 0
+                ? new ComponentInterner(config.getInternCapacity()) : null);
+        registerCheckpointResource();
+    }
+
+    /**
+     * Registers {@link CheckpointResource} with CRaC when the application has the {@code org.crac} API on its class
+     * path. jpostal does not depend on it, so the resource class is only touched once the API is known to be there.
+     */
+    private static void registerCheckpointResource() {
+        try {
+            Class.forName("org.crac.Resource", false, LibPostal.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return;
+        }
+        CheckpointResource.register();
     }
 
     Config getConfig() {
         return config;
     }
 
-    private static native void setup();
-    private static native void setupDataDir(final String dataDir);
-    private static native void teardown();
+    NativeCalls getCalls() {
+        return calls;
+    }
+
+    NativeExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns the native calls of the initialized instance, or the JNI ones if libpostal is not initialized.
+     */
+    static NativeCalls currentCalls() {
+        final LibPostal current = instance;
+        return current == null ? NativeCalls.forBackend(Backend.JNI) : current.calls;
+    }
+
+    /**
+     * Returns the initialized instance, or null if libpostal is not initialized.
+     */
+    static LibPostal currentOrNull() {
+        return instance;
+    }
+
+    static native void setup();
+    static native void setupDataDir(final String dataDir);
+    static native void teardown();
 
     private volatile static LibPostal instance = null;
 
@@ -53,8 +165,9 @@ final class LibPostal {
        if (instance == null) {
             synchronized(LibPostal.class) {
                 if (instance == null ) {
-                    if (config.getDownloadDataIfNeeded() && !isDataDirPopulated(config.getDataDir())) {
-                        DataDownloadUtils.populateDataDir(config.getDataDir(), config.getSenzing());
+                    if (config.getDownloadDataIfNeeded() && !isDataDirPopulated(config.getDataDir(), config.getModules())) {
+                        DataDownloadUtils.populateDataDir(config.getDataDir(), config.getSenzing(), config.getModules(),
+                                config.getDataChecksums());
                     }
                     instance = new LibPostal(config);
                 }
@@ -65,9 +178,280 @@ final class LibPostal {
        return instance;
     }
 
+    /**
+     * Returns the singleton instance like {@link #getInstance(Config)}, counting the caller as a user that must
+     * call {@link #release()} when done. The base data is torn down when the last user releases it.
+     */
+    static LibPostal retainInstance(final Config config) {
+        synchronized (LibPostal.class) {
+            LibPostal libPostal = getInstance(config);
+            libPostal.references++;
+            return libPostal;
+        }
+    }
+
+    void release() {
+        synchronized (LibPostal.class) {
+            if (--references > 0 || instance != this) {
+                return;
+            }
+            unloadModule(Module.BASE, () -> calls.teardown(Module.BASE));
+            executor.shutdown();
+            ComponentInterner.setActive(null);
+            instance = null;
+        }
+    }
+
+    /**
+     * Runs the native setup of a module unless it is already loaded, recording how long it took and how much the
+     * resident set of the process grew while it loaded.
+     */
+    static void loadModule(final Module module, final Runnable setup) {
+        synchronized (moduleLocks[module.ordinal()]) {
+            if (isModuleLoaded(module)) {
+                return;
+            }
+
+            final SetupEvent event = new SetupEvent();
+            event.begin();
+            final long before = NativeMemory.residentSetBytes();
+            final long start = System.nanoTime();
+            setup.run();
+            final Duration setupTime = Duration.ofNanos(System.nanoTime() - start);
+            final long after = NativeMemory.residentSetBytes();
+
+            final long residentBytes = before == NativeMemory.UNKNOWN || after == NativeMemory.UNKNOWN
+                    ? NativeMemory.UNKNOWN : Math.max(0L, after - before);
+            event.end();
+            if (event.shouldCommit()) {
+                event.module = module.name();
+                event.residentBytes = residentBytes;
+                event.commit();
+            }
+            synchronized (modules) {
+                modules.put(module, new ModuleState(residentBytes, setupTime));
+            }
+        }
+    }
+
+    /**
+     * Runs the native teardown of a module if it is loaded.
+     */
+    static void unloadModule(final Module module, final Runnable teardown) {
+        synchronized (moduleLocks[module.ordinal()]) {
+            if (!isModuleLoaded(module)) {
+                return;
+            }
+
+            teardown.run();
+            synchronized (modules) {
+                modules.remove(module);
+            }
+        }
+    }
+
+    static boolean isModuleLoaded(final Module module) {
+        synchronized (modules) {
+            return modules.containsKey(module);
+        }
+    }
+
+    /**
+     * Returns the resident native memory, in bytes, that each currently loaded module added to the process when it
+     * was set up. The figures are the growth of the process resident set size during setup, so they are approximate,
+     * and are {@code -1} on platforms without procfs. Modules set up concurrently by
+     * {@link #initializeAsync(Config)} may be attributed part of each other's growth.
+     */
+    public static Map<Module, Long> getModuleResidentBytes() {
+        final Map<Module, Long> result = new EnumMap<>(Module.class);
+        synchronized (modules) {
+            for (Map.Entry<Module, ModuleState> entry : modules.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().residentBytes);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns how long the native setup of each currently loaded module took.
+     */
+    public static Map<Module, Duration> getModuleSetupTimes() {
+        final Map<Module, Duration> result = new EnumMap<>(Module.class);
+        synchronized (modules) {
+            for (Map.Entry<Module, ModuleState> entry : modules.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().setupTime);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Initializes libpostal, {@link AddressParser} and {@link AddressExpander} in the background, as far as the config
+     * enables them. After the data is downloaded (if needed) and the native libraries are loaded, the base data, the
+     * parser model and the language classifier are set up concurrently, since each of them fills separate libpostal
+     * state. Calls to {@code getInstance*} made meanwhile wait for the module they need rather than loading it again.
+     *
+     * The returned future completes with the per-phase timings once every enabled module is loaded.
+     */
+    public static CompletableFuture<InitializationReport> initializeAsync(final Config config) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(Module.values().length, runnable -> {
+            Thread thread = new Thread(runnable, "jpostal-init-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final CompletableFuture<InitializationReport> result = initializeAsync(config, executor);
+        result.whenComplete((report, error) -> executor.shutdown());
+        return result;
+    }
+
+    /**
+     * Same as {@link #initializeAsync(Config)}, running the setup work on the given executor. The executor needs
+     * three threads for the modules to load concurrently.
+     */
+    public static CompletableFuture<InitializationReport> initializeAsync(final Config config, final Executor executor) {
+        if (config == null) {
+            throw new NullPointerException("Config must not be null");
+        }
+        if (executor == null) {
+            throw new NullPointerException("Executor must not be null");
+        }
+
+        final long start = System.nanoTime();
+        final Duration[] prepareTimes = new Duration[2];
+
+        final CompletableFuture<Void> prepared = CompletableFuture.runAsync(() -> {
+            final LibPostal current = instance;
+            if (current != null && !current.config.equals(config)) {
+                throw Config.mismatchException(current.config, config);
+            }
+
+            long phaseStart = System.nanoTime();
+            if (config.getDownloadDataIfNeeded() && !isDataDirPopulated(config.getDataDir(), config.getModules())) {
+                DataDownloadUtils.populateDataDir(config.getDataDir(), config.getSenzing(), config.getModules(),
+                        config.getDataChecksums());
+            }
+            prepareTimes[0] = Duration.ofNanos(System.nanoTime() - phaseStart);
+
+            phaseStart = System.nanoTime();
+            config.loadLibrary();
+            prepareTimes[1] = Duration.ofNanos(System.nanoTime() - phaseStart);
+        }, executor);
+
+        final CompletableFuture<LibPostal> base = prepared.thenApplyAsync(v -> getInstance(config), executor);
+        final CompletableFuture<Void> parser = config.getParserEnabled()
+                ? prepared.thenRunAsync(() -> AddressParser.loadModule(config), executor)
+                : prepared;
+        final CompletableFuture<Void> languageClassifier = config.getExpanderEnabled()
+                ? prepared.thenRunAsync(() -> AddressExpander.loadModule(config), executor)
+                : prepared;
+
+        return CompletableFuture.allOf(base, parser, languageClassifier).thenApply(v -> {
+            // The modules are loaded, so creating the singletons only wires them up.
+            final AddressParser addressParser = config.getParserEnabled() ? AddressParser.getInstanceConfig(config) : null;
+            final AddressExpander addressExpander = config.getExpanderEnabled() ? AddressExpander.getInstanceConfig(config) : null;
+            return new InitializationReport(addressParser, addressExpander, prepareTimes[0], prepareTimes[1],
+                    getModuleSetupTimes(), Duration.ofNanos(System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Warms up the initialized parser and expander with the default {@link WarmupOptions}.
+     */
+    public static WarmupReport warmUp() {
+        return warmUp(WarmupOptions.builder().build());
+    }
+
+    /**
+     * Runs a representative multilingual sample of addresses through the initialized {@link AddressParser} and
+     * {@link AddressExpander}, one by one and in batches, until the JIT has compiled the Java side of the calls and
+     * the parts of the models that real addresses reach have been touched. Call it after initialization and before
+     * taking traffic, so that the first requests are not several times slower than the steady state.
+     *
+     * The calls run at {@link Priority#BATCH}, so warming up an instance that already serves requests delays them
+     * by at most one chunk.
+     *
+     * @throws IllegalStateException if neither the parser nor the expander is initialized
+     */
+    public static WarmupReport warmUp(final WarmupOptions options) {
+        if (options == null) {
+            throw new NullPointerException("WarmupOptions must not be null");
+        }
+        final AddressParser parser = AddressParser.isInitialized() ? AddressParser.current() : null;
+        final AddressExpander expander = AddressExpander.isInitialized() ? AddressExpander.current() : null;
+        if (parser == null && expander == null) {
+            throw new IllegalStateException("Initialize AddressParser or AddressExpander before warming up");
+        }
+        final List<String> addresses = options.getAddresses() != null ? options.getAddresses() : warmupSample();
+        final ParserOptions parserOptions = parser == null ? null
+                : new ParserOptions.Builder().priority(Priority.BATCH).build();
+        final ExpanderOptions expanderOptions = expander == null ? null
+                : new ExpanderOptions.Builder().priority(Priority.BATCH).build();
+
+        final long start = System.nanoTime();
+        final long deadline = start + options.getMaxDuration().toNanos();
+        long calls = 0;
+        int passes = 0;
+        Duration firstPass = Duration.ZERO;
+        Duration lastPass = Duration.ZERO;
+        while (passes < options.getIterations()) {
+            final long passStart = System.nanoTime();
+            for (String address : addresses) {
+                if (parser != null) {
+                    parser.parseAddressWithOptions(address, parserOptions);
+                    calls++;
+                }
+                if (expander != null) {
+                    expander.expandAddressWithOptions(address, expanderOptions);
+                    calls++;
+                }
+            }
+            if (parser != null) {
+                parser.parseAddresses(addresses, parserOptions);
+                calls++;
+            }
+            if (expander != null) {
+                expander.expandAddresses(addresses, expanderOptions);
+                calls++;
+            }
+            final long passEnd = System.nanoTime();
+            lastPass = Duration.ofNanos(passEnd - passStart);
+            if (passes++ == 0) {
+                firstPass = lastPass;
+            }
+            if (passEnd - deadline >= 0) {
+                break;
+            }
+        }
+        return new WarmupReport(addresses.size(), passes, calls, firstPass, lastPass,
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Reads the bundled warm-up addresses, one per line.
+     */
+    static List<String> warmupSample() {
+        final InputStream in = LibPostal.class.getResourceAsStream("warmup-addresses.txt");
+        if (in == null) {
+            throw new IllegalStateException("The bundled warm-up addresses are missing from the jar");
+        }
+        final List<String> addresses = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    addresses.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the bundled warm-up addresses", e);
+        }
+        return addresses;
+    }
+
     /**
      * Closes the singleton instance, releasing native resources and allowing re-initialization.
-     * This is not thread-safe. Use with caution.
+     * The parser and expander are closed first, after any call in progress on them has completed.
      */
     public static void close() {
         // Close dependent singletons first
@@ -75,14 +459,11 @@ final class LibPostal {
         AddressExpander._close();
         synchronized (LibPostal.class) {
             if (instance != null) {
-                teardown();
+                final NativeCalls calls = instance.calls;
+                unloadModule(Module.BASE, () -> calls.teardown(Module.BASE));
+                instance.executor.shutdown();
                 instance = null;
             }
         }
     }
-
-    @Override
-    protected void finalize() {
-        teardown();
-    }
 }
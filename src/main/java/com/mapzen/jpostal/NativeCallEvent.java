@@ -0,0 +1,97 @@
+package com.mapzen.jpostal;
+
+import java.lang.reflect.Array;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The fields shared by {@link ParseEvent} and {@link ExpandEvent}. The event spans the whole call, of which
+ * {@link #lockWait} was spent waiting for other calls and {@link #nativeTime} inside libpostal. When the event is
+ * disabled, which is the default because there is one per call, none of its fields are computed: only the event
+ * allocation remains, and the JIT usually removes it.
+ */
+@Category("jpostal")
+@Enabled(false)
+@StackTrace(false)
+abstract class NativeCallEvent extends Event {
+    @Label("Rows")
+    @Description("Addresses in the call, 1 unless it is a batch call")
+    int rows;
+
+    @Label("Input Size")
+    @Description("UTF-8 bytes passed to libpostal, after input limits")
+    @DataAmount
+    long inputBytes;
+
+    @Label("Results")
+    @Description("Components parsed or expansions produced, across all rows")
+    long results;
+
+    @Label("Lock Wait")
+    @Description("Time spent waiting for other calls on the same instance")
+    @Timespan(Timespan.NANOSECONDS)
+    long lockWait;
+
+    @Label("Native Time")
+    @Description("Time spent in libpostal, including the hop to a native thread in NATIVE_THREADS mode")
+    @Timespan(Timespan.NANOSECONDS)
+    long nativeTime;
+
+    @Label("Priority")
+    String priority;
+
+    @Label("Options Fingerprint")
+    @Description("Hash of the libpostal options of the call, equal for calls with equal options")
+    int optionsFingerprint;
+
+    /** Returns the current time if the event is enabled, for {@link #lockAcquired} and {@link #nativeDone}. */
+    long mark() {
+        return isEnabled() ? System.nanoTime() : 0L;
+    }
+
+    void lockAcquired(final long mark) {
+        if (mark != 0L) {
+            lockWait += System.nanoTime() - mark;
+        }
+    }
+
+    void nativeDone(final long mark) {
+        if (mark != 0L) {
+            nativeTime += System.nanoTime() - mark;
+        }
+    }
+
+    /**
+     * Sets the remaining fields and commits the event; the subclasses call it only once {@link #shouldCommit()}, so
+     * that nothing is computed for disabled events. {@code input} is the {@code byte[][]} of a batch, or the
+     * {@code byte[]} of a single address, null if it was rejected. {@code results} is an array of results per row, or
+     * the results of a single address.
+     */
+    void commit(final Object input, final Object results, final Priority priority, final int optionsFingerprint) {
+        if (input instanceof byte[][]) {
+            this.rows = ((byte[][]) input).length;
+            for (byte[] row : (byte[][]) input) {
+                inputBytes += row == null ? 0 : row.length;
+            }
+        } else {
+            this.rows = 1;
+            inputBytes = input == null ? 0 : ((byte[]) input).length;
+        }
+        if (results instanceof Object[][] || results instanceof long[][]) {
+            for (Object row : (Object[]) results) {
+                this.results += row == null ? 0 : Array.getLength(row);
+            }
+        } else if (results != null) {
+            this.results = Array.getLength(results);
+        }
+        this.priority = priority.name();
+        this.optionsFingerprint = optionsFingerprint;
+        commit();
+    }
+}
@@ -0,0 +1,77 @@
+package com.mapzen.jpostal;
+
+/**
+ * The native operations jpostal needs from libpostal, implemented once per {@link Backend}.
+ */
+interface NativeCalls {
+    void setup(LibPostal.Module module, String dataDir);
+
+    void teardown(LibPostal.Module module);
+
+    void setDefaultOptions(ParserOptions.Builder builder);
+
+    void setDefaultOptions(ExpanderOptions.Builder builder);
+
+    ParsedComponent[] parse(byte[] address, ParserOptions options);
+
+    ParsedComponent[][] parseBatch(byte[][] addresses, ParserOptions options);
+
+    /** Parses the address and expands each component with the address component rules of its label. */
+    ExpandedComponent[] parseAndExpand(byte[] address, ParserOptions parserOptions, ExpanderOptions expanderOptions);
+
+    String[] expand(byte[] address, ExpanderOptions options);
+
+    String[][] expandBatch(byte[][] addresses, ExpanderOptions options);
+
+    /** Returns the {@link XxHash64} of each expansion of the address. */
+    long[] expandHashes(byte[] address, ExpanderOptions options);
+
+    long[][] expandHashesBatch(byte[][] addresses, ExpanderOptions options);
+
+    /** Returns the distinct {@link XxHash64} hashes of the tokens of the expansions of the address, ascending. */
+    long[] expandTokenHashes(byte[] address, ExpanderOptions options);
+
+    long[][] expandTokenHashesBatch(byte[][] addresses, ExpanderOptions options);
+
+    static NativeCalls forBackend(final Backend backend) {
+        if (backend == Backend.JNI) {
+            return JniNativeCalls.INSTANCE;
+        }
+        if (Runtime.version().feature() < 22) {
+            throw new UnsupportedOperationException("The FFM backend requires Java 22 or later, running on "
+                    + Runtime.version());
+        }
+        return ForeignHolder.get();
+    }
+
+    /**
+     * Loads the FFM implementation on first use, once libpostal is loaded. It only exists in the Java 22 part of the
+     * multi-release jar.
+     */
+    final class ForeignHolder {
+        private static final NativeCalls INSTANCE;
+        private static final RuntimeException FAILURE;
+
+        static {
+            NativeCalls calls = null;
+            RuntimeException failure = null;
+            try {
+                calls = (NativeCalls) Class.forName("com.mapzen.jpostal.ForeignNativeCalls")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                failure = new UnsupportedOperationException("The FFM backend is not available: " + e, e);
+            }
+            INSTANCE = calls;
+            FAILURE = failure;
+        }
+
+        private ForeignHolder() {}
+
+        private static NativeCalls get() {
+            if (FAILURE != null) {
+                throw FAILURE;
+            }
+            return INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.mapzen.jpostal;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs native calls according to an {@link ExecutionMode}. Callers hold the native lock of their parser or expander
+ * while a call runs, which also bounds the work queued here to one call per lock.
+ */
+final class NativeExecutor {
+    static final NativeExecutor CALLER_THREAD = new NativeExecutor(null);
+
+    // Native calls of the parser and the expander may run at the same time, each under its own lock.
+    private static final int THREADS = 2;
+
+    private final ExecutorService executor;
+
+    private NativeExecutor(final ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    static NativeExecutor create(final ExecutionMode mode) {
+        if (mode == ExecutionMode.CALLER_THREAD) {
+            return CALLER_THREAD;
+        }
+        final AtomicInteger threadCount = new AtomicInteger();
+        return new NativeExecutor(Executors.newFixedThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "jpostal-native-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Runs the call and returns its result. In {@link ExecutionMode#NATIVE_THREADS}, the caller waits for the call to
+     * finish even if it is interrupted, since the native lock must not be released while libpostal is still working;
+     * the interrupt status is restored afterwards.
+     */
+    <T> T call(final Supplier<T> call) {
+        if (executor == null) {
+            return call.get();
+        }
+
+        final Future<T> future = executor.submit(call::get);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.mapzen.jpostal;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A counted reference to a native singleton such as {@link AddressParser} or {@link AddressExpander}. The native
+ * resources are torn down once every handle is closed, unless the singleton was also obtained through one of the
+ * {@code getInstance*} methods, which keep it loaded until an explicit {@code close()}.
+ *
+ * Use handles with try-with-resources, and keep the handle reachable while the object returned by {@link #get()}
+ * is in use: a handle that becomes unreachable without being closed is released by a {@link Cleaner}.
+ */
+public final class NativeHandle<T> implements AutoCloseable {
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final T value;
+    private final Release release;
+    private final Cleaner.Cleanable cleanable;
+
+    NativeHandle(final T value, final Runnable release) {
+        this.value = value;
+        this.release = new Release(release);
+        this.cleanable = CLEANER.register(this, this.release);
+    }
+
+    public T get() {
+        if (release.released.get()) {
+            throw new IllegalStateException("NativeHandle is closed");
+        }
+        return value;
+    }
+
+    public boolean isClosed() {
+        return release.released.get();
+    }
+
+    /**
+     * Releases this handle's reference. Calls in progress on other threads complete before any teardown happens.
+     * Closing a handle more than once has no further effect.
+     */
+    @Override
+    public void close() {
+        cleanable.clean();
+    }
+
+    // Must not refer to the handle, or the handle would never become phantom reachable.
+    private static final class Release implements Runnable {
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private final Runnable release;
+
+        private Release(final Runnable release) {
+            this.release = release;
+        }
+
+        @Override
+        public void run() {
+            if (released.compareAndSet(false, true)) {
+                release.run();
+            }
+        }
+    }
+}
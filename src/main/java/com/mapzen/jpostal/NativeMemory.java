@@ -0,0 +1,39 @@
+package com.mapzen.jpostal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Reads the resident set size of the current process. libpostal allocates its models with malloc, outside of the
+ * Java heap, so the process RSS is the only place where their footprint is visible.
+ */
+final class NativeMemory {
+    static final long UNKNOWN = -1L;
+
+    private static final Path STATUS = Paths.get("/proc/self/status");
+
+    private NativeMemory() {}
+
+    /**
+     * Returns the resident set size of this process in bytes, or {@link #UNKNOWN} where procfs is not available.
+     */
+    static long residentSetBytes() {
+        if (!Files.isReadable(STATUS)) {
+            return UNKNOWN;
+        }
+        try {
+            for (String line : Files.readAllLines(STATUS, StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmRSS:")) {
+                    String[] parts = line.substring("VmRSS:".length()).trim().split("\\s+");
+                    return Long.parseLong(parts[0]) * 1024L;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return UNKNOWN;
+        }
+        return UNKNOWN;
+    }
+}
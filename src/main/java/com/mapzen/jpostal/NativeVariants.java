@@ -0,0 +1,131 @@
+package com.mapzen.jpostal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Chooses among the builds of a native library bundled for a platform. Next to the baseline build in e.g.
+ * {@code /linux-x64/}, the jar may hold builds for newer instruction sets in {@code /linux-x64-avx2/} and
+ * {@code /linux-x64-sse42/}; the best one the running CPU supports is loaded, and the baseline otherwise.
+ *
+ * The {@code jpostal.cpu.variant} system property overrides the detection: "baseline" always loads the baseline, and
+ * a variant name loads that variant when it is bundled. Forcing a variant the CPU does not support crashes the JVM
+ * with an illegal instruction.
+ */
+final class NativeVariants {
+    static final String BASELINE = "baseline";
+
+    private static final Path CPUINFO = Paths.get("/proc/cpuinfo");
+
+    /**
+     * A build for an instruction set level, with the {@code /proc/cpuinfo} flags it requires. The builds use the
+     * x86-64 microarchitecture levels of GCC and Clang, so a variant requires every flag of its level.
+     */
+    private static final class Variant {
+        final String name;
+        final String arch;
+        final Set<String> requiredFlags;
+
+        Variant(final String name, final String arch, final String... requiredFlags) {
+            this.name = name;
+            this.arch = arch;
+            this.requiredFlags = new HashSet<>(Arrays.asList(requiredFlags));
+        }
+    }
+
+    // Best first.
+    private static final Variant[] VARIANTS = {
+            // -march=x86-64-v3
+            new Variant("avx2", "x64", "avx", "avx2", "bmi1", "bmi2", "f16c", "fma", "abm", "movbe", "xsave",
+                    "sse4_2", "sse4_1", "ssse3", "popcnt", "cx16"),
+            // -march=x86-64-v2
+            new Variant("sse42", "x64", "sse4_2", "sse4_1", "ssse3", "popcnt", "cx16", "lahf_lm"),
+    };
+
+    private NativeVariants() {}
+
+    /**
+     * Returns the resource directories to look for a library in, best first, ending with the baseline
+     * {@code /<os>-<arch>/}.
+     */
+    static List<String> directories(final String os, final String arch) {
+        final String override = System.getProperty("jpostal.cpu.variant");
+        return directories(os, arch, override, override == null && "linux".equals(os) ? cpuFlags() : null);
+    }
+
+    static List<String> directories(final String os, final String arch, final String override,
+                                    final Set<String> cpuFlags) {
+        final String baseline = "/" + os + "-" + arch + "/";
+        final List<String> directories = new ArrayList<>();
+        if (override != null && !override.isEmpty()) {
+            final String name = override.trim().toLowerCase(Locale.ROOT);
+            if (!BASELINE.equals(name)) {
+                directories.add("/" + os + "-" + arch + "-" + name + "/");
+            }
+        } else if (cpuFlags != null) {
+            for (Variant variant : VARIANTS) {
+                if (variant.arch.equals(arch) && cpuFlags.containsAll(variant.requiredFlags)) {
+                    directories.add("/" + os + "-" + arch + "-" + variant.name + "/");
+                }
+            }
+        }
+        directories.add(baseline);
+        return directories;
+    }
+
+    /**
+     * Returns the name of the variant in a directory returned by {@link #directories}.
+     */
+    static String name(final String directory, final String os, final String arch) {
+        final String baseline = "/" + os + "-" + arch + "/";
+        if (directory.equals(baseline)) {
+            return BASELINE;
+        }
+        return directory.substring(baseline.length(), directory.length() - 1);
+    }
+
+    /**
+     * Returns the CPU flags listed in {@code /proc/cpuinfo}, or an empty set when it cannot be read.
+     */
+    static Set<String> cpuFlags() {
+        try {
+            return parseCpuFlags(Files.readAllLines(CPUINFO, StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            return Collections.emptySet();
+        }
+    }
+
+    /**
+     * Returns the flags of the first processor in {@code /proc/cpuinfo}: the "flags" line on x86 and the "Features"
+     * line on ARM.
+     */
+    static Set<String> parseCpuFlags(final List<String> cpuinfo) {
+        for (String line : cpuinfo) {
+            final int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            final String key = line.substring(0, colon).trim();
+            if (key.equals("flags") || key.equals("Features")) {
+                final Set<String> flags = new HashSet<>();
+                for (String flag : line.substring(colon + 1).trim().split("\\s+")) {
+                    if (!flag.isEmpty()) {
+                        flags.add(flag);
+                    }
+                }
+                return flags;
+            }
+        }
+        return Collections.emptySet();
+    }
+}
@@ -0,0 +1,21 @@
+package com.mapzen.jpostal;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Recorded for each {@link AddressParser} call, single or batch.
+ */
+@Name("jpostal.Parse")
+@Label("Parse")
+final class ParseEvent extends NativeCallEvent {
+    /**
+     * Ends the event and commits it if it passes its threshold. See {@link #commit}.
+     */
+    void finish(final Object input, final Object results, final ParserOptions options) {
+        end();
+        if (shouldCommit()) {
+            commit(input, results, options.getPriority(), options.fingerprint());
+        }
+    }
+}
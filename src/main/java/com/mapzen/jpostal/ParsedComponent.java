@@ -1,8 +1,17 @@
 package com.mapzen.jpostal;
 
-import java.nio.charset.StandardCharsets;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * A labeled part of a parsed address. Serializes in the compact form of {@link ComponentCodec}: the label as a byte
+ * and the value as length-prefixed UTF-8.
+ */
+public class ParsedComponent implements Externalizable {
+    private static final long serialVersionUID = 1L;
 
-public class ParsedComponent {
     private String value;
     private String label;
 
@@ -22,13 +31,35 @@ public class ParsedComponent {
         this.label = label;
     }
 
+    /**
+     * For deserialization only.
+     */
+    public ParsedComponent() {
+    }
+
     public ParsedComponent(String value, String label) {
         this.value = value;
         this.label = label;
     }
 
+    /**
+     * Creates a component from its UTF-8 value, as parses do. The value is shared with earlier components when
+     * {@link Config.Builder#internCapacity(int) interning} is enabled, and the label is always the canonical instance.
+     */
     public ParsedComponent(byte[] value, String label) {
-        this.value = new String(value, StandardCharsets.UTF_8);
-        this.label = label;
+        this.value = ComponentInterner.value(value);
+        this.label = ComponentInterner.label(label);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        ComponentCodec.writeLabel(out, label);
+        ComponentCodec.writeString(out, value);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        this.label = ComponentCodec.readLabel(in);
+        this.value = ComponentCodec.readString(in);
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,29 @@
 package com.mapzen.jpostal;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+
 public class ParserOptions {
     private final String language;
     private final String country;
+    private final String[] labels;
+    private final InputLimits inputLimits;
+    private final Priority priority;
+    private final DedupeMode dedupe;
 
     public static class Builder {
         private String language;
         private String country;
+        private String[] labels;
+        private int maxInputBytes = InputLimits.UNLIMITED;
+        private int maxTokens = InputLimits.UNLIMITED;
+        private InputLimitPolicy inputLimitPolicy = InputLimitPolicy.REJECT;
+        private Duration timeBudget;
+        private Priority priority = Priority.INTERACTIVE;
+        private DedupeMode dedupe = DedupeMode.NONE;
 
-        private native void setDefaultOptions();
+        native void setDefaultOptions();
 
         public Builder() {
             if (!AddressParser.isInitialized()) {
@@ -16,7 +31,7 @@ public class ParserOptions {
             }
 
             synchronized (ParserOptions.class) {
-                setDefaultOptions(); // Load default options from libpostal into this Builder.
+                LibPostal.currentCalls().setDefaultOptions(this); // Load default options from libpostal into this Builder.
             }
         }
 
@@ -30,6 +45,88 @@ public class ParserOptions {
             return this;
         }
 
+        /**
+         * Restricts the parse result to components with the given labels (e.g. "postcode", "city").
+         * Components with other labels are dropped in native code before any Java objects are created for them.
+         * Passing null (the default) returns every component.
+         */
+        public Builder labels(String... labels) {
+            if (labels != null) {
+                for (String label : labels) {
+                    if (label == null) {
+                        throw new NullPointerException("Labels must not contain null");
+                    }
+                }
+                labels = labels.clone();
+            }
+            this.labels = labels;
+            return this;
+        }
+
+        /**
+         * Limits the UTF-8 length of each address passed to libpostal. Longer addresses are handled according to
+         * {@link #inputLimitPolicy}. Unlimited by default.
+         */
+        public Builder maxInputBytes(int maxInputBytes) {
+            this.maxInputBytes = InputLimits.checkLimit("maxInputBytes", maxInputBytes);
+            return this;
+        }
+
+        /**
+         * Limits the number of tokens (runs of letters and digits) of each address passed to libpostal. Longer
+         * addresses are handled according to {@link #inputLimitPolicy}. Unlimited by default.
+         */
+        public Builder maxTokens(int maxTokens) {
+            this.maxTokens = InputLimits.checkLimit("maxTokens", maxTokens);
+            return this;
+        }
+
+        /**
+         * Whether addresses over the limits are rejected, getting no components, or truncated. Defaults to
+         * {@link InputLimitPolicy#REJECT}. Either way they are counted by {@link AddressParser#getRejectedCount()} or
+         * {@link AddressParser#getTruncatedCount()}.
+         */
+        public Builder inputLimitPolicy(InputLimitPolicy inputLimitPolicy) {
+            if (inputLimitPolicy == null) {
+                throw new NullPointerException("InputLimitPolicy must not be null");
+            }
+            this.inputLimitPolicy = inputLimitPolicy;
+            return this;
+        }
+
+        /**
+         * Bounds how long a call waits for other parses to finish before it gives up with a
+         * {@link java.util.concurrent.RejectedExecutionException}. Null (the default) waits indefinitely.
+         */
+        public Builder timeBudget(Duration timeBudget) {
+            this.timeBudget = InputLimits.checkTimeBudget(timeBudget);
+            return this;
+        }
+
+        /**
+         * The traffic class of calls with these options. Defaults to {@link Priority#INTERACTIVE}; bulk jobs sharing
+         * the JVM with online requests should use {@link Priority#BATCH}.
+         */
+        public Builder priority(Priority priority) {
+            if (priority == null) {
+                throw new NullPointerException("Priority must not be null");
+            }
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Which addresses of a batch are processed once and share their result; see {@link DedupeMode}. Defaults to
+         * {@link DedupeMode#NONE}. Only batch calls deduplicate, and only within a batch.
+         */
+        public Builder dedupe(DedupeMode dedupe) {
+            if (dedupe == null) {
+                throw new NullPointerException("DedupeMode must not be null");
+            }
+            this.dedupe = dedupe;
+            return this;
+        }
+
         public ParserOptions build() {
             return new ParserOptions(this);
         }
@@ -38,5 +135,41 @@ public class ParserOptions {
     public ParserOptions(Builder builder) {
         this.language = builder.language;
         this.country = builder.country;
+        this.labels = builder.labels;
+        this.inputLimits = new InputLimits(builder.maxInputBytes, builder.maxTokens, builder.inputLimitPolicy,
+                builder.timeBudget);
+        this.priority = builder.priority;
+        this.dedupe = builder.dedupe;
+    }
+
+    String getLanguage() {
+        return language;
+    }
+
+    String getCountry() {
+        return country;
+    }
+
+    String[] getLabels() {
+        return labels;
+    }
+
+    InputLimits getInputLimits() {
+        return inputLimits;
+    }
+
+    Priority getPriority() {
+        return priority;
+    }
+
+    DedupeMode getDedupe() {
+        return dedupe;
+    }
+
+    /**
+     * Returns a hash of the options that affect libpostal's output, for telling calls apart in JFR events.
+     */
+    int fingerprint() {
+        return Objects.hash(language, country) * 31 + Arrays.hashCode(labels);
     }
 }
@@ -0,0 +1,14 @@
+package com.mapzen.jpostal;
+
+/**
+ * The traffic class of a call, deciding who gets the native lock of a parser or expander first.
+ */
+public enum Priority {
+    /** Latency-sensitive calls, such as online requests. Served before waiting batch calls. */
+    INTERACTIVE,
+    /**
+     * Bulk work, such as re-geocoding a table. Large batches release the native lock between chunks so that
+     * interactive calls are not queued behind them, and still get a share of the lock while interactive calls wait.
+     */
+    BATCH
+}
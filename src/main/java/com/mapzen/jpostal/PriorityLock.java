@@ -0,0 +1,139 @@
+package com.mapzen.jpostal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A non-reentrant lock with an interactive and a batch lane. Waiting interactive callers go first, except that after
+ * {@link #BATCH_WEIGHT} interactive grants in a row while batch callers wait, one batch caller goes, so that bulk work
+ * slows down under interactive load but never stops.
+ */
+final class PriorityLock {
+    static final int BATCH_WEIGHT = 8;
+
+    /** The number of addresses a batch-priority call passes to libpostal each time it holds the lock. */
+    static final int BATCH_CHUNK_SIZE = 64;
+
+    private final ReentrantLock state = new ReentrantLock();
+    private final Condition turn = state.newCondition();
+
+    // Guarded by state.
+    private boolean held = false;
+    private int interactiveWaiting = 0;
+    private int batchWaiting = 0;
+    private int interactiveStreak = 0;
+
+    /**
+     * Returns how many of the given number of rows to process per acquisition of the lock.
+     */
+    static int chunkSize(final Priority priority, final int rows) {
+        return priority == Priority.BATCH ? Math.min(rows, BATCH_CHUNK_SIZE) : rows;
+    }
+
+    void lock(final Priority priority) {
+        state.lock();
+        try {
+            enqueue(priority);
+            boolean interrupted = false;
+            while (!mayAcquire(priority)) {
+                try {
+                    turn.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            acquire(priority);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            state.unlock();
+        }
+    }
+
+    boolean tryLock(final Priority priority, final long timeout, final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        state.lock();
+        try {
+            enqueue(priority);
+            try {
+                while (!mayAcquire(priority)) {
+                    if (nanos <= 0) {
+                        dequeue(priority);
+                        return false;
+                    }
+                    nanos = turn.awaitNanos(nanos);
+                }
+            } catch (InterruptedException e) {
+                dequeue(priority);
+                throw e;
+            }
+            acquire(priority);
+            return true;
+        } finally {
+            state.unlock();
+        }
+    }
+
+    void unlock() {
+        state.lock();
+        try {
+            if (!held) {
+                throw new IllegalMonitorStateException("PriorityLock is not held");
+            }
+            held = false;
+            turn.signalAll();
+        } finally {
+            state.unlock();
+        }
+    }
+
+    int getWaiting(final Priority priority) {
+        state.lock();
+        try {
+            return priority == Priority.INTERACTIVE ? interactiveWaiting : batchWaiting;
+        } finally {
+            state.unlock();
+        }
+    }
+
+    private boolean mayAcquire(final Priority priority) {
+        if (held) {
+            return false;
+        }
+        if (priority == Priority.INTERACTIVE) {
+            return batchWaiting == 0 || interactiveStreak < BATCH_WEIGHT;
+        }
+        return interactiveWaiting == 0 || interactiveStreak >= BATCH_WEIGHT;
+    }
+
+    private void enqueue(final Priority priority) {
+        if (priority == Priority.INTERACTIVE) {
+            interactiveWaiting++;
+        } else {
+            batchWaiting++;
+        }
+    }
+
+    // A caller leaving without the lock may have been what kept the other lane waiting.
+    private void dequeue(final Priority priority) {
+        if (priority == Priority.INTERACTIVE) {
+            interactiveWaiting--;
+        } else {
+            batchWaiting--;
+        }
+        turn.signalAll();
+    }
+
+    private void acquire(final Priority priority) {
+        held = true;
+        if (priority == Priority.INTERACTIVE) {
+            interactiveWaiting--;
+            interactiveStreak = batchWaiting > 0 ? interactiveStreak + 1 : 0;
+        } else {
+            batchWaiting--;
+            interactiveStreak = 0;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.mapzen.jpostal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * An HTTP download stream that survives dropped connections. When a read fails, or the body ends before the announced
+ * length, the request is reopened with a {@code Range} header at the current offset, so the bytes already consumed by
+ * the caller are neither downloaded nor delivered twice.
+ */
+final class ResumableHttpInputStream extends InputStream {
+    private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+
+    private final URL url;
+    private final int maxRetries;
+
+    private HttpURLConnection connection;
+    private InputStream in;
+    private long position = 0;
+    private long length = -1;
+    private String etag;
+    private int retries = 0;
+
+    ResumableHttpInputStream(final URL url, final int maxRetries) throws IOException {
+        this.url = url;
+        this.maxRetries = maxRetries;
+        open();
+    }
+
+    /**
+     * Returns the number of times the download was resumed.
+     */
+    int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Returns the number of bytes read so far.
+     */
+    long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int n = read(b, 0, 1);
+        return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            IOException failure;
+            try {
+                int n = in.read(b, off, len);
+                if (n > 0) {
+                    position += n;
+                    return n;
+                }
+                if (n == -1 && (length < 0 || position >= length)) {
+                    return -1;
+                }
+                failure = new IOException("Connection closed after " + position + " of " + length + " bytes");
+            } catch (IOException e) {
+                failure = e;
+            }
+
+            if (retries >= maxRetries) {
+                throw failure;
+            }
+            retries++;
+            disconnect();
+            try {
+                open();
+            } catch (IOException e) {
+                e.addSuppressed(failure);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        disconnect();
+    }
+
+    private void open() throws IOException {
+        connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("User-Agent", "jpostal-java");
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        if (position > 0) {
+            connection.setRequestProperty("Range", "bytes=" + position + "-");
+            if (etag != null) {
+                connection.setRequestProperty("If-Range", etag);
+            }
+        }
+
+        int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_PARTIAL && position > 0) {
+            String contentRange = connection.getHeaderField("Content-Range");
+            if (contentRange == null || !contentRange.startsWith("bytes " + position + "-")) {
+                throw new IOException("Unexpected Content-Range " + contentRange + " when resuming " + url + " at " + position);
+            }
+            in = connection.getInputStream();
+        } else if (status == HttpURLConnection.HTTP_OK) {
+            String responseEtag = connection.getHeaderField("ETag");
+            if (position > 0 && etag != null && !etag.equals(responseEtag)) {
+                throw new IOException(url + " changed while it was being downloaded");
+            }
+            etag = responseEtag;
+            length = connection.getContentLengthLong();
+            in = connection.getInputStream();
+            // The server ignored the range, so skip what was already delivered.
+            long skipped = 0;
+            while (skipped < position) {
+                long n = in.skip(position - skipped);
+                if (n <= 0) {
+                    throw new IOException("Connection closed while skipping to offset " + position + " of " + url);
+                }
+                skipped += n;
+            }
+        } else {
+            throw new IOException("Unexpected HTTP status " + status + " for " + url);
+        }
+    }
+
+    private void disconnect() {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // The connection is being replaced or abandoned anyway.
+            }
+            in = null;
+        }
+        if (connection != null) {
+            connection.disconnect();
+            connection = null;
+        }
+    }
+}
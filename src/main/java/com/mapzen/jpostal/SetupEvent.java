@@ -0,0 +1,24 @@
+package com.mapzen.jpostal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Recorded when a libpostal module is loaded.
+ */
+@Name("jpostal.Setup")
+@Label("Setup")
+@Category("jpostal")
+final class SetupEvent extends Event {
+    @Label("Module")
+    String module;
+
+    @Label("Resident Growth")
+    @Description("Growth of the process resident set while the module loaded, or -1 if unknown")
+    @DataAmount
+    long residentBytes;
+}
@@ -0,0 +1,99 @@
+package com.mapzen.jpostal;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Settings of {@link LibPostal#warmUp(WarmupOptions)}.
+ */
+public final class WarmupOptions {
+    private final List<String> addresses;
+    private final int iterations;
+    private final Duration maxDuration;
+
+    private WarmupOptions(final Builder builder) {
+        this.addresses = builder.addresses;
+        this.iterations = builder.iterations;
+        this.maxDuration = builder.maxDuration;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the addresses to warm up with, or null for the bundled multilingual sample.
+     */
+    public List<String> getAddresses() {
+        return addresses;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public Duration getMaxDuration() {
+        return maxDuration;
+    }
+
+    public static final class Builder {
+        private List<String> addresses;
+        private int iterations = 100;
+        private Duration maxDuration = Duration.ofSeconds(30);
+
+        private Builder() {}
+
+        /**
+         * Warms up with these addresses instead of the bundled sample, e.g. a sample of real traffic.
+         */
+        public Builder addresses(final List<String> addresses) {
+            if (addresses == null) {
+                this.addresses = null;
+                return this;
+            }
+            if (addresses.isEmpty()) {
+                throw new IllegalArgumentException("Warm-up addresses must not be empty");
+            }
+            for (String address : addresses) {
+                if (address == null) {
+                    throw new NullPointerException("Warm-up addresses must not contain null");
+                }
+            }
+            this.addresses = Collections.unmodifiableList(new ArrayList<>(addresses));
+            return this;
+        }
+
+        /**
+         * How many passes to make over the addresses, each parsing and expanding every address one by one and then
+         * as one batch. The default of 100 passes over the bundled sample is enough for the JIT to compile the
+         * wrappers.
+         */
+        public Builder iterations(final int iterations) {
+            if (iterations < 1) {
+                throw new IllegalArgumentException("iterations must be at least 1, got " + iterations);
+            }
+            this.iterations = iterations;
+            return this;
+        }
+
+        /**
+         * Stops warming up after the pass that exceeds this duration. Defaults to 30 seconds.
+         */
+        public Builder maxDuration(final Duration maxDuration) {
+            if (maxDuration == null) {
+                throw new NullPointerException("maxDuration must not be null");
+            }
+            if (maxDuration.isNegative() || maxDuration.isZero()) {
+                throw new IllegalArgumentException("maxDuration must be positive, got " + maxDuration);
+            }
+            this.maxDuration = maxDuration;
+            return this;
+        }
+
+        public WarmupOptions build() {
+            return new WarmupOptions(this);
+        }
+    }
+}
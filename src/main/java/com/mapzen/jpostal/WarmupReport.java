@@ -0,0 +1,65 @@
+package com.mapzen.jpostal;
+
+import java.time.Duration;
+
+/**
+ * The outcome of {@link LibPostal#warmUp(WarmupOptions)}. Comparing the first and last passes shows how much slower
+ * the cold calls were.
+ */
+public final class WarmupReport {
+    private final int addresses;
+    private final int passes;
+    private final long calls;
+    private final Duration firstPass;
+    private final Duration lastPass;
+    private final Duration totalTime;
+
+    WarmupReport(final int addresses, final int passes, final long calls, final Duration firstPass,
+                 final Duration lastPass, final Duration totalTime) {
+        this.addresses = addresses;
+        this.passes = passes;
+        this.calls = calls;
+        this.firstPass = firstPass;
+        this.lastPass = lastPass;
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * Returns how many addresses each pass went through.
+     */
+    public int getAddresses() {
+        return addresses;
+    }
+
+    /**
+     * Returns how many passes were made, fewer than requested if the maximum duration was reached.
+     */
+    public int getPasses() {
+        return passes;
+    }
+
+    /**
+     * Returns how many parser and expander calls were made, counting a batch call once.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    public Duration getFirstPass() {
+        return firstPass;
+    }
+
+    public Duration getLastPass() {
+        return lastPass;
+    }
+
+    public Duration getTotalTime() {
+        return totalTime;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmupReport{addresses=" + addresses + ", passes=" + passes + ", calls=" + calls + ", firstPass="
+                + firstPass + ", lastPass=" + lastPass + ", totalTime=" + totalTime + "}";
+    }
+}
@@ -0,0 +1,118 @@
+package com.mapzen.jpostal;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The 64-bit xxHash of a byte sequence, as computed natively by {@link AddressExpander#expandToHashes}. Use it to hash
+ * keys on the Java side so that they can be compared with native expansion hashes, e.g.
+ * {@code XxHash64.hash(expansion) == expander.expandToHashes(address, options)[i]}.
+ */
+public final class XxHash64 {
+    /** The seed used for expansion hashes. */
+    public static final long DEFAULT_SEED = 0L;
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private XxHash64() {}
+
+    /**
+     * Returns the hash of the UTF-8 encoding of a string.
+     */
+    public static long hash(final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return hash(bytes, 0, bytes.length, DEFAULT_SEED);
+    }
+
+    public static long hash(final byte[] data) {
+        return hash(data, 0, data.length, DEFAULT_SEED);
+    }
+
+    public static long hash(final byte[] data, final int offset, final int length, final long seed) {
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", size " + data.length);
+        }
+        final int end = offset + length;
+        int p = offset;
+        long h;
+
+        if (length >= 32) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            do {
+                v1 = round(v1, readLong(data, p));
+                v2 = round(v2, readLong(data, p + 8));
+                v3 = round(v3, readLong(data, p + 16));
+                v4 = round(v4, readLong(data, p + 24));
+                p += 32;
+            } while (p <= end - 32);
+
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + PRIME5;
+        }
+
+        h += length;
+
+        while (p <= end - 8) {
+            h ^= round(0, readLong(data, p));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+            p += 8;
+        }
+        if (p <= end - 4) {
+            h ^= (readInt(data, p) & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            p += 4;
+        }
+        while (p < end) {
+            h ^= (data[p] & 0xFFL) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+            p++;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(long acc, final long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, final long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static long readLong(final byte[] data, final int p) {
+        return (data[p] & 0xFFL)
+                | (data[p + 1] & 0xFFL) << 8
+                | (data[p + 2] & 0xFFL) << 16
+                | (data[p + 3] & 0xFFL) << 24
+                | (data[p + 4] & 0xFFL) << 32
+                | (data[p + 5] & 0xFFL) << 40
+                | (data[p + 6] & 0xFFL) << 48
+                | (data[p + 7] & 0xFFL) << 56;
+    }
+
+    private static int readInt(final byte[] data, final int p) {
+        return (data[p] & 0xFF)
+                | (data[p + 1] & 0xFF) << 8
+                | (data[p + 2] & 0xFF) << 16
+                | (data[p + 3] & 0xFF) << 24;
+    }
+}
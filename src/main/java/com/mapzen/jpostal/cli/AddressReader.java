@@ -0,0 +1,89 @@
+package com.mapzen.jpostal.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the address of each record of a CSV, TSV or NDJSON file. Blank lines are ignored; records without a usable
+ * address are counted as skipped.
+ */
+final class AddressReader implements Closeable {
+    private final MappedLineReader lines;
+    private final Format format;
+    private final String column;
+    private int columnIndex;
+    private long skipped = 0;
+
+    AddressReader(final Path path, final Format format, final String column, final int columnIndex) throws IOException {
+        this.lines = new MappedLineReader(path);
+        this.format = format;
+        this.column = column;
+        this.columnIndex = columnIndex;
+
+        if (format != Format.NDJSON && columnIndex < 0) {
+            final String header = lines.readLine();
+            if (header == null) {
+                return;
+            }
+            this.columnIndex = Csv.split(header, format.getDelimiter()).indexOf(column);
+            if (this.columnIndex < 0) {
+                lines.close();
+                throw new IllegalArgumentException("Column " + column + " not found in header: " + header);
+            }
+        }
+    }
+
+    /**
+     * Returns the next address, or null at the end of the file.
+     */
+    String next() throws IOException {
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            final String address = extract(line);
+            if (address != null) {
+                return address;
+            }
+            skipped++;
+        }
+        return null;
+    }
+
+    private String extract(final String line) {
+        try {
+            if (format == Format.NDJSON) {
+                final Object record = Json.parse(line);
+                if (!(record instanceof Map)) {
+                    return null;
+                }
+                final Object address = ((Map<?, ?>) record).get(column);
+                return address instanceof String ? (String) address : null;
+            }
+            final List<String> fields = Csv.split(line, format.getDelimiter());
+            return columnIndex < fields.size() ? fields.get(columnIndex) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Returns the fraction of the file read so far.
+     */
+    double getProgress() {
+        return lines.getSize() == 0 ? 1.0 : (double) lines.getPosition() / lines.getSize();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lines.close();
+    }
+}
@@ -0,0 +1,180 @@
+package com.mapzen.jpostal.cli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command line options shared by the {@code jpostal} subcommands.
+ */
+final class Arguments {
+    static final String USAGE = String.join("\n",
+            "Usage: jpostal parse|expand [options] INPUT OUTPUT",
+            "       jpostal serve [options]",
+            "",
+            "parse and expand read addresses from INPUT (CSV, TSV or NDJSON) and write one result per address to",
+            "OUTPUT (NDJSON, or CSV/TSV with one column per label). OUTPUT may be - for standard output.",
+            "serve answers /parse and /expand HTTP requests, coalescing concurrent requests into batches.",
+            "",
+            "Options:",
+            "  --input-format csv|tsv|ndjson   default: from the INPUT extension",
+            "  --output-format csv|tsv|ndjson  default: from the OUTPUT extension",
+            "  --column NAME                   address column or NDJSON field (default: address)",
+            "  --column-index N                address column of a CSV/TSV file without a header row",
+            "  --labels LABEL,...              parse only: labels to keep, and the CSV columns",
+            "  --batch-size N                  addresses per native call (default: 256)",
+            "  --queue-batches N               batches buffered between pipeline stages (default: 4)",
+            "  --host HOST                     serve: address to listen on (default: 127.0.0.1)",
+            "  --port PORT                     serve: port to listen on (default: 8080)",
+            "  --threads N                     serve: HTTP worker threads (default: 32)",
+            "  --max-delay-ms N                serve: how long a batch waits for more requests (default: 0)",
+            "  --max-queued N                  serve: queued addresses before requests get 503 (default: 10000)",
+            "  --no-parser, --no-expander      serve: do not load the parser or the language classifier",
+            "  --no-warmup                     serve: listen right after loading, without warming up first",
+            "  --data-dir DIR                  libpostal data directory",
+            "  --download                      download the libpostal data if it is missing");
+
+    String command;
+    String input;
+    String output;
+    Format inputFormat;
+    Format outputFormat;
+    String column = "address";
+    int columnIndex = -1;
+    String[] labels;
+    int batchSize = 256;
+    int queueBatches = 4;
+    String dataDir;
+    boolean download = false;
+    String host = "127.0.0.1";
+    int port = 8080;
+    int threads = 32;
+    int maxDelayMillis = 0;
+    int maxQueued = 10000;
+    boolean parserEnabled = true;
+    boolean expanderEnabled = true;
+    boolean warmup = true;
+
+    /**
+     * @throws IllegalArgumentException with a message suitable for the user if the arguments are invalid
+     */
+    static Arguments parse(final String[] args) {
+        final Arguments arguments = new Arguments();
+        final List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+                continue;
+            }
+            switch (arg) {
+                case "--download":
+                    arguments.download = true;
+                    continue;
+                case "--no-parser":
+                    arguments.parserEnabled = false;
+                    continue;
+                case "--no-warmup":
+                    arguments.warmup = false;
+                    continue;
+                case "--no-expander":
+                    arguments.expanderEnabled = false;
+                    continue;
+                default:
+                    break;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            final String value = args[++i];
+            switch (arg) {
+                case "--input-format":
+                    arguments.inputFormat = Format.fromName(value);
+                    break;
+                case "--output-format":
+                    arguments.outputFormat = Format.fromName(value);
+                    break;
+                case "--column":
+                    arguments.column = value;
+                    break;
+                case "--column-index":
+                    arguments.columnIndex = parseInt(arg, value, 0);
+                    break;
+                case "--labels":
+                    arguments.labels = Arrays.stream(value.split(",")).map(String::trim)
+                            .filter(label -> !label.isEmpty()).toArray(String[]::new);
+                    break;
+                case "--batch-size":
+                    arguments.batchSize = parseInt(arg, value, 1);
+                    break;
+                case "--queue-batches":
+                    arguments.queueBatches = parseInt(arg, value, 1);
+                    break;
+                case "--data-dir":
+                    arguments.dataDir = value;
+                    break;
+                case "--host":
+                    arguments.host = value;
+                    break;
+                case "--port":
+                    arguments.port = parseInt(arg, value, 0);
+                    break;
+                case "--threads":
+                    arguments.threads = parseInt(arg, value, 1);
+                    break;
+                case "--max-delay-ms":
+                    arguments.maxDelayMillis = parseInt(arg, value, 0);
+                    break;
+                case "--max-queued":
+                    arguments.maxQueued = parseInt(arg, value, 1);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+
+        if (positional.isEmpty()) {
+            throw new IllegalArgumentException("Expected a command");
+        }
+        arguments.command = positional.get(0);
+        if (arguments.command.equals("serve")) {
+            if (positional.size() != 1) {
+                throw new IllegalArgumentException("serve takes no input or output");
+            }
+            if (!arguments.parserEnabled && !arguments.expanderEnabled) {
+                throw new IllegalArgumentException("serve needs the parser or the expander");
+            }
+        } else if (arguments.command.equals("parse") || arguments.command.equals("expand")) {
+            if (positional.size() != 3) {
+                throw new IllegalArgumentException("Expected an input and an output");
+            }
+            arguments.input = positional.get(1);
+            arguments.output = positional.get(2);
+            if (arguments.inputFormat == null) {
+                arguments.inputFormat = Format.fromPath(arguments.input);
+            }
+            if (arguments.outputFormat == null) {
+                arguments.outputFormat = Format.fromPath(arguments.output);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown command " + arguments.command);
+        }
+        if (arguments.labels != null && !arguments.command.equals("parse")) {
+            throw new IllegalArgumentException("--labels only applies to parse");
+        }
+        return arguments;
+    }
+
+    private static int parseInt(final String option, final String value, final int min) {
+        final int parsed;
+        try {
+            parsed = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number, got " + value);
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException(option + " must be at least " + min);
+        }
+        return parsed;
+    }
+}
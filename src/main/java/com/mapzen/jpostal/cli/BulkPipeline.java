@@ -0,0 +1,171 @@
+package com.mapzen.jpostal.cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Runs reading, batch processing and writing as three stages connected by bounded queues, so that file I/O overlaps
+ * the native calls while at most a few batches are held in memory. Output keeps the input order.
+ */
+final class BulkPipeline<T> {
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private static final class Batch<T> {
+        private final List<String> addresses;
+        private T[] results;
+
+        private Batch(final List<String> addresses) {
+            this.addresses = addresses;
+        }
+    }
+
+    /**
+     * Counts and timing of a completed run.
+     */
+    static final class Stats {
+        final long rows;
+        final long skipped;
+        final long elapsedNanos;
+
+        Stats(final long rows, final long skipped, final long elapsedNanos) {
+            this.rows = rows;
+            this.skipped = skipped;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d rows in %.1f s (%.0f rows/s), %d skipped",
+                    rows, elapsedNanos / 1e9, rowsPerSecond(), skipped);
+        }
+    }
+
+    private final Batch<T> end = new Batch<>(Collections.emptyList());
+
+    private final AddressReader reader;
+    private final Function<List<String>, T[]> process;
+    private final RowWriter<T> writer;
+    private final int batchSize;
+    private final int queueBatches;
+    private final PrintStream progress;
+
+    BulkPipeline(final AddressReader reader, final Function<List<String>, T[]> process, final RowWriter<T> writer,
+                 final int batchSize, final int queueBatches, final PrintStream progress) {
+        this.reader = reader;
+        this.process = process;
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.queueBatches = queueBatches;
+        this.progress = progress;
+    }
+
+    Stats run() throws IOException {
+        final long start = System.nanoTime();
+        final BlockingQueue<Batch<T>> read = new ArrayBlockingQueue<>(queueBatches);
+        final BlockingQueue<Batch<T>> processed = new ArrayBlockingQueue<>(queueBatches);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        final Thread readerThread = new Thread(() -> {
+            try {
+                List<String> addresses = new ArrayList<>(batchSize);
+                String address;
+                while ((address = reader.next()) != null) {
+                    addresses.add(address);
+                    if (addresses.size() == batchSize) {
+                        read.put(new Batch<>(addresses));
+                        addresses = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!addresses.isEmpty()) {
+                    read.put(new Batch<>(addresses));
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+            putEnd(read);
+        }, "jpostal-reader");
+
+        final Thread processThread = new Thread(() -> {
+            try {
+                Batch<T> batch;
+                while ((batch = read.take()) != end) {
+                    batch.results = process.apply(batch.addresses);
+                    processed.put(batch);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+            putEnd(processed);
+        }, "jpostal-process");
+
+        readerThread.setDaemon(true);
+        processThread.setDaemon(true);
+        readerThread.start();
+        processThread.start();
+
+        long rows = 0;
+        long lastReport = start;
+        try {
+            writer.writeHeader();
+            Batch<T> batch;
+            while ((batch = processed.take()) != end) {
+                for (int i = 0; i < batch.addresses.size(); i++) {
+                    writer.write(batch.addresses.get(i), batch.results[i]);
+                }
+                rows += batch.addresses.size();
+
+                final long now = System.nanoTime();
+                if (progress != null && now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                    progress.println(String.format(Locale.ROOT, "%d rows (%.0f%%), %.0f rows/s", rows,
+                            reader.getProgress() * 100, rows * 1e9 / (now - start)));
+                    lastReport = now;
+                }
+            }
+            writer.out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } finally {
+            readerThread.interrupt();
+            processThread.interrupt();
+        }
+
+        final Throwable error = failure.get();
+        if (error instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) error).getCause();
+        } else if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        }
+        return new Stats(rows, reader.getSkipped(), System.nanoTime() - start);
+    }
+
+    private void putEnd(final BlockingQueue<Batch<T>> queue) {
+        try {
+            queue.put(end);
+        } catch (InterruptedException ignored) {
+            // Only interrupted once the writer has stopped, so nobody is waiting for the end.
+        }
+    }
+}
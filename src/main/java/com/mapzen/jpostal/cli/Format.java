@@ -0,0 +1,44 @@
+package com.mapzen.jpostal.cli;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * File formats understood by the bulk commands.
+ */
+enum Format {
+    CSV(','),
+    TSV('\t'),
+    NDJSON('\0');
+
+    private final char delimiter;
+
+    Format(final char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    char getDelimiter() {
+        return delimiter;
+    }
+
+    static Format fromName(final String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format " + name + ", expected csv, tsv or ndjson");
+        }
+    }
+
+    /**
+     * Guesses the format from a file extension, defaulting to NDJSON.
+     */
+    static Format fromPath(final String path) {
+        final String name = path.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        } else if (name.endsWith(".tsv") || name.endsWith(".tab")) {
+            return TSV;
+        }
+        return NDJSON;
+    }
+}
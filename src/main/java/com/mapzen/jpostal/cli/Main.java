@@ -0,0 +1,131 @@
+package com.mapzen.jpostal.cli;
+
+import com.mapzen.jpostal.AddressExpander;
+import com.mapzen.jpostal.AddressParser;
+import com.mapzen.jpostal.Config;
+import com.mapzen.jpostal.ExpanderOptions;
+import com.mapzen.jpostal.InitializationReport;
+import com.mapzen.jpostal.LibPostal;
+import com.mapzen.jpostal.ParsedComponent;
+import com.mapzen.jpostal.ParserOptions;
+import com.mapzen.jpostal.WarmupReport;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code jpostal} command line tool, which parses or expands every address of a file, or serves libpostal over
+ * HTTP.
+ */
+public final class Main {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private Main() {}
+
+    public static void main(final String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    static int run(final String[] args, final PrintStream stdout, final PrintStream stderr) {
+        final Arguments arguments;
+        try {
+            arguments = Arguments.parse(args);
+        } catch (IllegalArgumentException e) {
+            stderr.println(e.getMessage());
+            stderr.println(Arguments.USAGE);
+            return 2;
+        }
+
+        if (arguments.command.equals("serve")) {
+            return serve(arguments, stderr);
+        }
+
+        final boolean parse = arguments.command.equals("parse");
+        final Config config = Config.builder()
+                .dataDir(arguments.dataDir)
+                .downloadDataIfNeeded(arguments.download)
+                .parserEnabled(parse)
+                .expanderEnabled(!parse)
+                .build();
+
+        final boolean toStdout = arguments.output.equals("-");
+        try (AddressReader reader = new AddressReader(Paths.get(arguments.input), arguments.inputFormat,
+                arguments.column, arguments.columnIndex);
+             OutputStream stream = toStdout ? stdout : Files.newOutputStream(Paths.get(arguments.output));
+             Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+
+            final BulkPipeline.Stats stats;
+            if (parse) {
+                final AddressParser parser = AddressParser.getInstanceConfig(config);
+                final ParserOptions options = new ParserOptions.Builder().labels(arguments.labels).build();
+                final RowWriter<ParsedComponent[]> writer = RowWriter.forParse(out, arguments.outputFormat,
+                        arguments.labels == null ? RowWriter.PARSER_LABELS : Arrays.asList(arguments.labels));
+                stats = new BulkPipeline<>(reader, batch -> parser.parseAddresses(batch, options), writer,
+                        arguments.batchSize, arguments.queueBatches, stderr).run();
+            } else {
+                final AddressExpander expander = AddressExpander.getInstanceConfig(config);
+                final ExpanderOptions options = new ExpanderOptions.Builder().build();
+                final RowWriter<String[]> writer = RowWriter.forExpand(out, arguments.outputFormat);
+                stats = new BulkPipeline<>(reader, batch -> expander.expandAddresses(batch, options), writer,
+                        arguments.batchSize, arguments.queueBatches, stderr).run();
+            }
+            stderr.println((parse ? "Parsed " : "Expanded ") + stats);
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            stderr.println("jpostal " + arguments.command + " failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static int serve(final Arguments arguments, final PrintStream stderr) {
+        final Config config = Config.builder()
+                .dataDir(arguments.dataDir)
+                .downloadDataIfNeeded(arguments.download)
+                .parserEnabled(arguments.parserEnabled)
+                .expanderEnabled(arguments.expanderEnabled)
+                .build();
+
+        final Server server;
+        try {
+            final InitializationReport report = LibPostal.initializeAsync(config).join();
+            if (arguments.warmup) {
+                // Before listening, so that readiness checks only pass once calls run at full speed.
+                final WarmupReport warmup = LibPostal.warmUp();
+                stderr.println("Warmed up in " + warmup.getTotalTime().toMillis() + " ms, first pass "
+                        + warmup.getFirstPass().toMillis() + " ms, last pass " + warmup.getLastPass().toMillis()
+                        + " ms");
+            }
+            server = Server.start(new InetSocketAddress(arguments.host, arguments.port), report.getParser(),
+                    report.getExpander(), arguments.threads, arguments.batchSize,
+                    TimeUnit.MILLISECONDS.toNanos(arguments.maxDelayMillis), arguments.maxQueued);
+            stderr.println("Initialized in " + report.getTotalTime().toMillis() + " ms, listening on http://"
+                    + arguments.host + ":" + server.getAddress().getPort());
+        } catch (IOException | RuntimeException e) {
+            stderr.println("jpostal serve failed: " + e.getMessage());
+            return 1;
+        }
+
+        final CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(5);
+            stopped.countDown();
+        }, "jpostal-shutdown"));
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,110 @@
+package com.mapzen.jpostal.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the lines of a UTF-8 file through memory-mapped windows, so large inputs are read without copying them
+ * through a stream buffer first. Lines end with {@code \n} or {@code \r\n}; a leading byte order mark is skipped.
+ */
+final class MappedLineReader implements Closeable {
+    static final int DEFAULT_WINDOW_BYTES = 64 << 20;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowBytes;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private byte[] line = new byte[256];
+
+    MappedLineReader(final Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_BYTES);
+    }
+
+    MappedLineReader(final Path path, final int windowBytes) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowBytes = windowBytes;
+        if (size >= 3) {
+            map(0, 3);
+            if ((window.get(0) & 0xff) == 0xef && (window.get(1) & 0xff) == 0xbb && (window.get(2) & 0xff) == 0xbf) {
+                position = 3;
+            }
+        }
+    }
+
+    /**
+     * Returns the next line without its terminator, or null at the end of the file.
+     */
+    String readLine() throws IOException {
+        if (position >= size) {
+            return null;
+        }
+
+        int length = 0;
+        while (true) {
+            if (window == null || position >= windowStart + window.limit()) {
+                map(position, (int) Math.min(windowBytes, size - position));
+            }
+            int offset = (int) (position - windowStart);
+            final int limit = window.limit();
+            int end = offset;
+            while (end < limit && window.get(end) != '\n') {
+                end++;
+            }
+
+            final int chunk = end - offset;
+            if (length + chunk > line.length) {
+                byte[] grown = new byte[Math.max(line.length * 2, length + chunk)];
+                System.arraycopy(line, 0, grown, 0, length);
+                line = grown;
+            }
+            window.position(offset);
+            window.get(line, length, chunk);
+            length += chunk;
+            position += chunk;
+
+            if (end < limit) {
+                position++; // the terminator
+                break;
+            }
+            if (position >= size) {
+                break;
+            }
+        }
+
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of bytes consumed so far.
+     */
+    long getPosition() {
+        return position;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    private void map(final long start, final int length) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        windowStart = start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,145 @@
+package com.mapzen.jpostal.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Coalesces addresses submitted concurrently into batches for a single batch call. A dispatcher thread takes
+ * everything queued while the previous call ran, up to {@code maxBatch}, and optionally waits up to
+ * {@code maxDelayNanos} for more. Under light load a request is dispatched at once; under heavy load batches grow
+ * by themselves, since requests queue up while the native call runs.
+ */
+final class MicroBatcher<T> implements AutoCloseable {
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private static final class Request<T> {
+        private final String address;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Request(final String address) {
+            this.address = address;
+        }
+    }
+
+    private final Function<List<String>, T[]> call;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Request<T>> queue;
+    private final Thread dispatcher;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile boolean closed = false;
+
+    MicroBatcher(final String name, final Function<List<String>, T[]> call, final int maxBatch,
+                 final long maxDelayNanos, final int maxQueued) {
+        this.call = call;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = maxDelayNanos;
+        this.queue = new ArrayBlockingQueue<>(maxQueued);
+        this.dispatcher = new Thread(this::dispatch, name);
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queues an address, returning a future for its result. The future fails with a
+     * {@link RejectedExecutionException} if the queue is full or the batcher is closed.
+     */
+    CompletableFuture<T> submit(final String address) {
+        final Request<T> request = new Request<>(address);
+        if (closed || !queue.offer(request)) {
+            request.result.completeExceptionally(new RejectedExecutionException(
+                    closed ? "Shutting down" : "Too many queued requests"));
+        }
+        return request.result;
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getBatches() {
+        return batches.get();
+    }
+
+    private void dispatch() {
+        final List<Request<T>> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                final Request<T> first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - batch.size());
+                if (maxDelayNanos > 0) {
+                    final long deadline = System.nanoTime() + maxDelayNanos;
+                    long remaining;
+                    while (batch.size() < maxBatch && (remaining = deadline - System.nanoTime()) > 0) {
+                        final Request<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        queue.drainTo(batch, maxBatch - batch.size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                run(batch);
+                return;
+            }
+
+            run(batch);
+            batch.clear();
+        }
+    }
+
+    private void run(final List<Request<T>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        final List<String> addresses = new ArrayList<>(batch.size());
+        for (Request<T> request : batch) {
+            addresses.add(request.address);
+        }
+        try {
+            final T[] results = call.apply(addresses);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(results[i]);
+            }
+        } catch (Throwable t) {
+            for (Request<T> request : batch) {
+                request.result.completeExceptionally(t);
+            }
+        }
+        requests.addAndGet(batch.size());
+        batches.incrementAndGet();
+    }
+
+    /**
+     * Stops accepting requests and waits for the queued ones to be processed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Request<T> request;
+        while ((request = queue.poll()) != null) {
+            request.result.completeExceptionally(new RejectedExecutionException("Shutting down"));
+        }
+    }
+}
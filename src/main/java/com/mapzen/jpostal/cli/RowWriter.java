@@ -0,0 +1,126 @@
+package com.mapzen.jpostal.cli;
+
+import com.mapzen.jpostal.ParsedComponent;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes one output record per address.
+ */
+abstract class RowWriter<T> {
+    /** The labels libpostal's parser can assign, used as CSV columns unless specific labels were requested. */
+    static final List<String> PARSER_LABELS = Arrays.asList("house", "category", "near", "house_number", "road",
+            "unit", "level", "staircase", "entrance", "po_box", "postcode", "suburb", "city_district", "city", "island",
+            "state_district", "state", "country_region", "country", "world_region");
+
+    protected final Writer out;
+
+    RowWriter(final Writer out) {
+        this.out = out;
+    }
+
+    void writeHeader() throws IOException {
+    }
+
+    abstract void write(String address, T result) throws IOException;
+
+    static RowWriter<ParsedComponent[]> forParse(final Writer out, final Format format, final List<String> labels) {
+        if (format == Format.NDJSON) {
+            return new RowWriter<ParsedComponent[]>(out) {
+                @Override
+                void write(final String address, final ParsedComponent[] components) throws IOException {
+                    out.write("{\"address\":");
+                    Json.writeString(out, address);
+                    for (int i = 0; i < components.length; i++) {
+                        // libpostal can repeat a label; the values are joined like the CSV columns.
+                        String label = components[i].getLabel();
+                        boolean seen = false;
+                        for (int j = 0; j < i; j++) {
+                            seen |= components[j].getLabel().equals(label);
+                        }
+                        if (seen) {
+                            continue;
+                        }
+                        out.write(',');
+                        Json.writeString(out, label);
+                        out.write(':');
+                        Json.writeString(out, joinValues(components, label));
+                    }
+                    out.write("}\n");
+                }
+            };
+        }
+
+        final char delimiter = format.getDelimiter();
+        return new RowWriter<ParsedComponent[]>(out) {
+            @Override
+            void writeHeader() throws IOException {
+                out.write("address");
+                for (String label : labels) {
+                    out.write(delimiter);
+                    Csv.writeField(out, label, delimiter);
+                }
+                out.write('\n');
+            }
+
+            @Override
+            void write(final String address, final ParsedComponent[] components) throws IOException {
+                Csv.writeField(out, address, delimiter);
+                for (String label : labels) {
+                    out.write(delimiter);
+                    Csv.writeField(out, joinValues(components, label), delimiter);
+                }
+                out.write('\n');
+            }
+        };
+    }
+
+    static RowWriter<String[]> forExpand(final Writer out, final Format format) {
+        if (format == Format.NDJSON) {
+            return new RowWriter<String[]>(out) {
+                @Override
+                void write(final String address, final String[] expansions) throws IOException {
+                    out.write("{\"address\":");
+                    Json.writeString(out, address);
+                    out.write(",\"expansions\":[");
+                    for (int i = 0; i < expansions.length; i++) {
+                        if (i > 0) {
+                            out.write(',');
+                        }
+                        Json.writeString(out, expansions[i]);
+                    }
+                    out.write("]}\n");
+                }
+            };
+        }
+
+        final char delimiter = format.getDelimiter();
+        return new RowWriter<String[]>(out) {
+            @Override
+            void writeHeader() throws IOException {
+                out.write("address" + delimiter + "expansions\n");
+            }
+
+            @Override
+            void write(final String address, final String[] expansions) throws IOException {
+                Csv.writeField(out, address, delimiter);
+                out.write(delimiter);
+                Csv.writeField(out, String.join("|", expansions), delimiter);
+                out.write('\n');
+            }
+        };
+    }
+
+    private static String joinValues(final ParsedComponent[] components, final String label) {
+        String joined = "";
+        for (ParsedComponent component : components) {
+            if (component.getLabel().equals(label)) {
+                joined = joined.isEmpty() ? component.getValue() : joined + " " + component.getValue();
+            }
+        }
+        return joined;
+    }
+}
@@ -0,0 +1,321 @@
+package com.mapzen.jpostal.cli;
+
+import com.mapzen.jpostal.AddressExpander;
+import com.mapzen.jpostal.AddressParser;
+import com.mapzen.jpostal.ExpanderOptions;
+import com.mapzen.jpostal.ParsedComponent;
+import com.mapzen.jpostal.ParserOptions;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local HTTP service for parsing and expanding addresses, so that several processes on a host can share one loaded
+ * libpostal. Concurrent requests are coalesced into batches by a {@link MicroBatcher} per endpoint.
+ *
+ * <pre>
+ * GET  /parse?address=...            {"address": "...", "components": [{"label": "...", "value": "..."}, ...]}
+ * POST /parse {"address": "..."}     same as GET
+ * POST /parse {"addresses": [...]}   {"results": [{"address": ..., "components": [...]}, ...]}
+ * GET  /expand?address=...           {"address": "...", "expansions": ["...", ...]}
+ * POST /expand                       like /parse, with expansions
+ * GET  /health                       {"status": "ok", "requests": n, "batches": n}
+ * </pre>
+ */
+final class Server implements AutoCloseable {
+    private static final int MAX_BODY_BYTES = 16 << 20;
+
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final MicroBatcher<ParsedComponent[]> parseBatcher;
+    private final MicroBatcher<String[]> expandBatcher;
+
+    private Server(final HttpServer httpServer, final ExecutorService executor,
+                   final MicroBatcher<ParsedComponent[]> parseBatcher, final MicroBatcher<String[]> expandBatcher) {
+        this.httpServer = httpServer;
+        this.executor = executor;
+        this.parseBatcher = parseBatcher;
+        this.expandBatcher = expandBatcher;
+    }
+
+    /**
+     * Starts serving on the given address. A null parser or expander leaves its endpoint disabled.
+     */
+    static Server start(final InetSocketAddress address, final AddressParser parser, final AddressExpander expander,
+                        final int threads, final int maxBatch, final long maxDelayNanos, final int maxQueued)
+            throws IOException {
+        MicroBatcher<ParsedComponent[]> parseBatcher = null;
+        if (parser != null) {
+            final ParserOptions options = new ParserOptions.Builder().build();
+            parseBatcher = new MicroBatcher<>("jpostal-parse-batcher", batch -> parser.parseAddresses(batch, options),
+                    maxBatch, maxDelayNanos, maxQueued);
+        }
+        MicroBatcher<String[]> expandBatcher = null;
+        if (expander != null) {
+            final ExpanderOptions options = new ExpanderOptions.Builder().build();
+            expandBatcher = new MicroBatcher<>("jpostal-expand-batcher", batch -> expander.expandAddresses(batch, options),
+                    maxBatch, maxDelayNanos, maxQueued);
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "jpostal-http-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final HttpServer httpServer = HttpServer.create(address, 0);
+        httpServer.setExecutor(executor);
+
+        final Server server = new Server(httpServer, executor, parseBatcher, expandBatcher);
+        httpServer.createContext("/parse", exchange -> server.handle(exchange, server.parseBatcher, Server::writeParsed));
+        httpServer.createContext("/expand", exchange -> server.handle(exchange, server.expandBatcher, Server::writeExpanded));
+        httpServer.createContext("/health", server::health);
+        httpServer.start();
+        return server;
+    }
+
+    InetSocketAddress getAddress() {
+        return httpServer.getAddress();
+    }
+
+    private interface ResultWriter<T> {
+        void write(StringBuilder out, String address, T result) throws IOException;
+    }
+
+    private <T> void handle(final HttpExchange exchange, final MicroBatcher<T> batcher, final ResultWriter<T> writer)
+            throws IOException {
+        try {
+            if (batcher == null) {
+                respondError(exchange, 404, "Endpoint disabled");
+                return;
+            }
+
+            final List<String> addresses = new ArrayList<>();
+            final boolean single;
+            final String method = exchange.getRequestMethod();
+            if (method.equals("GET")) {
+                final String address = queryParameter(exchange, "address");
+                if (address == null) {
+                    respondError(exchange, 400, "Missing address parameter");
+                    return;
+                }
+                addresses.add(address);
+                single = true;
+            } else if (method.equals("POST")) {
+                final Object body;
+                try {
+                    body = Json.parse(readBody(exchange));
+                } catch (IllegalArgumentException e) {
+                    respondError(exchange, 400, "Invalid JSON: " + e.getMessage());
+                    return;
+                }
+                single = !readAddresses(body, addresses);
+                if (addresses.isEmpty() && single) {
+                    respondError(exchange, 400, "Expected {\"address\": string} or {\"addresses\": [string, ...]}");
+                    return;
+                }
+            } else {
+                respondError(exchange, 405, "Use GET or POST");
+                return;
+            }
+
+            final List<CompletableFuture<T>> futures = new ArrayList<>(addresses.size());
+            for (String address : addresses) {
+                futures.add(batcher.submit(address));
+            }
+
+            final StringBuilder out = new StringBuilder();
+            if (!single) {
+                out.append("{\"results\":[");
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writer.write(out, addresses.get(i), futures.get(i).get());
+            }
+            if (!single) {
+                out.append("]}");
+            }
+            respond(exchange, 200, out.toString());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                respondError(exchange, 503, e.getCause().getMessage());
+            } else {
+                respondError(exchange, 500, String.valueOf(e.getCause().getMessage()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respondError(exchange, 503, "Interrupted");
+        } catch (RequestTooLargeException e) {
+            respondError(exchange, 413, "Request body exceeds " + MAX_BODY_BYTES + " bytes");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Collects the addresses of a request body, returning whether it was a batch request.
+     */
+    private static boolean readAddresses(final Object body, final List<String> addresses) {
+        if (!(body instanceof Map)) {
+            return false;
+        }
+        final Map<?, ?> object = (Map<?, ?>) body;
+        if (object.get("address") instanceof String) {
+            addresses.add((String) object.get("address"));
+            return false;
+        }
+        if (!(object.get("addresses") instanceof List)) {
+            return false;
+        }
+        for (Object address : (List<?>) object.get("addresses")) {
+            if (!(address instanceof String)) {
+                addresses.clear();
+                return false;
+            }
+            addresses.add((String) address);
+        }
+        return true;
+    }
+
+    private static void writeParsed(final StringBuilder out, final String address, final ParsedComponent[] components)
+            throws IOException {
+        out.append("{\"address\":");
+        Json.writeString(out, address);
+        out.append(",\"components\":[");
+        for (int i = 0; i < components.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"label\":");
+            Json.writeString(out, components[i].getLabel());
+            out.append(",\"value\":");
+            Json.writeString(out, components[i].getValue());
+            out.append('}');
+        }
+        out.append("]}");
+    }
+
+    private static void writeExpanded(final StringBuilder out, final String address, final String[] expansions)
+            throws IOException {
+        out.append("{\"address\":");
+        Json.writeString(out, address);
+        out.append(",\"expansions\":[");
+        for (int i = 0; i < expansions.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            Json.writeString(out, expansions[i]);
+        }
+        out.append("]}");
+    }
+
+    private void health(final HttpExchange exchange) throws IOException {
+        try {
+            long requests = 0;
+            long batches = 0;
+            for (MicroBatcher<?> batcher : new MicroBatcher<?>[] {parseBatcher, expandBatcher}) {
+                if (batcher != null) {
+                    requests += batcher.getRequests();
+                    batches += batcher.getBatches();
+                }
+            }
+            respond(exchange, 200, "{\"status\":\"ok\",\"requests\":" + requests + ",\"batches\":" + batches + "}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static final class RequestTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static String readBody(final HttpExchange exchange) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                if (body.size() + len > MAX_BODY_BYTES) {
+                    throw new RequestTooLargeException();
+                }
+                body.write(buffer, 0, len);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String queryParameter(final HttpExchange exchange, final String name) {
+        final String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            final int eq = pair.indexOf('=');
+            final String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            if (key.equals(name)) {
+                return eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void respondError(final HttpExchange exchange, final int status, final String message)
+            throws IOException {
+        final StringBuilder body = new StringBuilder("{\"error\":");
+        Json.writeString(body, message);
+        respond(exchange, status, body.append('}').toString());
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Stops accepting connections, lets requests in progress finish for up to the given delay, then stops the
+     * batchers.
+     */
+    void stop(final int delaySeconds) {
+        httpServer.stop(delaySeconds);
+        if (parseBatcher != null) {
+            parseBatcher.close();
+        }
+        if (expandBatcher != null) {
+            expandBatcher.close();
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        stop(0);
+    }
+}
@@ -0,0 +1,582 @@
+package com.mapzen.jpostal;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BOOLEAN;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Calls libpostal directly through the Foreign Function & Memory API, without the JNI glue library. Addresses and
+ * options are copied into a confined arena per call, and results are read straight from libpostal's memory before it
+ * is freed. Assumes a 64-bit platform, where {@code size_t} is a {@code long}.
+ *
+ * Loaded reflectively by {@link NativeCalls#forBackend(Backend)} on Java 22 and later.
+ */
+final class ForeignNativeCalls implements NativeCalls {
+
+    // libpostal_address_parser_options_t
+    private static final StructLayout PARSER_OPTIONS = MemoryLayout.structLayout(
+            ADDRESS.withName("language"),
+            ADDRESS.withName("country"));
+
+    // libpostal_address_parser_response_t
+    private static final StructLayout PARSER_RESPONSE = MemoryLayout.structLayout(
+            JAVA_LONG.withName("num_components"),
+            ADDRESS.withName("components"),
+            ADDRESS.withName("labels"));
+
+    // The boolean fields of libpostal_normalize_options_t, in declaration order.
+    private static final String[] NORMALIZE_FLAGS = {
+            "latin_ascii", "transliterate", "strip_accents", "decompose", "lowercase", "trim_string",
+            "drop_parentheticals", "replace_numeric_hyphens", "delete_numeric_hyphens", "split_alpha_from_numeric",
+            "replace_word_hyphens", "delete_word_hyphens", "delete_final_periods", "delete_acronym_periods",
+            "drop_english_possessives", "delete_apostrophes", "expand_numex", "roman_numerals"
+    };
+
+    // libpostal_normalize_options_t
+    private static final StructLayout NORMALIZE_OPTIONS = normalizeOptionsLayout();
+
+    private static final long LANGUAGES = offset(NORMALIZE_OPTIONS, "languages");
+    private static final long NUM_LANGUAGES = offset(NORMALIZE_OPTIONS, "num_languages");
+    private static final long ADDRESS_COMPONENTS = offset(NORMALIZE_OPTIONS, "address_components");
+    private static final long FIRST_FLAG = offset(NORMALIZE_OPTIONS, NORMALIZE_FLAGS[0]);
+
+    // LIBPOSTAL_ADDRESS_* component flags
+    private static final short ADDRESS_ANY = 1;
+    private static final short ADDRESS_NAME = 1 << 1;
+    private static final short ADDRESS_HOUSE_NUMBER = 1 << 2;
+    private static final short ADDRESS_STREET = 1 << 3;
+    private static final short ADDRESS_UNIT = 1 << 4;
+    private static final short ADDRESS_LEVEL = 1 << 5;
+    private static final short ADDRESS_STAIRCASE = 1 << 6;
+    private static final short ADDRESS_ENTRANCE = 1 << 7;
+    private static final short ADDRESS_CATEGORY = 1 << 8;
+    private static final short ADDRESS_NEAR = 1 << 9;
+    private static final short ADDRESS_TOPONYM = 1 << 13;
+    private static final short ADDRESS_POSTAL_CODE = 1 << 14;
+    private static final short ADDRESS_PO_BOX = (short) (1 << 15);
+
+    private static final MethodHandle SETUP;
+    private static final MethodHandle SETUP_DATADIR;
+    private static final MethodHandle TEARDOWN;
+    private static final MethodHandle SETUP_PARSER;
+    private static final MethodHandle SETUP_PARSER_DATADIR;
+    private static final MethodHandle TEARDOWN_PARSER;
+    private static final MethodHandle SETUP_LANGUAGE_CLASSIFIER;
+    private static final MethodHandle SETUP_LANGUAGE_CLASSIFIER_DATADIR;
+    private static final MethodHandle TEARDOWN_LANGUAGE_CLASSIFIER;
+    private static final MethodHandle GET_DEFAULT_OPTIONS;
+    private static final MethodHandle EXPAND_ADDRESS;
+    private static final MethodHandle EXPANSION_ARRAY_DESTROY;
+    private static final MethodHandle PARSE_ADDRESS;
+    private static final MethodHandle PARSER_RESPONSE_DESTROY;
+
+    static {
+        final Linker linker = Linker.nativeLinker();
+        // libpostal is loaded with System.load by Config, which makes its symbols visible to this class loader.
+        final SymbolLookup lookup = SymbolLookup.loaderLookup().or(linker.defaultLookup());
+
+        final FunctionDescriptor setup = FunctionDescriptor.of(JAVA_BOOLEAN);
+        final FunctionDescriptor setupDataDir = FunctionDescriptor.of(JAVA_BOOLEAN, ADDRESS);
+        final FunctionDescriptor teardown = FunctionDescriptor.ofVoid();
+
+        SETUP = downcall(linker, lookup, "libpostal_setup", setup);
+        SETUP_DATADIR = downcall(linker, lookup, "libpostal_setup_datadir", setupDataDir);
+        TEARDOWN = downcall(linker, lookup, "libpostal_teardown", teardown);
+        SETUP_PARSER = downcall(linker, lookup, "libpostal_setup_parser", setup);
+        SETUP_PARSER_DATADIR = downcall(linker, lookup, "libpostal_setup_parser_datadir", setupDataDir);
+        TEARDOWN_PARSER = downcall(linker, lookup, "libpostal_teardown_parser", teardown);
+        SETUP_LANGUAGE_CLASSIFIER = downcall(linker, lookup, "libpostal_setup_language_classifier", setup);
+        SETUP_LANGUAGE_CLASSIFIER_DATADIR = downcall(linker, lookup, "libpostal_setup_language_classifier_datadir",
+                setupDataDir);
+        TEARDOWN_LANGUAGE_CLASSIFIER = downcall(linker, lookup, "libpostal_teardown_language_classifier", teardown);
+
+        GET_DEFAULT_OPTIONS = downcall(linker, lookup, "libpostal_get_default_options",
+                FunctionDescriptor.of(NORMALIZE_OPTIONS));
+        EXPAND_ADDRESS = downcall(linker, lookup, "libpostal_expand_address",
+                FunctionDescriptor.of(ADDRESS, ADDRESS, NORMALIZE_OPTIONS, ADDRESS));
+        EXPANSION_ARRAY_DESTROY = downcall(linker, lookup, "libpostal_expansion_array_destroy",
+                FunctionDescriptor.ofVoid(ADDRESS, JAVA_LONG));
+
+        PARSE_ADDRESS = downcall(linker, lookup, "libpostal_parse_address",
+                FunctionDescriptor.of(ADDRESS.withTargetLayout(PARSER_RESPONSE), ADDRESS, PARSER_OPTIONS));
+        PARSER_RESPONSE_DESTROY = downcall(linker, lookup, "libpostal_address_parser_response_destroy",
+                FunctionDescriptor.ofVoid(ADDRESS));
+    }
+
+    public ForeignNativeCalls() {}
+
+    @Override
+    public void setup(final LibPostal.Module module, final String dataDir) {
+        final boolean ok;
+        try (Arena arena = Arena.ofConfined()) {
+            switch (module) {
+                case BASE:
+                    ok = dataDir == null
+                            ? (boolean) SETUP.invokeExact()
+                            : (boolean) SETUP_DATADIR.invokeExact(arena.allocateFrom(dataDir));
+                    if (!ok) {
+                        throw new RuntimeException(dataDir == null
+                                ? "Error initializing libpostal" : "Error initializing libpostal with datadir");
+                    }
+                    break;
+                case PARSER:
+                    ok = dataDir == null
+                            ? (boolean) SETUP_PARSER.invokeExact()
+                            : (boolean) SETUP_PARSER_DATADIR.invokeExact(arena.allocateFrom(dataDir));
+                    if (!ok && dataDir == null) {
+                        throw new RuntimeException("Error loading libpostal parser modules");
+                    } else if (!ok) {
+                        throw new IllegalArgumentException("Error loading libpostal parser modules with data dir");
+                    }
+                    break;
+                case LANGUAGE_CLASSIFIER:
+                    ok = dataDir == null
+                            ? (boolean) SETUP_LANGUAGE_CLASSIFIER.invokeExact()
+                            : (boolean) SETUP_LANGUAGE_CLASSIFIER_DATADIR.invokeExact(arena.allocateFrom(dataDir));
+                    if (!ok && dataDir == null) {
+                        throw new RuntimeException("Error loading libpostal expansion modules");
+                    } else if (!ok) {
+                        throw new IllegalArgumentException("Error loading libpostal expansion modules with data dir");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown module " + module);
+            }
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void teardown(final LibPostal.Module module) {
+        try {
+            switch (module) {
+                case BASE:
+                    TEARDOWN.invokeExact();
+                    break;
+                case PARSER:
+                    TEARDOWN_PARSER.invokeExact();
+                    break;
+                case LANGUAGE_CLASSIFIER:
+                    TEARDOWN_LANGUAGE_CLASSIFIER.invokeExact();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown module " + module);
+            }
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void setDefaultOptions(final ParserOptions.Builder builder) {
+        // libpostal's default parser options have neither a language nor a country.
+        builder.language(null).country(null).labels((String[]) null);
+    }
+
+    @Override
+    public void setDefaultOptions(final ExpanderOptions.Builder builder) {
+        try (Arena arena = Arena.ofConfined()) {
+            final MemorySegment options = (MemorySegment) GET_DEFAULT_OPTIONS.invokeExact((SegmentAllocator) arena);
+            builder.addressComponents(options.get(JAVA_SHORT, ADDRESS_COMPONENTS))
+                    .latinAscii(flag(options, 0))
+                    .transliterate(flag(options, 1))
+                    .stripAccents(flag(options, 2))
+                    .decompose(flag(options, 3))
+                    .lowercase(flag(options, 4))
+                    .trimString(flag(options, 5))
+                    .dropParentheticals(flag(options, 6))
+                    .replaceNumericHyphens(flag(options, 7))
+                    .deleteNumericHyphens(flag(options, 8))
+                    .splitAlphaFromNumeric(flag(options, 9))
+                    .replaceWordHyphens(flag(options, 10))
+                    .deleteWordHyphens(flag(options, 11))
+                    .deleteFinalPeriods(flag(options, 12))
+                    .deleteAcronymPeriods(flag(options, 13))
+                    .dropEnglishPossessives(flag(options, 14))
+                    .deleteApostrophes(flag(options, 15))
+                    .expandNumex(flag(options, 16))
+                    .romanNumerals(flag(options, 17));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public ParsedComponent[] parse(final byte[] address, final ParserOptions options) {
+        try (Arena arena = Arena.ofConfined()) {
+            return parse(toCString(arena, address), parserOptions(arena, options), options.getLabels());
+        }
+    }
+
+    @Override
+    public ParsedComponent[][] parseBatch(final byte[][] addresses, final ParserOptions options) {
+        final ParsedComponent[][] result = new ParsedComponent[addresses.length][];
+        try (Arena arena = Arena.ofConfined()) {
+            final MemorySegment nativeOptions = parserOptions(arena, options);
+            for (int i = 0; i < addresses.length; i++) {
+                try (Arena row = Arena.ofConfined()) {
+                    result[i] = parse(toCString(row, addresses[i]), nativeOptions, options.getLabels());
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public ExpandedComponent[] parseAndExpand(final byte[] address, final ParserOptions parserOptions,
+                                              final ExpanderOptions expanderOptions) {
+        try (Arena arena = Arena.ofConfined()) {
+            final ParsedComponent[] components = parse(toCString(arena, address), parserOptions(arena, parserOptions),
+                    parserOptions.getLabels());
+            final MemorySegment nativeOptions = normalizeOptions(arena, expanderOptions);
+            final ExpandedComponent[] result = new ExpandedComponent[components.length];
+            for (int i = 0; i < components.length; i++) {
+                final String value = components[i].getValue();
+                nativeOptions.set(JAVA_SHORT, ADDRESS_COMPONENTS, componentMask(components[i].getLabel()));
+                try (Arena row = Arena.ofConfined()) {
+                    result[i] = new ExpandedComponent(value, components[i].getLabel(),
+                            expand(row, toCString(row, value.getBytes(StandardCharsets.UTF_8)), nativeOptions));
+                }
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public String[] expand(final byte[] address, final ExpanderOptions options) {
+        try (Arena arena = Arena.ofConfined()) {
+            return expand(arena, toCString(arena, address), normalizeOptions(arena, options));
+        }
+    }
+
+    @Override
+    public String[][] expandBatch(final byte[][] addresses, final ExpanderOptions options) {
+        final String[][] result = new String[addresses.length][];
+        try (Arena arena = Arena.ofConfined()) {
+            final MemorySegment nativeOptions = normalizeOptions(arena, options);
+            for (int i = 0; i < addresses.length; i++) {
+                try (Arena row = Arena.ofConfined()) {
+                    result[i] = expand(row, toCString(row, addresses[i]), nativeOptions);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long[] expandHashes(final byte[] address, final ExpanderOptions options) {
+        try (Arena arena = Arena.ofConfined()) {
+            return expandHashes(arena, toCString(arena, address), normalizeOptions(arena, options));
+        }
+    }
+
+    @Override
+    public long[][] expandHashesBatch(final byte[][] addresses, final ExpanderOptions options) {
+        final long[][] result = new long[addresses.length][];
+        try (Arena arena = Arena.ofConfined()) {
+            final MemorySegment nativeOptions = normalizeOptions(arena, options);
+            for (int i = 0; i < addresses.length; i++) {
+                try (Arena row = Arena.ofConfined()) {
+                    result[i] = expandHashes(row, toCString(row, addresses[i]), nativeOptions);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long[] expandTokenHashes(final byte[] address, final ExpanderOptions options) {
+        try (Arena arena = Arena.ofConfined()) {
+            return expandTokenHashes(arena, toCString(arena, address), normalizeOptions(arena, options));
+        }
+    }
+
+    @Override
+    public long[][] expandTokenHashesBatch(final byte[][] addresses, final ExpanderOptions options) {
+        final long[][] result = new long[addresses.length][];
+        try (Arena arena = Arena.ofConfined()) {
+            final MemorySegment nativeOptions = normalizeOptions(arena, options);
+            for (int i = 0; i < addresses.length; i++) {
+                try (Arena row = Arena.ofConfined()) {
+                    result[i] = expandTokenHashes(row, toCString(row, addresses[i]), nativeOptions);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ParsedComponent[] parse(final MemorySegment address, final MemorySegment options,
+                                           final String[] labels) {
+        final MemorySegment response;
+        try {
+            response = (MemorySegment) PARSE_ADDRESS.invokeExact(address, options);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        if (response.equals(MemorySegment.NULL)) {
+            return new ParsedComponent[0];
+        }
+
+        try {
+            final long numComponents = response.get(JAVA_LONG, 0);
+            final MemorySegment components = response.get(ADDRESS, PARSER_RESPONSE.byteOffset(
+                    MemoryLayout.PathElement.groupElement("components"))).reinterpret(numComponents * ADDRESS.byteSize());
+            final MemorySegment componentLabels = response.get(ADDRESS, PARSER_RESPONSE.byteOffset(
+                    MemoryLayout.PathElement.groupElement("labels"))).reinterpret(numComponents * ADDRESS.byteSize());
+
+            final List<ParsedComponent> result = new ArrayList<>((int) numComponents);
+            for (long i = 0; i < numComponents; i++) {
+                final String label = readString(componentLabels.getAtIndex(ADDRESS, i));
+                if (labels != null && !contains(labels, label)) {
+                    continue;
+                }
+                result.add(new ParsedComponent(readBytes(components.getAtIndex(ADDRESS, i)), label));
+            }
+            return result.toArray(new ParsedComponent[0]);
+        } finally {
+            try {
+                PARSER_RESPONSE_DESTROY.invokeExact(response);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    private static String[] expand(final Arena arena, final MemorySegment address, final MemorySegment options) {
+        return expand(arena, address, options, (array, n) -> {
+            final String[] result = new String[n];
+            for (int i = 0; i < n; i++) {
+                result[i] = readString(array.getAtIndex(ADDRESS, i));
+            }
+            return result;
+        }, new String[0]);
+    }
+
+    private static long[] expandHashes(final Arena arena, final MemorySegment address,
+                                       final MemorySegment options) {
+        return expand(arena, address, options, (array, n) -> {
+            final long[] result = new long[n];
+            for (int i = 0; i < n; i++) {
+                final byte[] bytes = readBytes(array.getAtIndex(ADDRESS, i));
+                result[i] = XxHash64.hash(bytes, 0, bytes.length, XxHash64.DEFAULT_SEED);
+            }
+            return result;
+        }, new long[0]);
+    }
+
+    // Like the JNI glue: the distinct hashes of the space-separated tokens of all expansions, ascending.
+    private static long[] expandTokenHashes(final Arena arena, final MemorySegment address,
+                                            final MemorySegment options) {
+        return expand(arena, address, options, (array, n) -> {
+            long[] hashes = new long[16];
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                final byte[] bytes = readBytes(array.getAtIndex(ADDRESS, i));
+                int token = 0;
+                for (int j = 0; j <= bytes.length; j++) {
+                    if (j == bytes.length || bytes[j] == ' ') {
+                        if (j > token) {
+                            if (count == hashes.length) {
+                                hashes = Arrays.copyOf(hashes, count * 2);
+                            }
+                            hashes[count++] = XxHash64.hash(bytes, token, j - token, XxHash64.DEFAULT_SEED);
+                        }
+                        token = j + 1;
+                    }
+                }
+            }
+            Arrays.sort(hashes, 0, count);
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                if (distinct == 0 || hashes[i] != hashes[distinct - 1]) {
+                    hashes[distinct++] = hashes[i];
+                }
+            }
+            return Arrays.copyOf(hashes, distinct);
+        }, new long[0]);
+    }
+
+    /**
+     * Reads the expansions of an address out of libpostal's array of {@code n} C strings.
+     */
+    private interface ExpansionReader<T> {
+        T read(MemorySegment array, int n);
+    }
+
+    private static <T> T expand(final Arena arena, final MemorySegment address, final MemorySegment options,
+                                final ExpansionReader<T> reader, final T empty) {
+        final MemorySegment count = arena.allocate(JAVA_LONG);
+        final MemorySegment expansions;
+        try {
+            expansions = (MemorySegment) EXPAND_ADDRESS.invokeExact(address, options, count);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        final long n = count.get(JAVA_LONG, 0);
+        if (expansions.equals(MemorySegment.NULL)) {
+            return empty;
+        }
+
+        try {
+            return reader.read(expansions.reinterpret(n * ADDRESS.byteSize()), (int) n);
+        } finally {
+            try {
+                EXPANSION_ARRAY_DESTROY.invokeExact(expansions, n);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+    }
+
+    private static MemorySegment parserOptions(final Arena arena, final ParserOptions options) {
+        final MemorySegment segment = arena.allocate(PARSER_OPTIONS);
+        if (options.getLanguage() != null) {
+            segment.set(ADDRESS, 0, arena.allocateFrom(options.getLanguage()));
+        }
+        if (options.getCountry() != null) {
+            segment.set(ADDRESS, ADDRESS.byteSize(), arena.allocateFrom(options.getCountry()));
+        }
+        return segment;
+    }
+
+    private static MemorySegment normalizeOptions(final Arena arena, final ExpanderOptions options) {
+        final MemorySegment segment = arena.allocate(NORMALIZE_OPTIONS);
+
+        final String[] languages = options.getLanguages();
+        if (languages != null) {
+            final MemorySegment array = arena.allocate(ADDRESS, Math.max(1, languages.length));
+            for (int i = 0; i < languages.length; i++) {
+                array.setAtIndex(ADDRESS, i, arena.allocateFrom(languages[i]));
+            }
+            segment.set(ADDRESS, LANGUAGES, array);
+            segment.set(JAVA_LONG, NUM_LANGUAGES, languages.length);
+        }
+
+        segment.set(JAVA_SHORT, ADDRESS_COMPONENTS, options.getAddressComponents());
+        final boolean[] flags = {
+                options.getLatinAscii(), options.getTransliterate(), options.getStripAccents(),
+                options.getDecompose(), options.getLowercase(), options.getTrimString(),
+                options.getDropParentheticals(), options.getReplaceNumericHyphens(),
+                options.getDeleteNumericHyphens(), options.getSplitAlphaFromNumeric(),
+                options.getReplaceWordHyphens(), options.getDeleteWordHyphens(), options.getDeleteFinalPeriods(),
+                options.getDeleteAcronymPeriods(), options.getDropEnglishPossessives(),
+                options.getDeleteApostrophes(), options.getExpandNumex(), options.getRomanNumerals()
+        };
+        for (int i = 0; i < flags.length; i++) {
+            segment.set(JAVA_BOOLEAN, FIRST_FLAG + i, flags[i]);
+        }
+        return segment;
+    }
+
+    private static MemorySegment toCString(final Arena arena, final byte[] bytes) {
+        final MemorySegment segment = arena.allocate(bytes.length + 1L); // zeroed, so NUL-terminated
+        MemorySegment.copy(bytes, 0, segment, JAVA_BYTE, 0, bytes.length);
+        return segment;
+    }
+
+    private static String readString(final MemorySegment pointer) {
+        return pointer.reinterpret(Long.MAX_VALUE).getString(0);
+    }
+
+    private static byte[] readBytes(final MemorySegment pointer) {
+        final MemorySegment string = pointer.reinterpret(Long.MAX_VALUE);
+        long length = 0;
+        while (string.get(JAVA_BYTE, length) != 0) {
+            length++;
+        }
+        return string.asSlice(0, length).toArray(JAVA_BYTE);
+    }
+
+    private static boolean flag(final MemorySegment options, final int index) {
+        return options.get(JAVA_BOOLEAN, FIRST_FLAG + index);
+    }
+
+    // The address components whose expansion rules apply to a parser label, as in jpostal_AddressParser.c.
+    private static short componentMask(final String label) {
+        switch (label) {
+            case "house_number": return ADDRESS_HOUSE_NUMBER;
+            case "road": return ADDRESS_STREET;
+            case "house": return ADDRESS_NAME;
+            case "unit": return ADDRESS_UNIT;
+            case "level": return ADDRESS_LEVEL;
+            case "staircase": return ADDRESS_STAIRCASE;
+            case "entrance": return ADDRESS_ENTRANCE;
+            case "category": return ADDRESS_CATEGORY;
+            case "near": return ADDRESS_NEAR;
+            case "po_box": return ADDRESS_PO_BOX;
+            case "postcode": return ADDRESS_POSTAL_CODE;
+            case "suburb":
+            case "city_district":
+            case "city":
+            case "island":
+            case "state_district":
+            case "state":
+            case "country_region":
+            case "country":
+            case "world_region":
+                return ADDRESS_TOPONYM;
+            default:
+                return ADDRESS_ANY;
+        }
+    }
+
+    private static boolean contains(final String[] values, final String value) {
+        for (String candidate : values) {
+            if (candidate.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static StructLayout normalizeOptionsLayout() {
+        final MemoryLayout[] members = new MemoryLayout[NORMALIZE_FLAGS.length + 4];
+        members[0] = ADDRESS.withName("languages");
+        members[1] = JAVA_LONG.withName("num_languages");
+        members[2] = JAVA_SHORT.withName("address_components");
+        for (int i = 0; i < NORMALIZE_FLAGS.length; i++) {
+            members[3 + i] = JAVA_BOOLEAN.withName(NORMALIZE_FLAGS[i]);
+        }
+        // Pad the 36 bytes of fields to the 8-byte alignment of the C struct.
+        members[members.length - 1] = MemoryLayout.paddingLayout(4);
+        return MemoryLayout.structLayout(members);
+    }
+
+    private static long offset(final StructLayout layout, final String name) {
+        return layout.byteOffset(MemoryLayout.PathElement.groupElement(name));
+    }
+
+    private static MethodHandle downcall(final Linker linker, final SymbolLookup lookup, final String name,
+                                         final FunctionDescriptor descriptor) {
+        return linker.downcallHandle(lookup.find(name).orElseThrow(
+                () -> new UnsatisfiedLinkError("libpostal symbol " + name + " not found; is libpostal loaded?")),
+                descriptor);
+    }
+
+    private static RuntimeException rethrow(final Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException("libpostal call failed", t);
+    }
+}
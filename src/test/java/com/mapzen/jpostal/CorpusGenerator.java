@@ -0,0 +1,222 @@
+package com.mapzen.jpostal;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic addresses across countries, scripts and lengths, mixed with a share of adversarial inputs:
+ * very long blobs, punctuation and symbol noise, mixed scripts, long digit runs and near-empty strings. The same seed
+ * always yields the same corpus, so throughput numbers of different runs are comparable.
+ *
+ * Usage: {@code CorpusGenerator COUNT OUTPUT [SEED] [ADVERSARIAL_SHARE]} writes one address per line.
+ */
+public final class CorpusGenerator {
+
+    /** The kinds of adversarial input produced, in the order they are cycled through. */
+    enum Adversarial { LONG_BLOB, NOISE, MIXED_SCRIPTS, DIGITS, TINY }
+
+    private static final class Country {
+        final String name;
+        final String[] streets;
+        final String[] streetTypes;
+        final String[] cities;
+        final String[] regions;
+        final boolean numberFirst;
+        final String postcodePattern; // # is a digit, A a letter
+
+        Country(String name, String[] streets, String[] streetTypes, String[] cities, String[] regions,
+                boolean numberFirst, String postcodePattern) {
+            this.name = name;
+            this.streets = streets;
+            this.streetTypes = streetTypes;
+            this.cities = cities;
+            this.regions = regions;
+            this.numberFirst = numberFirst;
+            this.postcodePattern = postcodePattern;
+        }
+    }
+
+    private static final Country[] COUNTRIES = {
+            new Country("USA", new String[]{"Franklin", "Main", "Oak", "Washington", "Lincoln", "Maple", "26th"},
+                    new String[]{"Ave", "St", "Blvd", "Rd", "Street", "Avenue", "Dr"},
+                    new String[]{"Brooklyn", "New York", "Chicago", "Austin", "Seattle", "Boston"},
+                    new String[]{"NY", "IL", "TX", "WA", "MA"}, true, "#####"),
+            new Country("United Kingdom", new String[]{"Baker", "High", "Church", "Victoria", "Station"},
+                    new String[]{"Street", "Road", "Lane", "Close"},
+                    new String[]{"London", "Manchester", "Leeds", "Bristol"}, new String[]{""}, true, "AA# #AA"),
+            new Country("Deutschland", new String[]{"Friedrich", "Haupt", "Bahnhof", "Goethe", "Schiller"},
+                    new String[]{"straße", "weg", "platz", "allee"},
+                    new String[]{"Berlin", "München", "Köln", "Düsseldorf"}, new String[]{""}, false, "#####"),
+            new Country("France", new String[]{"des Champs-Élysées", "de la République", "Victor Hugo", "du Général de Gaulle"},
+                    new String[]{"Avenue", "Rue", "Boulevard", "Place"},
+                    new String[]{"Paris", "Lyon", "Marseille", "Besançon"}, new String[]{""}, true, "#####"),
+            new Country("España", new String[]{"de Alcalá", "Mayor", "de la Paz", "del Carmen"},
+                    new String[]{"Calle", "Avenida", "Plaza", "Paseo"},
+                    new String[]{"Madrid", "Sevilla", "Málaga", "A Coruña"}, new String[]{""}, false, "#####"),
+            new Country("Brasil", new String[]{"Augusta", "das Flores", "São João", "Paulista"},
+                    new String[]{"Rua", "Avenida", "Travessa"},
+                    new String[]{"São Paulo", "Rio de Janeiro", "Belo Horizonte"}, new String[]{"SP", "RJ", "MG"},
+                    false, "#####-###"),
+            new Country("Россия", new String[]{"Тверская", "Ленина", "Арбат", "Невский"},
+                    new String[]{"улица", "проспект", "переулок"},
+                    new String[]{"Москва", "Санкт-Петербург", "Казань"}, new String[]{""}, false, "######"),
+            new Country("Ελλάδα", new String[]{"Ερμού", "Σταδίου", "Πανεπιστημίου"},
+                    new String[]{"Οδός", "Λεωφόρος"},
+                    new String[]{"Αθήνα", "Θεσσαλονίκη", "Πάτρα"}, new String[]{""}, false, "### ##"),
+            new Country("日本", new String[]{"銀座", "新宿", "梅田", "栄"},
+                    new String[]{"丁目"},
+                    new String[]{"東京都中央区", "大阪府大阪市", "名古屋市中区"}, new String[]{""}, false, "###-####"),
+            new Country("中国", new String[]{"长安", "南京", "中山", "人民"},
+                    new String[]{"街", "路", "大道"},
+                    new String[]{"北京市", "上海市", "广州市"}, new String[]{""}, false, "######"),
+            new Country("대한민국", new String[]{"세종대로", "테헤란로", "해운대로"},
+                    new String[]{"길"},
+                    new String[]{"서울특별시", "부산광역시", "인천광역시"}, new String[]{""}, false, "#####"),
+            new Country("مصر", new String[]{"التحرير", "الجمهورية", "النيل"},
+                    new String[]{"شارع", "ميدان"},
+                    new String[]{"القاهرة", "الإسكندرية", "الجيزة"}, new String[]{""}, false, "#####"),
+            new Country("भारत", new String[]{"महात्मा गांधी", "नेहरू", "राजपथ"},
+                    new String[]{"मार्ग", "रोड"},
+                    new String[]{"नई दिल्ली", "मुंबई", "जयपुर"}, new String[]{""}, false, "######")
+    };
+
+    private static final String NOISE = "#*&^%$@!~`|\\/<>[]{}()=+_;:?.,'\"—…•€£¥©®™ ";
+    private static final String[] EMOJI = {"🏠", "📦", "🚚", "✉️", "🇺🇸", "👍🏽"};
+
+    private final Random random;
+    private final double adversarialShare;
+    private int adversarialCount = 0;
+
+    public CorpusGenerator(final long seed, final double adversarialShare) {
+        if (adversarialShare < 0 || adversarialShare > 1) {
+            throw new IllegalArgumentException("Adversarial share must be between 0 and 1, got " + adversarialShare);
+        }
+        this.random = new Random(seed);
+        this.adversarialShare = adversarialShare;
+    }
+
+    public List<String> generate(final int count) {
+        final List<String> addresses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            addresses.add(next());
+        }
+        return addresses;
+    }
+
+    public String next() {
+        if (random.nextDouble() < adversarialShare) {
+            return adversarial(Adversarial.values()[adversarialCount++ % Adversarial.values().length]);
+        }
+        return address(COUNTRIES[random.nextInt(COUNTRIES.length)]);
+    }
+
+    String adversarial(final Adversarial kind) {
+        final StringBuilder sb = new StringBuilder();
+        switch (kind) {
+            case LONG_BLOB: {
+                // Tens of kilobytes of address-like tokens, as when a whole document ends up in an address column.
+                final int target = 8 * 1024 + random.nextInt(56 * 1024);
+                while (sb.length() < target) {
+                    sb.append(address(COUNTRIES[random.nextInt(COUNTRIES.length)])).append(' ');
+                }
+                break;
+            }
+            case NOISE: {
+                sb.append(address(COUNTRIES[random.nextInt(COUNTRIES.length)]));
+                for (int i = 0; i < 50 + random.nextInt(200); i++) {
+                    final int at = random.nextInt(sb.length() + 1);
+                    sb.insert(at, random.nextInt(8) == 0 ? pick(EMOJI) : String.valueOf(NOISE.charAt(random.nextInt(NOISE.length()))));
+                }
+                break;
+            }
+            case MIXED_SCRIPTS:
+                for (int i = 0; i < 4 + random.nextInt(8); i++) {
+                    final Country country = COUNTRIES[random.nextInt(COUNTRIES.length)];
+                    sb.append(pick(country.streets)).append(' ').append(pick(country.cities)).append(' ');
+                }
+                break;
+            case DIGITS:
+                for (int i = 0; i < 20 + random.nextInt(200); i++) {
+                    sb.append(random.nextInt(100000)).append(random.nextBoolean() ? " " : "-");
+                }
+                break;
+            case TINY:
+                sb.append(random.nextBoolean() ? " " : String.valueOf(NOISE.charAt(random.nextInt(NOISE.length()))));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown kind " + kind);
+        }
+        return sb.toString();
+    }
+
+    private String address(final Country country) {
+        final String number = String.valueOf(1 + random.nextInt(random.nextBoolean() ? 200 : 20000));
+        final String street = pick(country.streets);
+        final String type = pick(country.streetTypes);
+        final StringBuilder sb = new StringBuilder();
+
+        if (random.nextInt(5) == 0) {
+            sb.append(random.nextBoolean() ? "Apt " : "Unit ").append(1 + random.nextInt(40)).append(", ");
+        }
+        if (country.numberFirst) {
+            sb.append(number).append(' ').append(street).append(' ').append(type);
+        } else if (type.length() <= 2 || Character.isLowerCase(type.charAt(0))) {
+            sb.append(street).append(type).append(' ').append(number);
+        } else {
+            sb.append(type).append(' ').append(street).append(' ').append(number);
+        }
+        sb.append(", ").append(pick(country.cities));
+        final String region = pick(country.regions);
+        if (!region.isEmpty()) {
+            sb.append(", ").append(region);
+        }
+        sb.append(' ').append(postcode(country.postcodePattern));
+        if (random.nextInt(3) == 0) {
+            sb.append(", ").append(country.name);
+        }
+        return random.nextInt(10) == 0 ? sb.toString().toUpperCase() : sb.toString();
+    }
+
+    private String postcode(final String pattern) {
+        final StringBuilder sb = new StringBuilder(pattern.length());
+        for (char c : pattern.toCharArray()) {
+            if (c == '#') {
+                sb.append((char) ('0' + random.nextInt(10)));
+            } else if (c == 'A') {
+                sb.append((char) ('A' + random.nextInt(26)));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private String pick(final String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CorpusGenerator COUNT OUTPUT [SEED] [ADVERSARIAL_SHARE]");
+            System.exit(2);
+        }
+        final int count = Integer.parseInt(args[0]);
+        final long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+        final double adversarialShare = args.length > 3 ? Double.parseDouble(args[3]) : 0.01;
+
+        final CorpusGenerator generator = new CorpusGenerator(seed, adversarialShare);
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < count; i++) {
+                // One address per line, so line breaks inside an address would split it.
+                out.write(generator.next().replace('\n', ' ').replace('\r', ' '));
+                out.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.mapzen.jpostal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in nanoseconds. Values below 32 are counted exactly; above, every power of two
+ * is split into 32 buckets, so percentiles are within about 3% of the recorded values.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    void record(final long nanos) {
+        final long value = Math.max(0L, nanos);
+        counts.incrementAndGet(index(value));
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    long count() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value at the given percentile (0 to 100), as the upper end of its bucket, or 0 if nothing was
+     * recorded.
+     */
+    long percentile(final double percentile) {
+        final long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(max.get(), lowerBound(i + 1) - 1);
+            }
+        }
+        return max.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    static int index(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        final int sub = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+}
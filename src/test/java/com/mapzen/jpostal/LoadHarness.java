@@ -0,0 +1,353 @@
+package com.mapzen.jpostal;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives {@link AddressParser} and {@link AddressExpander} at a fixed concurrency for a sustained period and reports,
+ * once per interval, throughput, call latency percentiles, GC activity, heap use and the native resident set size.
+ * A resident set that keeps growing after warm-up points at a native leak that short tests do not catch.
+ *
+ * Run with {@code ./gradlew loadTest -PloadArgs="--duration 5m --threads 16"}; see {@link #USAGE} for the options.
+ */
+public final class LoadHarness {
+    static final String USAGE = String.join("\n",
+            "Usage: LoadHarness [options]",
+            "  --duration D             how long to run, e.g. 90s or 5m (default: 60s)",
+            "  --interval D             how often to report (default: 10s)",
+            "  --threads N              concurrent callers (default: available processors)",
+            "  --mode parse|expand|mixed  (default: mixed)",
+            "  --batch-size N           addresses per call; 1 uses the single-address methods (default: 1)",
+            "  --corpus FILE            addresses to use, one per line (default: generated)",
+            "  --corpus-size N          generated addresses (default: 100000)",
+            "  --seed N                 seed of the generated corpus (default: 42)",
+            "  --adversarial SHARE      share of adversarial generated addresses (default: 0.01)",
+            "  --max-input-bytes N      reject addresses longer than this (default: unlimited)",
+            "  --execution-mode MODE    caller_thread or native_threads (default: caller_thread)",
+            "  --data-dir DIR           libpostal data directory",
+            "  --download               download the libpostal data if it is missing",
+            "  --csv FILE               also write the interval reports as CSV",
+            "  --max-rss-growth-mb N    fail if the RSS grows more than this after the first interval");
+
+    static final class Options {
+        Duration duration = Duration.ofSeconds(60);
+        Duration interval = Duration.ofSeconds(10);
+        int threads = Runtime.getRuntime().availableProcessors();
+        String mode = "mixed";
+        int batchSize = 1;
+        String corpus;
+        int corpusSize = 100000;
+        long seed = 42L;
+        double adversarial = 0.01;
+        int maxInputBytes = InputLimits.UNLIMITED;
+        ExecutionMode executionMode = ExecutionMode.CALLER_THREAD;
+        String dataDir;
+        boolean download = false;
+        String csv;
+        long maxRssGrowthMb = -1;
+
+        static Options parse(final String[] args) {
+            final Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                final String arg = args[i];
+                if (arg.equals("--download")) {
+                    options.download = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                final String value = args[++i];
+                switch (arg) {
+                    case "--duration": options.duration = duration(value); break;
+                    case "--interval": options.interval = duration(value); break;
+                    case "--threads": options.threads = Integer.parseInt(value); break;
+                    case "--mode": options.mode = value; break;
+                    case "--batch-size": options.batchSize = Integer.parseInt(value); break;
+                    case "--corpus": options.corpus = value; break;
+                    case "--corpus-size": options.corpusSize = Integer.parseInt(value); break;
+                    case "--seed": options.seed = Long.parseLong(value); break;
+                    case "--adversarial": options.adversarial = Double.parseDouble(value); break;
+                    case "--max-input-bytes": options.maxInputBytes = Integer.parseInt(value); break;
+                    case "--execution-mode":
+                        options.executionMode = ExecutionMode.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--data-dir": options.dataDir = value; break;
+                    case "--csv": options.csv = value; break;
+                    case "--max-rss-growth-mb": options.maxRssGrowthMb = Long.parseLong(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (!options.mode.equals("parse") && !options.mode.equals("expand") && !options.mode.equals("mixed")) {
+                throw new IllegalArgumentException("Unknown mode " + options.mode);
+            }
+            if (options.threads < 1 || options.batchSize < 1) {
+                throw new IllegalArgumentException("--threads and --batch-size must be at least 1");
+            }
+            return options;
+        }
+
+        static Duration duration(final String value) {
+            final String lower = value.toLowerCase(Locale.ROOT);
+            if (lower.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(lower.substring(0, lower.length() - 2)));
+            } else if (lower.endsWith("s")) {
+                return Duration.ofSeconds(Long.parseLong(lower.substring(0, lower.length() - 1)));
+            } else if (lower.endsWith("m")) {
+                return Duration.ofMinutes(Long.parseLong(lower.substring(0, lower.length() - 1)));
+            } else if (lower.endsWith("h")) {
+                return Duration.ofHours(Long.parseLong(lower.substring(0, lower.length() - 1)));
+            }
+            return Duration.ofSeconds(Long.parseLong(lower));
+        }
+    }
+
+    /**
+     * The totals of a run.
+     */
+    static final class Summary {
+        final long calls;
+        final long rows;
+        final long errors;
+        final long rssGrowthBytes;
+
+        Summary(final long calls, final long rows, final long errors, final long rssGrowthBytes) {
+            this.calls = calls;
+            this.rows = rows;
+            this.errors = errors;
+            this.rssGrowthBytes = rssGrowthBytes;
+        }
+    }
+
+    private final Options options;
+    private final PrintStream out;
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LatencyHistogram interval = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong cursor = new AtomicLong();
+
+    LoadHarness(final Options options, final PrintStream out) {
+        this.options = options;
+        this.out = out;
+    }
+
+    Summary run() throws IOException, InterruptedException {
+        final List<String> corpus = options.corpus != null
+                ? Files.readAllLines(Paths.get(options.corpus), StandardCharsets.UTF_8)
+                : new CorpusGenerator(options.seed, options.adversarial).generate(options.corpusSize);
+        if (corpus.isEmpty()) {
+            throw new IllegalArgumentException("The corpus is empty");
+        }
+
+        final Config.Builder config = Config.builder()
+                .executionMode(options.executionMode)
+                .downloadDataIfNeeded(options.download);
+        if (options.dataDir != null) {
+            config.dataDir(options.dataDir);
+        }
+        final Config built = config.build();
+        final boolean parse = !options.mode.equals("expand");
+        final boolean expand = !options.mode.equals("parse");
+        final AddressParser parser = parse ? AddressParser.getInstanceConfig(built) : null;
+        final AddressExpander expander = expand ? AddressExpander.getInstanceConfig(built) : null;
+
+        final ParserOptions.Builder parserOptions = parse ? new ParserOptions.Builder() : null;
+        final ExpanderOptions.Builder expanderOptions = expand ? new ExpanderOptions.Builder() : null;
+        if (options.maxInputBytes != InputLimits.UNLIMITED) {
+            if (parse) {
+                parserOptions.maxInputBytes(options.maxInputBytes);
+            }
+            if (expand) {
+                expanderOptions.maxInputBytes(options.maxInputBytes);
+            }
+        }
+        final ParserOptions parseWith = parse ? parserOptions.build() : null;
+        final ExpanderOptions expandWith = expand ? expanderOptions.build() : null;
+
+        out.printf(Locale.ROOT, "%d addresses, %d threads, mode %s, batch size %d, %s for %s%n", corpus.size(),
+                options.threads, options.mode, options.batchSize, options.executionMode, options.duration);
+        final long deadline = System.nanoTime() + options.duration.toNanos();
+
+        final List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < options.threads; t++) {
+            final boolean parseThis = parse && (!expand || t % 2 == 0);
+            final Thread worker = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    final List<String> batch = nextBatch(corpus);
+                    final long start = System.nanoTime();
+                    try {
+                        if (parseThis) {
+                            if (batch.size() == 1) {
+                                parser.parseAddressWithOptions(batch.get(0), parseWith);
+                            } else {
+                                parser.parseAddresses(batch, parseWith);
+                            }
+                        } else if (batch.size() == 1) {
+                            expander.expandAddressWithOptions(batch.get(0), expandWith);
+                        } else {
+                            expander.expandAddresses(batch, expandWith);
+                        }
+                    } catch (RuntimeException e) {
+                        errors.increment();
+                        continue;
+                    }
+                    final long elapsed = System.nanoTime() - start;
+                    total.record(elapsed);
+                    interval.record(elapsed);
+                    calls.increment();
+                    rows.add(batch.size());
+                }
+            }, "jpostal-load-" + t);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+
+        final PrintWriter csv = options.csv == null ? null
+                : new PrintWriter(Files.newBufferedWriter(Paths.get(options.csv), StandardCharsets.UTF_8));
+        final long rssStart = NativeMemory.residentSetBytes();
+        long rssAfterWarmup = NativeMemory.UNKNOWN;
+        long rssEnd = rssStart;
+        try {
+            if (csv != null) {
+                csv.println("elapsed_s,calls_per_s,rows_per_s,p50_us,p90_us,p99_us,p999_us,max_us,gc_count,gc_ms,"
+                        + "heap_mb,rss_mb,rejected,errors");
+            }
+            for (Thread worker : workers) {
+                worker.start();
+            }
+
+            final long start = System.nanoTime();
+            long lastReport = start;
+            long lastCalls = 0;
+            long lastRows = 0;
+            long[] lastGc = gcTotals();
+            while (true) {
+                final long now = System.nanoTime();
+                final long remaining = deadline - now;
+                if (remaining <= 0) {
+                    break;
+                }
+                Thread.sleep(Math.max(1L, Math.min(options.interval.toMillis(), remaining / 1000000L)));
+
+                final long reportTime = System.nanoTime();
+                final double seconds = (reportTime - lastReport) / 1e9;
+                final long callsNow = calls.sum();
+                final long rowsNow = rows.sum();
+                final long[] gc = gcTotals();
+                final long rss = NativeMemory.residentSetBytes();
+                if (rssAfterWarmup == NativeMemory.UNKNOWN) {
+                    rssAfterWarmup = rss;
+                }
+                rssEnd = rss;
+
+                report(csv, (reportTime - start) / 1e9, (callsNow - lastCalls) / seconds,
+                        (rowsNow - lastRows) / seconds, gc[0] - lastGc[0], gc[1] - lastGc[1], rss,
+                        rejected(parser, expander));
+                interval.reset();
+                lastReport = reportTime;
+                lastCalls = callsNow;
+                lastRows = rowsNow;
+                lastGc = gc;
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } finally {
+            if (csv != null) {
+                csv.close();
+            }
+        }
+
+        final long rssGrowth = rssAfterWarmup == NativeMemory.UNKNOWN || rssEnd == NativeMemory.UNKNOWN
+                ? 0L : rssEnd - rssAfterWarmup;
+        out.printf(Locale.ROOT, "total: %d calls, %d rows, %d errors, p50=%s p99=%s p99.9=%s max=%s, "
+                        + "RSS growth after first interval: %s%n",
+                calls.sum(), rows.sum(), errors.sum(), micros(total.percentile(50)), micros(total.percentile(99)),
+                micros(total.percentile(99.9)), micros(total.max()), megabytes(rssGrowth));
+        return new Summary(calls.sum(), rows.sum(), errors.sum(), rssGrowth);
+    }
+
+    private List<String> nextBatch(final List<String> corpus) {
+        final List<String> batch = new ArrayList<>(options.batchSize);
+        for (int i = 0; i < options.batchSize; i++) {
+            batch.add(corpus.get((int) (cursor.getAndIncrement() % corpus.size())));
+        }
+        return batch;
+    }
+
+    private void report(final PrintWriter csv, final double elapsed, final double callRate, final double rowRate,
+                        final long gcCount, final long gcMillis, final long rss, final long rejected) {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final long heap = memory.getHeapMemoryUsage().getUsed();
+        out.printf(Locale.ROOT, "%6.0fs  calls/s=%-9.0f rows/s=%-9.0f p50=%-9s p90=%-9s p99=%-9s p99.9=%-9s "
+                        + "max=%-9s gc=%d (%d ms)  heap=%s  rss=%s  rejected=%d  errors=%d%n",
+                elapsed, callRate, rowRate, micros(interval.percentile(50)), micros(interval.percentile(90)),
+                micros(interval.percentile(99)), micros(interval.percentile(99.9)), micros(interval.max()),
+                gcCount, gcMillis, megabytes(heap), megabytes(rss), rejected, errors.sum());
+        if (csv != null) {
+            csv.printf(Locale.ROOT, "%.0f,%.0f,%.0f,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d%n", elapsed, callRate, rowRate,
+                    interval.percentile(50) / 1000, interval.percentile(90) / 1000, interval.percentile(99) / 1000,
+                    interval.percentile(99.9) / 1000, interval.max() / 1000, gcCount, gcMillis, heap >> 20,
+                    rss == NativeMemory.UNKNOWN ? -1 : rss >> 20, rejected, errors.sum());
+            csv.flush();
+        }
+    }
+
+    private static long rejected(final AddressParser parser, final AddressExpander expander) {
+        return (parser == null ? 0 : parser.getRejectedCount()) + (expander == null ? 0 : expander.getRejectedCount());
+    }
+
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+
+    private static String micros(final long nanos) {
+        return nanos < 1000000 ? String.format(Locale.ROOT, "%dus", nanos / 1000)
+                : String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+    }
+
+    private static String megabytes(final long bytes) {
+        return bytes == NativeMemory.UNKNOWN ? "n/a" : String.format(Locale.ROOT, "%dMB", bytes >> 20);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        final Summary summary = new LoadHarness(options, System.out).run();
+        LibPostal.close();
+        if (options.maxRssGrowthMb >= 0 && summary.rssGrowthBytes > options.maxRssGrowthMb << 20) {
+            System.err.println("RSS grew by " + megabytes(summary.rssGrowthBytes) + ", more than the allowed "
+                    + options.maxRssGrowthMb + "MB");
+            System.exit(1);
+        }
+        System.exit(summary.errors > 0 ? 1 : 0);
+    }
+}
@@ -2,6 +2,11 @@ package com.mapzen.jpostal;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
 import static org.junit.Assert.*;
 
 public class TestAddressExpander {
@@ -108,4 +113,64 @@ public class TestAddressExpander {
     public void test4ByteCharacterExpansion() {
         assertTrue(containsExpansion("123 Main St, 𠜎𠜱𠝹𠱓, 😀🤠", "123 main street 𠜎𠜱𠝹𠱓 😀🤠"));
     }
+
+    @Test
+    public void testExpandIterator() {
+        AddressExpander expander = AddressExpander.getInstance();
+        ExpanderOptions options = new ExpanderOptions.Builder().build();
+        List<String> addresses = Arrays.asList("123 Main St", "Quatre vingt douze Ave des Champs-Élysées", "",
+                "123 Main St, 𠜎𠜱𠝹𠱓, 😀🤠");
+
+        Iterator<String[]> results = expander.expandIterator(addresses.iterator(), options, 3);
+        for (String address : addresses) {
+            assertTrue(results.hasNext());
+            assertArrayEquals(expander.expandAddressWithOptions(address, options), results.next());
+        }
+        assertFalse(results.hasNext());
+    }
+
+    @Test
+    public void testExpandToHashes() {
+        AddressExpander expander = AddressExpander.getInstance();
+        ExpanderOptions options = new ExpanderOptions.Builder().build();
+        List<String> addresses = Arrays.asList("123 Main St", "Quatre vingt douze Ave des Champs-Élysées", "",
+                "123 Main St, 𠜎𠜱𠝹𠱓, 😀🤠");
+
+        long[][] batch = expander.expandToHashes(addresses, options);
+        assertEquals(addresses.size(), batch.length);
+        for (int i = 0; i < addresses.size(); i++) {
+            String[] expansions = expander.expandAddressWithOptions(addresses.get(i), options);
+            long[] hashes = expander.expandToHashes(addresses.get(i), options);
+            assertEquals(expansions.length, hashes.length);
+            for (int j = 0; j < expansions.length; j++) {
+                assertEquals(XxHash64.hash(expansions[j]), hashes[j]);
+            }
+            assertArrayEquals(hashes, batch[i]);
+        }
+    }
+
+    @Test
+    public void testExpandToTokenHashes() {
+        AddressExpander expander = AddressExpander.getInstance();
+        ExpanderOptions options = new ExpanderOptions.Builder().build();
+        List<String> addresses = Arrays.asList("30 W 26th St, New York", "Quatre vingt douze Ave des Champs-Élysées",
+                "", "123 Main St, 𠜎𠜱𠝹𠱓, 😀🤠");
+
+        long[][] batch = expander.expandToTokenHashes(addresses, options);
+        assertEquals(addresses.size(), batch.length);
+        for (int i = 0; i < addresses.size(); i++) {
+            TreeSet<Long> expected = new TreeSet<>();
+            for (String expansion : expander.expandAddressWithOptions(addresses.get(i), options)) {
+                for (String token : expansion.split(" ")) {
+                    if (!token.isEmpty()) {
+                        expected.add(XxHash64.hash(token));
+                    }
+                }
+            }
+            long[] hashes = expander.expandToTokenHashes(addresses.get(i), options);
+            assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), hashes);
+            assertArrayEquals(hashes, batch[i]);
+        }
+        assertTrue(batch[0].length > 0);
+    }
 }
@@ -2,6 +2,14 @@ package com.mapzen.jpostal;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import static org.junit.Assert.*;
 import static org.junit.Assert.assertNull;
 
@@ -56,6 +64,34 @@ public class TestAddressParser {
                  );
     }
 
+    @Test
+    public void testParseSelectedLabels() {
+        AddressParser parser = AddressParser.getInstance();
+        ParserOptions options = new ParserOptions.Builder().labels("postcode", "city").build();
+        ParsedComponent[] parsedComponents = parser.parseAddressWithOptions("781 Franklin Ave Crown Heights Brooklyn NYC NY 11216 USA", options);
+
+        assertEquals(2, parsedComponents.length);
+        assertEquals("city", parsedComponents[0].getLabel());
+        assertEquals("nyc", parsedComponents[0].getValue());
+        assertEquals("postcode", parsedComponents[1].getLabel());
+        assertEquals("11216", parsedComponents[1].getValue());
+    }
+
+    @Test
+    public void testParseUnmatchedLabels() {
+        AddressParser parser = AddressParser.getInstance();
+        ParserOptions options = new ParserOptions.Builder().labels("po_box").build();
+
+        assertEquals(0, parser.parseAddressWithOptions("781 Franklin Ave Crown Heights Brooklyn NYC NY 11216 USA", options).length);
+    }
+
+    @Test
+    public void testNullLabel() {
+        AddressParser.getInstance();
+
+        assertThrows(NullPointerException.class, () -> new ParserOptions.Builder().labels("city", null));
+    }
+
     @Test()
     public void testConfigMismatchDataDir() {
         AddressParser.getInstance();
@@ -112,4 +148,160 @@ public class TestAddressParser {
                   new ParsedComponent("uk", "country")
                  );
     }
+
+    @Test
+    public void testParseIterator() {
+        AddressParser parser = AddressParser.getInstance();
+        ParserOptions options = new ParserOptions.Builder().build();
+        List<String> addresses = Arrays.asList(
+                "781 Franklin Ave Crown Heights Brooklyn NYC NY 11216 USA",
+                "Rue du Médecin-Colonel Calbairac Toulouse France",
+                "",
+                "𠜎𠜱𠝹𠱓, 😀🤠, London, UK",
+                "30 W 26th St, New York, NY");
+
+        Iterator<ParsedComponent[]> results = parser.parseIterator(addresses.iterator(), options, 2);
+        for (String address : addresses) {
+            assertTrue(results.hasNext());
+            ParsedComponent[] expected = parser.parseAddressWithOptions(address, options);
+            ParsedComponent[] actual = results.next();
+
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getLabel(), actual[i].getLabel());
+                assertEquals(expected[i].getValue(), actual[i].getValue());
+            }
+        }
+        assertFalse(results.hasNext());
+    }
+
+    @Test
+    public void testParseAddressesEmpty() {
+        AddressParser parser = AddressParser.getInstance();
+        ParserOptions options = new ParserOptions.Builder().build();
+
+        assertEquals(0, parser.parseAddresses(Collections.emptyList(), options).length);
+        assertFalse(parser.parseIterator(Collections.emptyIterator(), options, 10).hasNext());
+    }
+
+    @Test
+    public void testParseAddressesNull() {
+        AddressParser parser = AddressParser.getInstance();
+        ParserOptions options = new ParserOptions.Builder().build();
+
+        try {
+            parser.parseAddresses(Arrays.asList("address", null), options);
+            fail("Should throw NullPointerException to protect JNI");
+        } catch (NullPointerException e) {}
+
+        try {
+            parser.parseIterator(Collections.emptyIterator(), options, 0);
+            fail("Should reject a batch size below 1");
+        } catch (IllegalArgumentException e) {}
+    }
+
+    @Test
+    public void testParseParallel() {
+        AddressParser parser = AddressParser.getInstance();
+        ParserOptions options = new ParserOptions.Builder().build();
+        List<String> addresses = IntStream.range(0, 500)
+                .mapToObj(i -> i + " Franklin Ave Crown Heights Brooklyn NYC NY 11216 USA")
+                .collect(Collectors.toList());
+
+        ParsedComponent[][] parallel = parser.parseParallel(addresses, options, 16, new ForkJoinPool(4));
+        List<ParsedComponent[]> streamed = parser.parseAll(addresses.parallelStream(), options, 16)
+                .collect(Collectors.toList());
+
+        assertEquals(addresses.size(), parallel.length);
+        assertEquals(addresses.size(), streamed.size());
+        for (int i = 0; i < addresses.size(); i++) {
+            assertEquals(String.valueOf(i), parallel[i][0].getValue());
+            assertEquals(String.valueOf(i), streamed.get(i)[0].getValue());
+            assertEquals(8, parallel[i].length);
+        }
+    }
+
+    @Test
+    public void testInputLimits() {
+        AddressParser parser = AddressParser.getInstance();
+        long rejected = parser.getRejectedCount();
+        long truncated = parser.getTruncatedCount();
+
+        ParserOptions reject = new ParserOptions.Builder().maxInputBytes(64).build();
+        StringBuilder blob = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            blob.append("garbage ");
+        }
+        ParsedComponent[][] parsed = parser.parseAddresses(
+                Arrays.asList("781 Franklin Ave Brooklyn NY", blob.toString(), "30 W 26th St New York NY"), reject);
+        assertEquals(3, parsed.length);
+        assertEquals("781", parsed[0][0].getValue());
+        assertEquals(0, parsed[1].length);
+        assertEquals("30", parsed[2][0].getValue());
+        assertEquals(0, parser.parseAddressWithOptions(blob.toString(), reject).length);
+        assertEquals(rejected + 2, parser.getRejectedCount());
+
+        ParserOptions truncate = new ParserOptions.Builder().maxTokens(3).inputLimitPolicy(InputLimitPolicy.TRUNCATE).build();
+        ParsedComponent[] components = parser.parseAddressWithOptions("781 Franklin Ave Brooklyn NY 11238", truncate);
+        assertEquals("781", components[0].getValue());
+        assertEquals("franklin ave", components[1].getValue());
+        assertEquals(2, components.length);
+        assertEquals(truncated + 1, parser.getTruncatedCount());
+    }
+
+    @Test
+    public void testParseAddressesDedupe() {
+        AddressParser parser = AddressParser.getInstance();
+        long deduplicated = parser.getDeduplicatedCount();
+        List<String> addresses = Arrays.asList("781 Franklin Ave Brooklyn NY", "30 W 26th St New York NY",
+                "781 Franklin Ave Brooklyn NY", " 781 FRANKLIN AVE BROOKLYN NY");
+
+        ParsedComponent[][] exact = parser.parseAddresses(addresses,
+                new ParserOptions.Builder().dedupe(DedupeMode.EXACT).build());
+        assertEquals(4, exact.length);
+        assertSame(exact[0], exact[2]);
+        assertEquals("30", exact[1][0].getValue());
+        assertEquals("781", exact[3][0].getValue());
+        assertEquals(deduplicated + 1, parser.getDeduplicatedCount());
+
+        ParsedComponent[][] normalized = parser.parseAddresses(addresses,
+                new ParserOptions.Builder().dedupe(DedupeMode.NORMALIZED).build());
+        assertSame(normalized[0], normalized[3]);
+        assertEquals(deduplicated + 3, parser.getDeduplicatedCount());
+        assertTrue(parser.getDedupeRatio() > 0);
+
+        ParsedComponent[][] plain = parser.parseAddresses(addresses, new ParserOptions.Builder().build());
+        for (int i = 0; i < addresses.size(); i++) {
+            assertEquals(plain[i].length, normalized[i].length);
+            for (int j = 0; j < plain[i].length; j++) {
+                assertEquals(plain[i][j].getLabel(), normalized[i][j].getLabel());
+                assertEquals(plain[i][j].getValue(), normalized[i][j].getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testParseAndExpand() {
+        AddressParser parser = AddressParser.getInstance();
+        AddressExpander.getInstance();
+        ExpanderOptions expanderOptions = new ExpanderOptions.Builder().build();
+
+        ExpandedComponent[] components = parser.parseAndExpand("30 W 26th St New York NY",
+                new ParserOptions.Builder().build(), expanderOptions);
+        ParsedComponent[] parsed = parser.parseAddress("30 W 26th St New York NY");
+        assertEquals(parsed.length, components.length);
+        for (int i = 0; i < parsed.length; i++) {
+            assertEquals(parsed[i].getLabel(), components[i].getLabel());
+            assertEquals(parsed[i].getValue(), components[i].getValue());
+        }
+
+        ExpandedComponent road = components[1];
+        assertEquals("road", road.getLabel());
+        assertTrue(Arrays.asList(road.getExpansions()).contains("west 26th street"));
+
+        ExpandedComponent[] postcodeOnly = parser.parseAndExpand("781 Franklin Ave Brooklyn NY 11238",
+                new ParserOptions.Builder().labels("postcode").build(), expanderOptions);
+        assertEquals(1, postcodeOnly.length);
+        assertEquals("11238", postcodeOnly[0].getExpansions()[0]);
+    }
 }
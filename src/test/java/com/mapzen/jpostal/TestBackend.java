@@ -0,0 +1,87 @@
+package com.mapzen.jpostal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class TestBackend {
+    private static final String[] ADDRESSES = {
+            "Barboncino 781 Franklin Ave, Crown Heights, Brooklyn, NY 11238",
+            "Quatre-vingt-douze Ave des Champs-Élysées",
+            "30 W 26th St, New York, NY 10010"
+    };
+
+    @Test
+    public void testDefaultBackend() {
+        if (System.getProperty("jpostal.backend") == null) {
+            assertEquals(Backend.JNI, Config.builder().build().getBackend());
+        }
+        assertEquals(Backend.FFM, Config.builder().backend(Backend.FFM).build().getBackend());
+    }
+
+    @Test
+    public void testNullBackend() {
+        try {
+            Config.builder().backend(null);
+            fail("Should throw NullPointerException");
+        } catch (NullPointerException e) {}
+    }
+
+    @Test
+    public void testJniCalls() {
+        assertSame(JniNativeCalls.INSTANCE, NativeCalls.forBackend(Backend.JNI));
+    }
+
+    @Test
+    public void testForeignCallsRequireJava22() {
+        assumeTrue(Runtime.version().feature() < 22);
+        try {
+            NativeCalls.forBackend(Backend.FFM);
+            fail("Should throw UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {}
+    }
+
+    @Test
+    public void testForeignParseMatchesJni() {
+        assumeTrue(Runtime.version().feature() >= 22);
+        AddressParser.getInstance();
+        ParserOptions options = new ParserOptions.Builder().build();
+        NativeCalls foreign = NativeCalls.forBackend(Backend.FFM);
+
+        for (String address : ADDRESSES) {
+            byte[] bytes = address.getBytes(StandardCharsets.UTF_8);
+            ParsedComponent[] expected = JniNativeCalls.INSTANCE.parse(bytes, options);
+            ParsedComponent[] actual = foreign.parse(bytes, options);
+
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getLabel(), actual[i].getLabel());
+                assertEquals(expected[i].getValue(), actual[i].getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testForeignExpandMatchesJni() {
+        assumeTrue(Runtime.version().feature() >= 22);
+        AddressExpander.getInstance();
+        ExpanderOptions options = new ExpanderOptions.Builder().build();
+        NativeCalls foreign = NativeCalls.forBackend(Backend.FFM);
+
+        byte[][] batch = new byte[ADDRESSES.length][];
+        for (int i = 0; i < ADDRESSES.length; i++) {
+            batch[i] = ADDRESSES[i].getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(JniNativeCalls.INSTANCE.expand(batch[i], options), foreign.expand(batch[i], options));
+        }
+        String[][] expected = JniNativeCalls.INSTANCE.expandBatch(batch, options);
+        String[][] actual = foreign.expandBatch(batch, options);
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual[i]);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.mapzen.jpostal;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class TestBatchDedupe {
+    private static byte[][] utf8(final String... addresses) {
+        final byte[][] bytes = new byte[addresses.length][];
+        for (int i = 0; i < addresses.length; i++) {
+            bytes[i] = addresses[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    private static String[] strings(final byte[][] bytes) {
+        final String[] strings = new String[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            strings[i] = new String(bytes[i], StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    @Test
+    public void testNone() {
+        byte[][] addresses = utf8("a", "a", "b");
+        BatchDedupe dedupe = BatchDedupe.of(addresses, DedupeMode.NONE);
+        assertSame(addresses, dedupe.distinct());
+        assertEquals(0, dedupe.duplicates());
+        String[] results = {"A", "A", "B"};
+        assertSame(results, dedupe.fanOut(results, new String[3]));
+    }
+
+    @Test
+    public void testExact() {
+        byte[][] addresses = utf8("781 Franklin Ave", "30 W 26th St", "781 Franklin Ave", "781 franklin ave",
+                "30 W 26th St");
+        BatchDedupe dedupe = BatchDedupe.of(addresses, DedupeMode.EXACT);
+        assertArrayEquals(new String[]{"781 Franklin Ave", "30 W 26th St", "781 franklin ave"},
+                strings(dedupe.distinct()));
+        assertEquals(2, dedupe.duplicates());
+
+        String[] fannedOut = dedupe.fanOut(new String[]{"x", "y", "z"}, new String[5]);
+        assertArrayEquals(new String[]{"x", "y", "x", "z", "y"}, fannedOut);
+    }
+
+    @Test
+    public void testNormalized() {
+        byte[][] addresses = utf8("781 Franklin Ave", " 781 FRANKLIN AVE\t", "Straße 1", "STRASSE 1", "straße 1 ");
+        BatchDedupe dedupe = BatchDedupe.of(addresses, DedupeMode.NORMALIZED);
+        // The first address of each group is the one processed, as it was given.
+        assertArrayEquals(new String[]{"781 Franklin Ave", "Straße 1", "STRASSE 1"}, strings(dedupe.distinct()));
+        assertEquals(2, dedupe.duplicates());
+        assertArrayEquals(new Integer[]{0, 0, 1, 2, 1}, dedupe.fanOut(new Integer[]{0, 1, 2}, new Integer[5]));
+    }
+
+    @Test
+    public void testAllDistinct() {
+        byte[][] addresses = utf8("a", "b", "c", "");
+        BatchDedupe dedupe = BatchDedupe.of(addresses, DedupeMode.EXACT);
+        assertSame(addresses, dedupe.distinct());
+        assertEquals(0, dedupe.duplicates());
+    }
+
+    @Test
+    public void testManyDuplicates() {
+        String[] input = new String[10000];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = "address " + (i % 37);
+        }
+        BatchDedupe dedupe = BatchDedupe.of(utf8(input), DedupeMode.EXACT);
+        assertEquals(37, dedupe.distinct().length);
+        assertEquals(10000 - 37, dedupe.duplicates());
+
+        String[] fannedOut = dedupe.fanOut(strings(dedupe.distinct()), new String[input.length]);
+        assertArrayEquals(input, fannedOut);
+    }
+
+    @Test
+    public void testCounters() {
+        InputLimits.Counters counters = new InputLimits.Counters();
+        assertEquals(0.0, counters.dedupeRatio(), 0.0);
+        counters.dedupe(utf8("a", "a", "a", "b"), DedupeMode.EXACT);
+        counters.dedupe(utf8("a", "a"), DedupeMode.NONE);
+        assertEquals(2, counters.deduplicated.sum());
+        assertEquals(0.5, counters.dedupeRatio(), 0.0);
+    }
+}
@@ -0,0 +1,51 @@
+package com.mapzen.jpostal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+public class TestBatchIterator {
+    @Test
+    public void testPullsOneBatchAtATime() {
+        List<String> pulled = new ArrayList<>();
+        Iterator<String> input = Arrays.asList("a", "b", "c", "d", "e").iterator();
+        Iterator<String> tracked = new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return input.hasNext();
+            }
+
+            @Override
+            public String next() {
+                String next = input.next();
+                pulled.add(next);
+                return next;
+            }
+        };
+        List<List<String>> calls = new ArrayList<>();
+
+        Iterator<String> results = new BatchIterator<>(tracked, 2, batch -> {
+            calls.add(new ArrayList<>(batch));
+            return batch.stream().map(String::toUpperCase).toArray(String[]::new);
+        });
+
+        assertTrue(pulled.isEmpty());
+        assertEquals("A", results.next());
+        assertEquals(Arrays.asList("a", "b"), pulled);
+        assertEquals("B", results.next());
+        assertEquals(2, pulled.size());
+        assertEquals("C", results.next());
+        assertEquals("D", results.next());
+        assertEquals("E", results.next());
+        assertFalse(results.hasNext());
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "d"), Arrays.asList("e")), calls);
+        assertThrows(NoSuchElementException.class, results::next);
+    }
+}
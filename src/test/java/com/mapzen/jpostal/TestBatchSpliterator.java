@@ -0,0 +1,94 @@
+package com.mapzen.jpostal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class TestBatchSpliterator {
+    private static List<String> addresses(int count) {
+        return IntStream.range(0, count).mapToObj(i -> i + " Main St").collect(Collectors.toList());
+    }
+
+    private static String[] upperCase(List<String> batch) {
+        assertTrue(batch.size() <= 10);
+        return batch.stream().map(String::toUpperCase).toArray(String[]::new);
+    }
+
+    private static List<List<String>> drain(Spliterator<List<String>> spliterator) {
+        List<List<String>> batches = new ArrayList<>();
+        spliterator.forEachRemaining(batches::add);
+        return batches;
+    }
+
+    @Test
+    public void testSplitsOnBatches() {
+        List<String> input = addresses(95);
+        BatchSpliterator spliterator = new BatchSpliterator(input.spliterator(), 10);
+        assertEquals(10, spliterator.estimateSize());
+
+        Spliterator<List<String>> prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+
+        List<List<String>> batches = drain(prefix);
+        batches.addAll(drain(spliterator));
+
+        List<String> flattened = new ArrayList<>();
+        for (List<String> batch : batches) {
+            assertTrue(batch.size() <= 10);
+            flattened.addAll(batch);
+        }
+        assertEquals(input, flattened);
+    }
+
+    @Test
+    public void testSplitsUnsizedSource() {
+        List<String> input = addresses(25);
+        Iterator<String> iterator = input.iterator();
+        BatchSpliterator spliterator = new BatchSpliterator(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), 10);
+
+        // An iterator-backed source splits off arrays of its own size, so the first split holds every address.
+        List<String> flattened = new ArrayList<>();
+        Spliterator<List<String>> prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+        drain(prefix).forEach(flattened::addAll);
+        drain(spliterator).forEach(flattened::addAll);
+        assertEquals(input, flattened);
+    }
+
+    @Test
+    public void testDoesNotSplitSingleBatch() {
+        assertNull(new BatchSpliterator(addresses(10).spliterator(), 10).trySplit());
+    }
+
+    @Test
+    public void testParallelStreamKeepsOrder() {
+        List<String> input = addresses(1000);
+        List<String> expected = input.stream().map(String::toUpperCase).collect(Collectors.toList());
+
+        assertEquals(expected, Batches.map(input.parallelStream(), 10, TestBatchSpliterator::upperCase)
+                .collect(Collectors.toList()));
+        assertEquals(expected, Batches.map(input.stream(), 10, TestBatchSpliterator::upperCase)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testParallelListKeepsOrder() {
+        List<String> input = addresses(1003);
+        String[] results = Batches.parallel(input, 10, new ForkJoinPool(4), TestBatchSpliterator::upperCase,
+                String[]::new);
+
+        assertArrayEquals(input.stream().map(String::toUpperCase).toArray(String[]::new), results);
+        assertEquals(0, Batches.parallel(new ArrayList<>(), 10, ForkJoinPool.commonPool(),
+                TestBatchSpliterator::upperCase, String[]::new).length);
+    }
+}
@@ -0,0 +1,74 @@
+package com.mapzen.jpostal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Test;
+
+public class TestBlockingIndex {
+
+    @Test
+    public void testCandidates() {
+        AddressExpander expander = AddressExpander.getInstance();
+        BlockingIndex index = new BlockingIndex(expander, new ExpanderOptions.Builder().build());
+        index.addAll(new long[]{1, 2, 3}, Arrays.asList("30 West 26th Street", "123 Main St", "Franklin Ave Brooklyn"));
+        index.add(4, "30 W 26th St");
+
+        List<BlockingIndex.Candidate> candidates = index.candidates("30 W. 26th St.", 10);
+        assertTrue(candidates.size() >= 2);
+        assertEquals(new HashSet<>(Arrays.asList(1L, 4L)),
+                new HashSet<>(Arrays.asList(candidates.get(0).getRecordId(), candidates.get(1).getRecordId())));
+        for (int i = 2; i < candidates.size(); i++) {
+            assertTrue(candidates.get(i).getSharedKeys() < candidates.get(1).getSharedKeys());
+        }
+
+        assertTrue(index.candidates("Champs-Élysées Paris", 10).isEmpty());
+        assertEquals(4, index.size());
+        assertTrue(index.postingCount() >= index.keyCount());
+    }
+
+    @Test
+    public void testSameStreetOtherCityOrUnit() {
+        AddressExpander expander = AddressExpander.getInstance();
+        BlockingIndex index = new BlockingIndex(expander, new ExpanderOptions.Builder().build());
+        index.addAll(new long[]{1, 2, 3, 4}, Arrays.asList("30 West 26th Street, Boston",
+                "30 West 26th Street Apt 5, New York", "30 West 26th Street, New York", "Franklin Ave Brooklyn"));
+
+        // No expansion of the query equals one of the records', but they share the street's tokens.
+        List<BlockingIndex.Candidate> candidates = index.candidates("30 W 26th St, New York", 10);
+        assertEquals(3, candidates.size());
+        // Both New York records share the city as well; the unit only adds tokens the query lacks.
+        assertEquals(2, candidates.get(0).getRecordId());
+        assertEquals(3, candidates.get(1).getRecordId());
+        assertEquals(candidates.get(0).getSharedKeys(), candidates.get(1).getSharedKeys());
+        assertEquals(1, candidates.get(2).getRecordId());
+        assertTrue(candidates.get(2).getSharedKeys() < candidates.get(1).getSharedKeys());
+
+        assertEquals(1, index.candidates("30 W 26th St, New York", 1).size());
+    }
+
+    @Test
+    public void testCommonTokensSkipped() {
+        AddressExpander expander = AddressExpander.getInstance();
+        BlockingIndex index = new BlockingIndex(expander, new ExpanderOptions.Builder().build(), 2);
+        index.addAll(new long[]{1, 2, 3, 4}, Arrays.asList("1 Main Street Springfield", "2 Main Street Springfield",
+                "3 Main Street Springfield", "3 Oak Avenue Shelbyville"));
+
+        // Every token but the house number is in three records, over the cap, so only "3" retrieves and counts.
+        List<BlockingIndex.Candidate> candidates = index.candidates("3 Main Street Springfield", 10);
+        assertEquals(Arrays.asList(new BlockingIndex.Candidate(3, 1), new BlockingIndex.Candidate(4, 1)), candidates);
+
+        BlockingIndex uncapped = new BlockingIndex(expander, new ExpanderOptions.Builder().build(), Integer.MAX_VALUE);
+        uncapped.addAll(new long[]{1, 2, 3, 4}, Arrays.asList("1 Main Street Springfield", "2 Main Street Springfield",
+                "3 Main Street Springfield", "3 Oak Avenue Shelbyville"));
+        assertEquals(4, uncapped.candidates("3 Main Street Springfield", 10).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxTokenRecords() {
+        new BlockingIndex(AddressExpander.getInstance(), new ExpanderOptions.Builder().build(), 0);
+    }
+}
@@ -0,0 +1,61 @@
+package com.mapzen.jpostal;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestCheckpointResource {
+    @Test
+    public void testCheckLibraries() throws Exception {
+        Path library = Files.createTempFile("libpostal", ".so");
+        try {
+            CheckpointResource.checkLibraries(Collections.singletonList(library));
+        } finally {
+            Files.delete(library);
+        }
+
+        try {
+            CheckpointResource.checkLibraries(Collections.singletonList(library));
+            fail("Expected a missing library to be reported");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains(library.toString()));
+            assertTrue(e.getMessage().contains("jpostal.library.cache.dir"));
+        }
+    }
+
+    @Test
+    public void testCheckDataWithoutLibPostal() {
+        CheckpointResource.checkData(null);
+    }
+
+    @Test
+    public void testQuiesce() throws Exception {
+        AddressParser parser = AddressParser.getInstance();
+        CheckpointResource resource = CheckpointResource.register();
+        assertSame(resource, CheckpointResource.register());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            resource.beforeCheckpoint(null);
+            Future<ParsedComponent[]> parsed;
+            try {
+                parsed = executor.submit(() -> parser.parseAddress("781 Franklin Ave Brooklyn NY"));
+                Thread.sleep(200);
+                assertFalse("Parses wait until the restore", parsed.isDone());
+            } finally {
+                resource.afterRestore(null);
+            }
+            assertEquals("781", parsed.get(10, TimeUnit.SECONDS)[0].getValue());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.mapzen.jpostal;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class TestComponentCodec {
+    static final ParsedComponent[] ROW = {
+            new ParsedComponent("the book club", "house"),
+            new ParsedComponent("100-106", "house_number"),
+            new ParsedComponent("leonard st", "road"),
+            new ParsedComponent("london", "city"),
+            new ParsedComponent("ec2a 4rh", "postcode"),
+            new ParsedComponent("united kingdom", "country")
+    };
+
+    static void assertRowEquals(ParsedComponent[] expected, ParsedComponent[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getClass(), actual[i].getClass());
+            assertEquals(expected[i].getLabel(), actual[i].getLabel());
+            assertEquals(expected[i].getValue(), actual[i].getValue());
+            if (expected[i] instanceof ExpandedComponent) {
+                assertArrayEquals(((ExpandedComponent) expected[i]).getExpansions(),
+                        ((ExpandedComponent) actual[i]).getExpansions());
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        byte[] encoded = ComponentCodec.encode(ROW);
+        assertEquals(ComponentCodec.encodedSize(ROW), encoded.length);
+        // A count byte, and a header byte and a length byte per component.
+        assertEquals(1 + 2 * ROW.length + "the book club100-106leonard stlondonec2a 4rhunited kingdom".length(),
+                encoded.length);
+
+        ParsedComponent[] decoded = ComponentCodec.decode(encoded);
+        assertRowEquals(ROW, decoded);
+        assertSame("road", decoded[2].getLabel());
+    }
+
+    @Test
+    public void testUnusualComponents() {
+        ParsedComponent[] row = {
+                new ParsedComponent("東京都中央区", "city"),
+                new ParsedComponent("🏠 \ud800", "custom_label"),
+                new ParsedComponent((String) null, null),
+                new ParsedComponent("", "road"),
+                new ExpandedComponent("30 w 26th st", "road", new String[]{"30 west 26th street", "30 w 26th st"}),
+                new ExpandedComponent("ny", "state", new String[0]),
+                new ExpandedComponent("10001", "postcode", null)
+        };
+        byte[] encoded = ComponentCodec.encode(row);
+        assertEquals(ComponentCodec.encodedSize(row), encoded.length);
+        ParsedComponent[] decoded = ComponentCodec.decode(encoded);
+        assertEquals("🏠 ?", decoded[1].getValue());
+        decoded[1].setValue(row[1].getValue());
+        assertRowEquals(row, decoded);
+
+        assertEquals(0, ComponentCodec.decode(ComponentCodec.encode(new ParsedComponent[0])).length);
+    }
+
+    @Test
+    public void testLongValue() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            value.append('x');
+        }
+        ParsedComponent[] row = {new ParsedComponent(value.toString(), "house")};
+        byte[] encoded = ComponentCodec.encode(row);
+        assertEquals(1 + 1 + ComponentCodec.varintSize(10001) + 10000, encoded.length);
+        assertRowEquals(row, ComponentCodec.decode(encoded));
+    }
+
+    @Test
+    public void testByteBuffers() {
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(1024), ByteBuffer.allocateDirect(1024)}) {
+            buffer.position(3);
+            ComponentCodec.encode(ROW, buffer);
+            ComponentCodec.encode(new ParsedComponent[]{ROW[0]}, buffer);
+            int end = buffer.position();
+            buffer.flip().position(3);
+
+            assertRowEquals(ROW, ComponentCodec.decode(buffer));
+            assertRowEquals(new ParsedComponent[]{ROW[0]}, ComponentCodec.decode(buffer));
+            assertEquals(end, buffer.position());
+        }
+
+        // A heap buffer slice with an array offset.
+        byte[] encoded = ComponentCodec.encode(ROW);
+        byte[] padded = new byte[encoded.length + 10];
+        System.arraycopy(encoded, 0, padded, 10, encoded.length);
+        ByteBuffer slice = ByteBuffer.wrap(padded, 10, encoded.length).slice();
+        assertRowEquals(ROW, ComponentCodec.decode(slice));
+    }
+
+    @Test
+    public void testOverflow() {
+        ByteBuffer buffer = ByteBuffer.allocate(ComponentCodec.encodedSize(ROW) - 1);
+        try {
+            ComponentCodec.encode(ROW, buffer);
+            fail("Expected BufferOverflowException");
+        } catch (BufferOverflowException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCorruptInput() {
+        for (byte[] corrupt : new byte[][]{{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F}, {100}, {1, 0x70, 1},
+                {1, 0, 100, 'a'}}) {
+            try {
+                ComponentCodec.decode(corrupt);
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testExternalizable() throws Exception {
+        ParsedComponent[] row = {ROW[0], ROW[2], new ParsedComponent("x", "custom_label"),
+                new ExpandedComponent("30 w 26th st", "road", new String[]{"30 west 26th street", null}),
+                new ExpandedComponent("ny", "state", null)};
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(row);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertRowEquals(row, (ParsedComponent[]) in.readObject());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.mapzen.jpostal;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TestComponentInterner {
+    private static byte[] utf8(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testIntern() {
+        ComponentInterner interner = new ComponentInterner(1000);
+        assertEquals(1024, interner.getCapacity());
+
+        String first = interner.intern(utf8("new york"));
+        String second = interner.intern(utf8("new york"));
+        assertEquals("new york", first);
+        assertSame(first, second);
+        assertEquals(1, interner.getHits());
+        assertEquals(1, interner.getMisses());
+
+        assertEquals("são paulo", interner.intern(utf8("são paulo")));
+        assertNotSame(first, interner.intern(utf8("new yorK")));
+    }
+
+    @Test
+    public void testCallerBufferReused() {
+        // A single slot, so every value lands in the same one.
+        ComponentInterner interner = new ComponentInterner(1);
+        ComponentInterner.setActive(interner);
+        try {
+            byte[] buffer = utf8("london");
+            assertEquals("london", new ParsedComponent(buffer, "city").getValue());
+            System.arraycopy(utf8("berlin"), 0, buffer, 0, buffer.length);
+
+            assertEquals("berlin", new ParsedComponent(utf8("berlin"), "city").getValue());
+            assertEquals("berlin", interner.intern(buffer));
+            assertEquals(1, interner.getHits());
+        } finally {
+            ComponentInterner.setActive(null);
+        }
+    }
+
+    @Test
+    public void testLongValuesAreNotCached() {
+        ComponentInterner interner = new ComponentInterner(16);
+        char[] chars = new char[ComponentInterner.MAX_VALUE_BYTES + 1];
+        Arrays.fill(chars, 'a');
+        String value = new String(chars);
+
+        assertEquals(value, interner.intern(utf8(value)));
+        assertNotSame(interner.intern(utf8(value)), interner.intern(utf8(value)));
+        assertEquals(0, interner.getHits());
+        assertEquals(0, interner.getMisses());
+    }
+
+    @Test
+    public void testBounded() {
+        ComponentInterner interner = new ComponentInterner(4);
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(String.valueOf(i), interner.intern(utf8(String.valueOf(i))));
+        }
+        assertEquals(4, interner.getCapacity());
+        assertEquals(10000, interner.getMisses());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new ComponentInterner(0);
+    }
+
+    @Test
+    public void testLabel() {
+        String label = new String(utf8("city"), StandardCharsets.UTF_8);
+        assertNotSame("city", label);
+        assertSame("city", ComponentInterner.label(label));
+        assertEquals("custom", ComponentInterner.label("custom"));
+        assertNull(ComponentInterner.label(null));
+    }
+
+    @Test
+    public void testParsedComponent() {
+        ComponentInterner.setActive(null);
+        assertNotSame(new ParsedComponent(utf8("ca"), "state").getValue(),
+                new ParsedComponent(utf8("ca"), "state").getValue());
+
+        ComponentInterner interner = new ComponentInterner(64);
+        ComponentInterner.setActive(interner);
+        try {
+            ParsedComponent first = new ParsedComponent(utf8("ca"), new String(utf8("state"), StandardCharsets.UTF_8));
+            ParsedComponent second = new ParsedComponent(utf8("ca"), new String(utf8("state"), StandardCharsets.UTF_8));
+            assertSame(first.getValue(), second.getValue());
+            assertSame(first.getLabel(), second.getLabel());
+            assertSame(interner, ComponentInterner.getActive());
+        } finally {
+            ComponentInterner.setActive(null);
+        }
+    }
+
+    @Test
+    public void testConfig() {
+        assertEquals(0, Config.builder().build().getInternCapacity());
+        assertEquals(100000, Config.builder().internCapacity(100000).build().getInternCapacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConfigNegativeCapacity() {
+        Config.builder().internCapacity(-1);
+    }
+}
@@ -2,7 +2,18 @@ package com.mapzen.jpostal;
 
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.stream.Stream;
+
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 public class TestConfig {
     @Test
@@ -55,4 +66,89 @@ public class TestConfig {
         assertEquals("hello", allConfig.getDataDir());
         assertEquals("libworld.so", allConfig.getLibraryFile());
     }
+
+    @Test
+    public void testBuilderModules() {
+        Config defaultConfig = Config.builder().build();
+        assertTrue(defaultConfig.getParserEnabled());
+        assertTrue(defaultConfig.getExpanderEnabled());
+        assertEquals(EnumSet.allOf(LibPostal.Module.class), defaultConfig.getModules());
+
+        Config parserOnly = Config.builder().expanderEnabled(false).build();
+        assertTrue(parserOnly.getParserEnabled());
+        assertFalse(parserOnly.getExpanderEnabled());
+        assertEquals(EnumSet.of(LibPostal.Module.BASE, LibPostal.Module.PARSER), parserOnly.getModules());
+
+        Config expanderOnly = Config.builder().parserEnabled(false).build();
+        assertEquals(EnumSet.of(LibPostal.Module.BASE, LibPostal.Module.LANGUAGE_CLASSIFIER), expanderOnly.getModules());
+    }
+
+    @Test
+    public void testExtractToCache() throws Exception {
+        Path cacheDir = Files.createTempDirectory("jpostal-cache").resolve("libs");
+        byte[] library = "not really a shared library".getBytes(StandardCharsets.UTF_8);
+
+        Path extracted = Config.extractToCache(library, "libpostal.so", cacheDir);
+        assertEquals("libpostal.so", extracted.getFileName().toString());
+        assertArrayEquals(library, Files.readAllBytes(extracted));
+
+        FileTime written = Files.getLastModifiedTime(extracted);
+        assertEquals(extracted, Config.extractToCache(library, "libpostal.so", cacheDir));
+        assertEquals(written, Files.getLastModifiedTime(extracted));
+
+        byte[] otherLibrary = "another build".getBytes(StandardCharsets.UTF_8);
+        Path otherExtracted = Config.extractToCache(otherLibrary, "libpostal.so", cacheDir);
+        assertNotEquals(extracted, otherExtracted);
+        assertArrayEquals(otherLibrary, Files.readAllBytes(otherExtracted));
+
+        try (Stream<Path> files = Files.list(extracted.getParent())) {
+            assertEquals(1, files.count()); // no temporary files left behind
+        }
+    }
+
+    @Test
+    public void testExtractToCacheRejectsPlantedFile() throws Exception {
+        Path cacheDir = Files.createTempDirectory("jpostal-cache").resolve("libs");
+        byte[] library = "not really a shared library".getBytes(StandardCharsets.UTF_8);
+        Path extracted = Config.extractToCache(library, "libpostal.so", cacheDir);
+
+        // Same name and size, so only the content tells it apart.
+        byte[] planted = "a shared library of others!".getBytes(StandardCharsets.UTF_8);
+        assertEquals(library.length, planted.length);
+        Files.write(extracted, planted);
+
+        assertEquals(extracted, Config.extractToCache(library, "libpostal.so", cacheDir));
+        assertArrayEquals(library, Files.readAllBytes(extracted));
+    }
+
+    @Test
+    public void testExtractToCacheRejectsSharedDirectory() throws Exception {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        byte[] library = "not really a shared library".getBytes(StandardCharsets.UTF_8);
+
+        Path parent = Files.createTempDirectory("jpostal-cache");
+        Path cacheDir = Files.createDirectory(parent.resolve("libs"));
+        Files.setPosixFilePermissions(cacheDir, PosixFilePermissions.fromString("rwxrwxrwx"));
+        assertExtractFails(library, cacheDir);
+
+        // A writable directory between the cache and java.io.tmpdir is just as unsafe.
+        Files.setPosixFilePermissions(cacheDir, PosixFilePermissions.fromString("rwx------"));
+        Files.setPosixFilePermissions(parent, PosixFilePermissions.fromString("rwxrwx---"));
+        assertExtractFails(library, cacheDir);
+
+        Files.setPosixFilePermissions(parent, PosixFilePermissions.fromString("rwx------"));
+        assertArrayEquals(library, Files.readAllBytes(Config.extractToCache(library, "libpostal.so", cacheDir)));
+
+        Path link = Files.createSymbolicLink(parent.resolve("link"), cacheDir);
+        assertExtractFails(library, link);
+    }
+
+    private static void assertExtractFails(byte[] library, Path cacheDir) {
+        try {
+            Config.extractToCache(library, "libpostal.so", cacheDir);
+            fail("Expected IOException for " + cacheDir);
+        } catch (IOException expected) {
+            // expected
+        }
+    }
 }
@@ -0,0 +1,52 @@
+package com.mapzen.jpostal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+public class TestCorpusGenerator {
+
+    @Test
+    public void testSameSeedSameCorpus() {
+        assertEquals(new CorpusGenerator(7, 0.05).generate(1000), new CorpusGenerator(7, 0.05).generate(1000));
+        assertNotEquals(new CorpusGenerator(7, 0.05).generate(1000), new CorpusGenerator(8, 0.05).generate(1000));
+    }
+
+    @Test
+    public void testCoversScripts() {
+        Set<Character.UnicodeScript> scripts = EnumSet.noneOf(Character.UnicodeScript.class);
+        for (String address : new CorpusGenerator(1, 0).generate(2000)) {
+            assertFalse(address.trim().isEmpty());
+            address.codePoints().forEach(c -> scripts.add(Character.UnicodeScript.of(c)));
+        }
+        for (Character.UnicodeScript script : new Character.UnicodeScript[]{
+                Character.UnicodeScript.LATIN, Character.UnicodeScript.CYRILLIC, Character.UnicodeScript.GREEK,
+                Character.UnicodeScript.HAN, Character.UnicodeScript.HANGUL, Character.UnicodeScript.ARABIC,
+                Character.UnicodeScript.DEVANAGARI}) {
+            assertTrue(script.toString(), scripts.contains(script));
+        }
+    }
+
+    @Test
+    public void testAdversarialInputs() {
+        CorpusGenerator generator = new CorpusGenerator(3, 1.0);
+        assertTrue(generator.adversarial(CorpusGenerator.Adversarial.LONG_BLOB).length() >= 8 * 1024);
+        assertTrue(generator.adversarial(CorpusGenerator.Adversarial.TINY).length() <= 2);
+        assertTrue(generator.adversarial(CorpusGenerator.Adversarial.DIGITS).matches("[0-9 -]+"));
+
+        List<String> corpus = generator.generate(CorpusGenerator.Adversarial.values().length);
+        assertTrue(corpus.get(0).length() >= 8 * 1024);
+        assertTrue(corpus.get(corpus.size() - 1).length() <= 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidShare() {
+        new CorpusGenerator(1, 1.5);
+    }
+}
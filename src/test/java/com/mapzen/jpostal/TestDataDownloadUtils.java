@@ -0,0 +1,172 @@
+package com.mapzen.jpostal;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class TestDataDownloadUtils {
+    private static final Set<LibPostal.Module> MODULES = EnumSet.of(LibPostal.Module.PARSER, LibPostal.Module.LANGUAGE_CLASSIFIER);
+
+    private final Map<String, byte[]> archives = new HashMap<>();
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    private volatile int truncateFirstResponseAt = -1;
+
+    private HttpServer server;
+    private String baseUrl;
+    private Path dataDir;
+
+    @Before
+    public void setUp() throws IOException {
+        archives.put("parser.tar.gz", tarGz("address_parser/address_parser_crf.dat", "parser model"));
+        archives.put("language_classifier.tar.gz", tarGz("language_classifier/language_classifier.dat", "classifier model"));
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/data/", this::serve);
+        server.start();
+        baseUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/data/";
+        dataDir = Files.createTempDirectory("jpostal-data");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String name = exchange.getRequestURI().getPath().substring("/data/".length());
+        byte[] body = archives.get(name);
+        if (body == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        int start = 0;
+        if (range != null) {
+            rangeRequests.incrementAndGet();
+            start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (body.length - 1) + "/" + body.length);
+            exchange.sendResponseHeaders(206, body.length - start);
+        } else {
+            exchange.sendResponseHeaders(200, body.length);
+        }
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            int end = body.length;
+            if (range == null && truncateFirstResponseAt >= 0) {
+                end = truncateFirstResponseAt;
+                truncateFirstResponseAt = -1;
+            }
+            out.write(body, start, end - start);
+        } catch (IOException e) {
+            // Closing a truncated fixed-length response fails, which drops the connection as intended.
+        }
+    }
+
+    private static byte[] tarGz(String path, String content) throws IOException {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GZIPOutputStream(bytes))) {
+            TarArchiveEntry entry = new TarArchiveEntry(path);
+            entry.setSize(data.length);
+            tar.putArchiveEntry(entry);
+            tar.write(data);
+            tar.closeArchiveEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testPopulateDataDir() throws Exception {
+        assertFalse(DataDownloadUtils.isDataDirPopulated(dataDir.toString(), MODULES));
+
+        DataDownloadUtils.populateDataDir(dataDir, baseUrl, MODULES, Collections.emptyMap());
+
+        assertTrue(DataDownloadUtils.isDataDirPopulated(dataDir.toString(), MODULES));
+        assertEquals("parser model", new String(Files.readAllBytes(dataDir.resolve("address_parser/address_parser_crf.dat")), StandardCharsets.UTF_8));
+        assertEquals("classifier model", new String(Files.readAllBytes(dataDir.resolve("language_classifier/language_classifier.dat")), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(dataDir.resolve("parser.tar.gz")));
+        try (java.util.stream.Stream<Path> entries = Files.list(dataDir)) {
+            assertEquals(2, entries.count()); // no staging directories left behind
+        }
+    }
+
+    @Test
+    public void testPopulateDataDirVerifiesChecksums() throws Exception {
+        Map<String, String> checksums = new HashMap<>();
+        checksums.put("parser.tar.gz", sha256(archives.get("parser.tar.gz")));
+        checksums.put("language_classifier.tar.gz", sha256(archives.get("language_classifier.tar.gz")));
+
+        DataDownloadUtils.populateDataDir(dataDir, baseUrl, MODULES, checksums);
+
+        assertTrue(DataDownloadUtils.isDataDirPopulated(dataDir.toString(), MODULES));
+    }
+
+    @Test
+    public void testChecksumMismatchLeavesDataDirUntouched() throws Exception {
+        Map<String, String> checksums = new HashMap<>();
+        checksums.put("parser.tar.gz", sha256("something else".getBytes(StandardCharsets.UTF_8)));
+
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> {
+            DataDownloadUtils.populateDataDir(dataDir, baseUrl, MODULES, checksums);
+        });
+
+        assertTrue(thrown.getMessage().contains("SHA-256 mismatch for parser.tar.gz"));
+        assertFalse(Files.exists(dataDir.resolve("address_parser")));
+        assertFalse(Files.exists(dataDir.resolve("language_classifier")));
+    }
+
+    @Test
+    public void testResumeAfterDroppedConnection() throws Exception {
+        truncateFirstResponseAt = archives.get("parser.tar.gz").length / 2;
+
+        DataDownloadUtils.populateDataDir(dataDir, baseUrl, EnumSet.of(LibPostal.Module.PARSER),
+                Collections.singletonMap("parser.tar.gz", sha256(archives.get("parser.tar.gz"))));
+
+        assertEquals(1, rangeRequests.get());
+        assertTrue(DataDownloadUtils.isDataDirPopulated(dataDir.toString(), EnumSet.of(LibPostal.Module.PARSER)));
+    }
+
+    @Test
+    public void testReplaceExistingData() throws Exception {
+        Files.createDirectories(dataDir.resolve("address_parser"));
+        Files.write(dataDir.resolve("address_parser/stale.dat"), new byte[]{1});
+
+        DataDownloadUtils.populateDataDir(dataDir, baseUrl, EnumSet.of(LibPostal.Module.PARSER), Collections.emptyMap());
+
+        assertFalse(Files.exists(dataDir.resolve("address_parser/stale.dat")));
+        assertTrue(Files.exists(dataDir.resolve("address_parser/address_parser_crf.dat")));
+    }
+}
@@ -0,0 +1,70 @@
+package com.mapzen.jpostal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestHashPostings {
+
+    @Test
+    public void testRanking() {
+        HashPostings postings = new HashPostings();
+        postings.add(100, new long[]{1, 2, 3});
+        postings.add(200, new long[]{2, 3, 3, 4});
+        postings.add(300, new long[]{5});
+        postings.add(400, new long[]{3});
+
+        int[][] ranked = postings.candidates(new long[]{2, 3, 4}, 10, Integer.MAX_VALUE);
+        assertArrayEquals(new int[]{1, 0, 3}, ranked[0]);
+        assertArrayEquals(new int[]{3, 2, 1}, ranked[1]);
+        assertEquals(200, postings.recordId(ranked[0][0]));
+
+        assertArrayEquals(new int[]{1, 0}, postings.candidates(new long[]{2, 3, 4}, 2, Integer.MAX_VALUE)[0]);
+        assertEquals(0, postings.candidates(new long[]{42}, 10, Integer.MAX_VALUE)[0].length);
+        assertEquals(5, postings.keyCount());
+        assertEquals(8, postings.postingCount());
+    }
+
+    @Test
+    public void testGrowth() {
+        HashPostings postings = new HashPostings();
+        for (int i = 0; i < 10000; i++) {
+            postings.add(i, new long[]{XxHash64.hash("key" + i), XxHash64.hash("bucket" + i % 10), 0L});
+        }
+        assertEquals(10000, postings.recordCount());
+        assertEquals(10000 + 10 + 1, postings.keyCount());
+
+        int[][] ranked = postings.candidates(new long[]{XxHash64.hash("key1234"), XxHash64.hash("bucket4")}, 5,
+                Integer.MAX_VALUE);
+        assertEquals(1234, postings.recordId(ranked[0][0]));
+        assertEquals(2, ranked[1][0]);
+        assertEquals(5, ranked[0].length);
+        assertEquals(10000, postings.candidates(new long[]{0L}, Integer.MAX_VALUE, Integer.MAX_VALUE)[0].length);
+    }
+
+    @Test
+    public void testCommonKeysSkipped() {
+        HashPostings postings = new HashPostings();
+        long common = XxHash64.hash("street");
+        for (int i = 0; i < 100000; i++) {
+            postings.add(i, new long[]{common, XxHash64.hash("number" + i)});
+        }
+        long rare = XxHash64.hash("leonard");
+        postings.add(100000, new long[]{common, rare});
+        postings.add(100001, new long[]{rare, XxHash64.hash("london")});
+        postings.add(100002, new long[]{common, rare, XxHash64.hash("number7")});
+
+        long[] query = {common, rare, XxHash64.hash("number7")};
+        // The common key is skipped: only the 3 + 2 postings of the others are walked.
+        assertEquals(5, postings.scannedPostings(query, 1000));
+
+        int[][] ranked = postings.candidates(query, 10, 1000);
+        assertArrayEquals(new int[]{100002, 7, 100000, 100001}, ranked[0]);
+        assertArrayEquals(new int[]{2, 1, 1, 1}, ranked[1]);
+
+        // Without a cap the common key retrieves every record.
+        assertEquals(100002 + 5, postings.scannedPostings(query, Integer.MAX_VALUE));
+        assertEquals(100003, postings.candidates(query, Integer.MAX_VALUE, Integer.MAX_VALUE)[0].length);
+    }
+}
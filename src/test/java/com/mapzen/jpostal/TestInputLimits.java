@@ -0,0 +1,141 @@
+package com.mapzen.jpostal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class TestInputLimits {
+
+    private static InputLimits limits(int maxBytes, int maxTokens, InputLimitPolicy policy) {
+        return new InputLimits(maxBytes, maxTokens, policy, null);
+    }
+
+    private static String apply(InputLimits limits, String address, InputLimits.Counters counters) {
+        byte[] bytes = limits.apply(address, counters);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testUnlimited() {
+        InputLimits.Counters counters = new InputLimits.Counters();
+        assertEquals("781 Franklin Ave", apply(InputLimits.NONE, "781 Franklin Ave", counters));
+        assertEquals(0, counters.rejected.sum());
+        assertEquals(0, counters.truncated.sum());
+    }
+
+    @Test
+    public void testRejectTooManyBytes() {
+        InputLimits.Counters counters = new InputLimits.Counters();
+        InputLimits limits = limits(10, InputLimits.UNLIMITED, InputLimitPolicy.REJECT);
+        assertEquals("123 Main", apply(limits, "123 Main", counters));
+        assertNull(apply(limits, "781 Franklin Ave", counters));
+        assertEquals(1, counters.rejected.sum());
+    }
+
+    @Test
+    public void testTruncateBytesAtCharacterBoundary() {
+        InputLimits.Counters counters = new InputLimits.Counters();
+        InputLimits limits = limits(5, InputLimits.UNLIMITED, InputLimitPolicy.TRUNCATE);
+        // "é" is two bytes, so cutting at five bytes would split the second one.
+        assertEquals("éé", apply(limits, "ééé", counters));
+        assertEquals(1, counters.truncated.sum());
+        assertEquals(0, counters.rejected.sum());
+    }
+
+    @Test
+    public void testTokens() {
+        InputLimits.Counters counters = new InputLimits.Counters();
+        InputLimits truncate = limits(InputLimits.UNLIMITED, 3, InputLimitPolicy.TRUNCATE);
+        assertEquals("781 Franklin Ave", apply(truncate, "781 Franklin Ave, Brooklyn, NY", counters));
+        assertEquals("781 Franklin Ave ", apply(truncate, "781 Franklin Ave ", counters));
+        assertEquals(1, counters.truncated.sum());
+
+        InputLimits reject = limits(InputLimits.UNLIMITED, 3, InputLimitPolicy.REJECT);
+        assertNull(apply(reject, "781 Franklin Ave, Brooklyn", counters));
+        assertEquals(1, counters.rejected.sum());
+    }
+
+    @Test
+    public void testBatch() {
+        InputLimits.Counters counters = new InputLimits.Counters();
+        InputLimits limits = limits(8, InputLimits.UNLIMITED, InputLimitPolicy.REJECT);
+        byte[][] addressBytes = limits.apply(Arrays.asList("1 Main", "781 Franklin Ave", "2 Main"), counters);
+        assertNull(addressBytes[1]);
+
+        byte[][] accepted = InputLimits.accepted(addressBytes);
+        assertEquals(2, accepted.length);
+
+        String[] results = {"a", "b"};
+        assertArrayEquals(new String[]{"a", "", "b"},
+                InputLimits.scatter(addressBytes, results, new String[addressBytes.length], ""));
+        assertSame(results, InputLimits.scatter(accepted, results, new String[2], ""));
+    }
+
+    @Test
+    public void testInvalidLimits() {
+        try {
+            InputLimits.checkLimit("maxTokens", 0);
+            fail("Should throw IllegalArgumentException");
+        } catch (IllegalArgumentException e) {}
+        try {
+            InputLimits.checkTimeBudget(Duration.ZERO);
+            fail("Should throw IllegalArgumentException");
+        } catch (IllegalArgumentException e) {}
+    }
+
+    @Test
+    public void testTimeBudget() throws Exception {
+        PriorityLock lock = new PriorityLock();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            lock.lock(Priority.INTERACTIVE);
+            try {
+                locked.countDown();
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        });
+        holder.start();
+        locked.await();
+
+        InputLimits.Counters counters = new InputLimits.Counters();
+        InputLimits limits = new InputLimits(InputLimits.UNLIMITED, InputLimits.UNLIMITED, InputLimitPolicy.REJECT,
+                Duration.ofMillis(20));
+        try {
+            limits.lock(lock, Priority.INTERACTIVE, 3, counters);
+            fail("Should throw RejectedExecutionException");
+        } catch (RejectedExecutionException e) {}
+        assertEquals(3, counters.rejected.sum());
+
+        // A deadline already used up by an earlier wait leaves no time for this lock.
+        long deadline = limits.deadline();
+        Thread.sleep(30);
+        long start = System.nanoTime();
+        try {
+            limits.lock(lock, Priority.INTERACTIVE, 1, counters, deadline);
+            fail("Should throw RejectedExecutionException");
+        } catch (RejectedExecutionException e) {}
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(4, counters.rejected.sum());
+
+        done.countDown();
+        holder.join();
+        limits.lock(lock, Priority.INTERACTIVE, 3, counters);
+        lock.unlock();
+    }
+}
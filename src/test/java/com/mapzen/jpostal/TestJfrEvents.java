@@ -0,0 +1,87 @@
+package com.mapzen.jpostal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+public class TestJfrEvents {
+
+    private static List<RecordedEvent> record(Runnable work, String... events) throws IOException {
+        Path file = Files.createTempFile("jpostal", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : events) {
+                recording.enable(event).withoutThreshold();
+            }
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> recorded = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (Arrays.asList(events).contains(event.getEventType().getName())) {
+                    recorded.add(event);
+                }
+            }
+            return recorded;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testNativeCallEventFields() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            ParseEvent parse = new ParseEvent();
+            parse.begin();
+            parse.lockAcquired(parse.mark());
+            parse.end();
+            parse.commit(new byte[][]{new byte[10], null, new byte[5]},
+                    new ParsedComponent[][]{new ParsedComponent[3], new ParsedComponent[0], new ParsedComponent[2]},
+                    Priority.BATCH, 42);
+
+            ExpandEvent expand = new ExpandEvent();
+            expand.begin();
+            expand.end();
+            expand.commit(new byte[7], new long[4], Priority.INTERACTIVE, 7);
+        }, "jpostal.Parse", "jpostal.Expand");
+
+        assertEquals(2, events.size());
+        RecordedEvent parse = events.get(0).getEventType().getName().equals("jpostal.Parse") ? events.get(0) : events.get(1);
+        RecordedEvent expand = parse == events.get(0) ? events.get(1) : events.get(0);
+        assertEquals(3, parse.getInt("rows"));
+        assertEquals(15, parse.getLong("inputBytes"));
+        assertEquals(5, parse.getLong("results"));
+        assertEquals("BATCH", parse.getString("priority"));
+        assertEquals(42, parse.getInt("optionsFingerprint"));
+        assertEquals(1, expand.getInt("rows"));
+        assertEquals(7, expand.getLong("inputBytes"));
+        assertEquals("INTERACTIVE", expand.getString("priority"));
+        assertEquals(4, expand.getLong("results"));
+    }
+
+    @Test
+    public void testParseAndExpandEvents() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            AddressParser.getInstance().parseAddress("781 Franklin Ave Crown Heights Brooklyn NY 11238");
+            AddressExpander.getInstance().expandAddress("30 W 26th St");
+        }, "jpostal.Parse", "jpostal.Expand");
+
+        assertEquals(2, events.size());
+        for (RecordedEvent event : events) {
+            assertEquals(1, event.getInt("rows"));
+            assertTrue(event.getLong("results") > 0);
+            assertTrue(event.getLong("nativeTime") > 0);
+            assertTrue(event.getDuration().toNanos() >= event.getLong("nativeTime"));
+        }
+    }
+}
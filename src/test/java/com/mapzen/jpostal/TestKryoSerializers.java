@@ -0,0 +1,55 @@
+package com.mapzen.jpostal;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.junit.Test;
+
+import static com.mapzen.jpostal.TestComponentCodec.ROW;
+import static com.mapzen.jpostal.TestComponentCodec.assertRowEquals;
+import static org.junit.Assert.*;
+
+public class TestKryoSerializers {
+    @Test
+    public void testRow() {
+        Kryo kryo = new Kryo();
+        // Otherwise Kryo writes a reference marker ahead of the row.
+        kryo.setReferences(false);
+        KryoSerializers.register(kryo);
+
+        Output output = new Output(1024, -1);
+        kryo.writeObject(output, ROW);
+        byte[] bytes = output.toBytes();
+        // Same wire form as the codec.
+        assertArrayEquals(ComponentCodec.encode(ROW), bytes);
+
+        assertRowEquals(ROW, kryo.readObject(new Input(bytes), ParsedComponent[].class));
+
+        ParsedComponent[] expanded = {new ExpandedComponent("30 w 26th st", "road", new String[]{"30 w 26th st"}),
+                new ExpandedComponent("ny", "state", null)};
+        output.clear();
+        kryo.writeObject(output, expanded);
+        assertArrayEquals(ComponentCodec.encode(expanded), output.toBytes());
+        assertRowEquals(expanded, kryo.readObject(new Input(output.toBytes()), ParsedComponent[].class));
+    }
+
+    @Test
+    public void testComponents() {
+        Kryo kryo = new Kryo();
+        KryoSerializers.register(kryo);
+        ParsedComponent[] row = {ROW[0], new ParsedComponent((String) null, "custom_label"),
+                new ExpandedComponent("30 w 26th st", "road", new String[]{"30 west 26th street"}),
+                new ExpandedComponent("ny", "state", null)};
+
+        Output output = new Output(1024, -1);
+        for (ParsedComponent component : row) {
+            kryo.writeClassAndObject(output, component);
+        }
+        Input input = new Input(output.toBytes());
+        ParsedComponent[] read = new ParsedComponent[row.length];
+        for (int i = 0; i < row.length; i++) {
+            read[i] = (ParsedComponent) kryo.readClassAndObject(input);
+        }
+        assertRowEquals(row, read);
+    }
+}
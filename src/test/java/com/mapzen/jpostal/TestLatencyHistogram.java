@@ -0,0 +1,36 @@
+package com.mapzen.jpostal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testBuckets() {
+        for (long value : new long[]{0, 1, 31, 32, 33, 1000, 123456789L, Long.MAX_VALUE / 2}) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(value + " >= lower bound", value >= LatencyHistogram.lowerBound(index));
+            assertTrue(value + " < next bound", value < LatencyHistogram.lowerBound(index + 1));
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(99));
+        for (long micros = 1; micros <= 10000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        assertEquals(10000, histogram.count());
+        assertEquals(10000000, histogram.max());
+        assertEquals(5000000, histogram.percentile(50), 5000000 * 0.035);
+        assertEquals(9900000, histogram.percentile(99), 9900000 * 0.035);
+        assertEquals(10000000, histogram.percentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+    }
+}
@@ -0,0 +1,48 @@
+package com.mapzen.jpostal;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestLibPostal {
+    @Test
+    public void testInitializeAsync() throws Exception {
+        InitializationReport report = LibPostal.initializeAsync(Config.builder().build()).get();
+
+        assertSame(AddressParser.getInstance(), report.getParser());
+        assertSame(AddressExpander.getInstance(), report.getExpander());
+        assertNotNull(report.getDownloadTime());
+        assertNotNull(report.getLibraryLoadTime());
+        assertNotNull(report.getTotalTime());
+
+        Map<LibPostal.Module, Duration> setupTimes = report.getModuleSetupTimes();
+        for (LibPostal.Module module : LibPostal.Module.values()) {
+            assertNotNull("No setup time for " + module, setupTimes.get(module));
+        }
+    }
+
+    @Test
+    public void testInitializeAsyncConfigMismatch() {
+        AddressParser.getInstance();
+
+        Exception thrown = assertThrows(Exception.class, () -> {
+            LibPostal.initializeAsync(Config.builder().dataDir("foo").build()).get();
+        });
+
+        assertTrue(thrown.getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testModuleResidentBytes() {
+        AddressParser.getInstance();
+        AddressExpander.getInstance();
+
+        Map<LibPostal.Module, Long> residentBytes = LibPostal.getModuleResidentBytes();
+        for (LibPostal.Module module : LibPostal.Module.values()) {
+            assertNotNull("No resident memory reported for " + module, residentBytes.get(module));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.mapzen.jpostal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class TestNativeExecutor {
+
+    @Test
+    public void testCallerThread() {
+        NativeExecutor executor = NativeExecutor.create(ExecutionMode.CALLER_THREAD);
+        assertSame(Thread.currentThread(), executor.call(Thread::currentThread));
+    }
+
+    @Test
+    public void testNativeThreads() {
+        NativeExecutor executor = NativeExecutor.create(ExecutionMode.NATIVE_THREADS);
+        try {
+            Thread thread = executor.call(Thread::currentThread);
+            assertNotSame(Thread.currentThread(), thread);
+            assertTrue(thread.getName().startsWith("jpostal-native-"));
+
+            try {
+                executor.call(() -> {
+                    throw new IllegalArgumentException("from native");
+                });
+                fail("Should throw IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                assertEquals("from native", e.getMessage());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testInterruptedCallerWaitsForCall() throws Exception {
+        NativeExecutor executor = NativeExecutor.create(ExecutionMode.NATIVE_THREADS);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean finished = new AtomicBoolean();
+        AtomicBoolean interruptedAfter = new AtomicBoolean();
+        Thread caller = new Thread(() -> {
+            executor.call(() -> {
+                started.countDown();
+                sleep(100);
+                finished.set(true);
+                return null;
+            });
+            interruptedAfter.set(Thread.currentThread().isInterrupted() && finished.get());
+        });
+        try {
+            caller.start();
+            started.await();
+            caller.interrupt();
+            caller.join();
+            assertTrue(interruptedAfter.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Runs {@link VirtualThreadLoad} in a JVM with a single carrier thread, once per mode. With the calls on the
+     * caller's virtual thread, each call holds the only carrier and the heartbeat can only tick between calls; with
+     * the calls on native threads, callers park and the heartbeat keeps ticking.
+     */
+    @Test
+    public void testVirtualThreadLoad() throws Exception {
+        ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+        assumeTrue(virtualThreads != null);
+        virtualThreads.shutdown();
+
+        double callerRate = runVirtualThreadLoad(ExecutionMode.CALLER_THREAD);
+        double nativeRate = runVirtualThreadLoad(ExecutionMode.NATIVE_THREADS);
+        // Sleeping 1 ms per tick, a free heartbeat ticks about once per millisecond; allow for timer slack.
+        assertTrue("heartbeat starved with native threads: " + nativeRate + " ticks/ms", nativeRate >= 0.25);
+        assertTrue("native threads did not free the carrier: " + nativeRate + " vs " + callerRate + " ticks/ms",
+                nativeRate >= 3 * callerRate);
+    }
+
+    // Returns the heartbeat ticks per millisecond of a forked run.
+    private static double runVirtualThreadLoad(final ExecutionMode mode) throws Exception {
+        Process process = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Djdk.virtualThreadScheduler.parallelism=1",
+                "-Djdk.virtualThreadScheduler.maxPoolSize=1",
+                "-cp", System.getProperty("java.class.path"),
+                VirtualThreadLoad.class.getName(), mode.name())
+                .redirectErrorStream(true)
+                .start();
+        String output;
+        try (InputStream in = process.getInputStream()) {
+            output = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+        }
+        assertTrue("forked JVM did not finish", process.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(output, 0, process.exitValue());
+        String[] ticksAndMillis = output.substring(output.lastIndexOf('\n') + 1).split(" ");
+        return Double.parseDouble(ticksAndMillis[0]) / Math.max(1, Long.parseLong(ticksAndMillis[1]));
+    }
+
+    /**
+     * Many virtual threads make CPU-bound "native" calls under a {@link PriorityLock}, as jpostal does, while a
+     * heartbeat virtual thread sleeps 1 ms per tick. A spinning virtual thread is never preempted, so it holds its
+     * carrier like a native call does. Prints the ticks and the elapsed milliseconds.
+     */
+    public static final class VirtualThreadLoad {
+        public static void main(final String[] args) throws Exception {
+            ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+            NativeExecutor executor = NativeExecutor.create(ExecutionMode.valueOf(args[0]));
+            PriorityLock lock = new PriorityLock();
+            AtomicLong ticks = new AtomicLong();
+            AtomicBoolean running = new AtomicBoolean(true);
+            try {
+                Future<?> heartbeat = virtualThreads.submit(() -> {
+                    while (running.get()) {
+                        sleep(1);
+                        ticks.incrementAndGet();
+                    }
+                });
+
+                long start = System.nanoTime();
+                List<Future<?>> calls = new ArrayList<>();
+                for (int i = 0; i < 32; i++) {
+                    calls.add(virtualThreads.submit(() -> {
+                        lock.lock(Priority.INTERACTIVE);
+                        try {
+                            return executor.call(() -> spin(TimeUnit.MILLISECONDS.toNanos(10)));
+                        } finally {
+                            lock.unlock();
+                        }
+                    }));
+                }
+                for (Future<?> call : calls) {
+                    call.get();
+                }
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                running.set(false);
+                heartbeat.get();
+                System.out.println(ticks.get() + " " + elapsedMillis);
+            } finally {
+                running.set(false);
+                virtualThreads.shutdown();
+                executor.shutdown();
+            }
+        }
+    }
+
+    // Virtual threads are only available from Java 21, and the tests compile for Java 11.
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static long spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        long n = 0;
+        while (System.nanoTime() < end) {
+            n++;
+        }
+        return n;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.mapzen.jpostal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class TestNativeHandle {
+    private static final String ADDRESS = "781 Franklin Ave Crown Heights Brooklyn NYC NY 11216 USA";
+
+    @Test
+    public void testLastHandleTearsDown() {
+        AddressParser.close();
+        Config config = Config.builder().build();
+
+        NativeHandle<AddressParser> first = AddressParser.acquire(config);
+        NativeHandle<AddressParser> second = AddressParser.acquire(config);
+        assertSame(first.get(), second.get());
+
+        AddressParser parser = first.get();
+        ParserOptions options = new ParserOptions.Builder().build();
+
+        first.close();
+        first.close(); // closing twice must not release the other handle's reference
+        assertTrue(first.isClosed());
+        assertThrows(IllegalStateException.class, first::get);
+        assertTrue(AddressParser.isInitialized());
+        assertEquals(8, parser.parseAddressWithOptions(ADDRESS, options).length);
+
+        second.close();
+        assertFalse(AddressParser.isInitialized());
+        assertFalse(LibPostal.isModuleLoaded(LibPostal.Module.PARSER));
+        assertThrows(IllegalStateException.class, () -> parser.parseAddressWithOptions(ADDRESS, options));
+
+        // Re-initializes after the teardown.
+        assertEquals(8, AddressParser.getInstance().parseAddress(ADDRESS).length);
+    }
+
+    @Test
+    public void testPinnedInstanceOutlivesHandles() {
+        AddressExpander pinned = AddressExpander.getInstance();
+
+        try (NativeHandle<AddressExpander> handle = AddressExpander.acquire(Config.builder().build())) {
+            assertSame(pinned, handle.get());
+        }
+
+        assertTrue(AddressExpander.isInitialized());
+        assertTrue(pinned.expandAddress("123 Main St").length > 0);
+    }
+
+    @Test
+    public void testCloseDuringConcurrentCalls() throws Exception {
+        AddressParser parser = AddressParser.getInstance();
+        ParserOptions options = new ParserOptions.Builder().build();
+        AtomicReference<Throwable> unexpected = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 200; j++) {
+                    try {
+                        parser.parseAddressWithOptions(ADDRESS, options);
+                    } catch (IllegalStateException e) {
+                        return; // closed underneath us, as expected
+                    } catch (Throwable t) {
+                        unexpected.set(t);
+                        return;
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        AddressParser.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(unexpected.get());
+        assertEquals(8, AddressParser.getInstance().parseAddress(ADDRESS).length);
+    }
+}
@@ -0,0 +1,78 @@
+package com.mapzen.jpostal;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestNativeVariants {
+    private static final Set<String> HASWELL = flags("fpu vme de pse tsc msr pae mce cx8 apic sep mtrr pge mca cmov"
+            + " pat pse36 clflush mmx fxsr sse sse2 ss ht syscall nx pdpe1gb rdtscp lm constant_tsc rep_good nopl"
+            + " xtopology cpuid pni pclmulqdq ssse3 fma cx16 pcid sse4_1 sse4_2 x2apic movbe popcnt aes xsave avx f16c"
+            + " rdrand hypervisor lahf_lm abm cpuid_fault invpcid_single pti fsgsbase bmi1 avx2 smep bmi2 erms invpcid");
+    private static final Set<String> NEHALEM = flags("fpu vme de pse tsc msr pae mce cx8 apic sep mtrr pge mca cmov"
+            + " pat pse36 clflush mmx fxsr sse sse2 ht syscall nx rdtscp lm constant_tsc pni ssse3 cx16 sse4_1 sse4_2"
+            + " popcnt lahf_lm");
+
+    @Test
+    public void testParseCpuFlags() {
+        List<String> cpuinfo = Arrays.asList(
+                "processor\t: 0",
+                "vendor_id\t: GenuineIntel",
+                "model name\t: Intel(R) Xeon(R) CPU E5-2676 v3 @ 2.40GHz",
+                "flags\t\t: fpu sse2 avx2  bmi2",
+                "",
+                "processor\t: 1",
+                "flags\t\t: fpu");
+        assertEquals(flags("fpu sse2 avx2 bmi2"), NativeVariants.parseCpuFlags(cpuinfo));
+
+        List<String> arm = Arrays.asList(
+                "processor\t: 0",
+                "BogoMIPS\t: 243.75",
+                "Features\t: fp asimd evtstrm aes pmull sha1 sha2 crc32 atomics");
+        assertTrue(NativeVariants.parseCpuFlags(arm).contains("asimd"));
+
+        assertEquals(Collections.emptySet(), NativeVariants.parseCpuFlags(Collections.singletonList("garbage")));
+    }
+
+    @Test
+    public void testDirectories() {
+        assertEquals(Arrays.asList("/linux-x64-avx2/", "/linux-x64-sse42/", "/linux-x64/"),
+                NativeVariants.directories("linux", "x64", null, HASWELL));
+        assertEquals(Arrays.asList("/linux-x64-sse42/", "/linux-x64/"),
+                NativeVariants.directories("linux", "x64", null, NEHALEM));
+        assertEquals(Collections.singletonList("/linux-x64/"),
+                NativeVariants.directories("linux", "x64", null, flags("fpu sse sse2")));
+        assertEquals(Collections.singletonList("/linux-x64/"),
+                NativeVariants.directories("linux", "x64", null, Collections.emptySet()));
+        assertEquals(Collections.singletonList("/darwin-x64/"),
+                NativeVariants.directories("darwin", "x64", null, null));
+        assertEquals(Collections.singletonList("/linux-arm64/"),
+                NativeVariants.directories("linux", "arm64", null, HASWELL));
+    }
+
+    @Test
+    public void testDirectoriesOverride() {
+        assertEquals(Collections.singletonList("/linux-x64/"),
+                NativeVariants.directories("linux", "x64", "baseline", HASWELL));
+        assertEquals(Arrays.asList("/linux-x64-sse42/", "/linux-x64/"),
+                NativeVariants.directories("linux", "x64", " SSE42", HASWELL));
+        assertEquals(Arrays.asList("/linux-x64-avx2/", "/linux-x64/"),
+                NativeVariants.directories("linux", "x64", "avx2", flags("fpu")));
+    }
+
+    @Test
+    public void testName() {
+        assertEquals("baseline", NativeVariants.name("/linux-x64/", "linux", "x64"));
+        assertEquals("avx2", NativeVariants.name("/linux-x64-avx2/", "linux", "x64"));
+    }
+
+    private static Set<String> flags(final String flags) {
+        return new HashSet<>(Arrays.asList(flags.split(" ")));
+    }
+}
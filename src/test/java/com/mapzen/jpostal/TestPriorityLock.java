@@ -0,0 +1,105 @@
+package com.mapzen.jpostal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class TestPriorityLock {
+
+    private static Thread waiter(PriorityLock lock, Priority priority, String name, List<String> order) {
+        Thread thread = new Thread(() -> {
+            lock.lock(priority);
+            try {
+                order.add(name);
+            } finally {
+                lock.unlock();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitWaiting(PriorityLock lock, Priority priority, int count) throws InterruptedException {
+        while (lock.getWaiting(priority) < count) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testInteractiveFirst() throws Exception {
+        PriorityLock lock = new PriorityLock();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        lock.lock(Priority.INTERACTIVE);
+        Thread batch = waiter(lock, Priority.BATCH, "batch", order);
+        awaitWaiting(lock, Priority.BATCH, 1);
+        Thread interactive = waiter(lock, Priority.INTERACTIVE, "interactive", order);
+        awaitWaiting(lock, Priority.INTERACTIVE, 1);
+        lock.unlock();
+
+        batch.join();
+        interactive.join();
+        assertEquals("interactive", order.get(0));
+        assertEquals("batch", order.get(1));
+    }
+
+    @Test
+    public void testBatchIsNotStarved() throws Exception {
+        PriorityLock lock = new PriorityLock();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+
+        lock.lock(Priority.INTERACTIVE);
+        threads.add(waiter(lock, Priority.BATCH, "batch", order));
+        awaitWaiting(lock, Priority.BATCH, 1);
+        int interactiveCount = PriorityLock.BATCH_WEIGHT * 2;
+        for (int i = 0; i < interactiveCount; i++) {
+            threads.add(waiter(lock, Priority.INTERACTIVE, "interactive", order));
+        }
+        awaitWaiting(lock, Priority.INTERACTIVE, interactiveCount);
+        lock.unlock();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(interactiveCount + 1, order.size());
+        assertEquals(PriorityLock.BATCH_WEIGHT, order.indexOf("batch"));
+    }
+
+    @Test
+    public void testTryLockTimesOut() throws Exception {
+        PriorityLock lock = new PriorityLock();
+        Thread holder = new Thread(() -> lock.lock(Priority.BATCH));
+        holder.start();
+        holder.join();
+
+        assertFalse(lock.tryLock(Priority.INTERACTIVE, 10, TimeUnit.MILLISECONDS));
+        assertEquals(0, lock.getWaiting(Priority.INTERACTIVE));
+
+        lock.unlock();
+        assertTrue(lock.tryLock(Priority.BATCH, 10, TimeUnit.MILLISECONDS));
+        lock.unlock();
+    }
+
+    @Test
+    public void testUnlockWithoutLock() {
+        try {
+            new PriorityLock().unlock();
+            fail("Should throw IllegalMonitorStateException");
+        } catch (IllegalMonitorStateException e) {}
+    }
+
+    @Test
+    public void testChunkSize() {
+        assertEquals(1000, PriorityLock.chunkSize(Priority.INTERACTIVE, 1000));
+        assertEquals(PriorityLock.BATCH_CHUNK_SIZE, PriorityLock.chunkSize(Priority.BATCH, 1000));
+        assertEquals(10, PriorityLock.chunkSize(Priority.BATCH, 10));
+    }
+}
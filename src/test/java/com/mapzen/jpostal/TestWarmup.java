@@ -0,0 +1,49 @@
+package com.mapzen.jpostal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class TestWarmup {
+
+    @Test
+    public void testBundledSample() {
+        List<String> sample = LibPostal.warmupSample();
+        assertTrue(sample.size() >= 50);
+        assertTrue(sample.contains("東京都中央区銀座4丁目6-16"));
+    }
+
+    @Test
+    public void testOptions() {
+        WarmupOptions defaults = WarmupOptions.builder().build();
+        assertEquals(null, defaults.getAddresses());
+        assertEquals(100, defaults.getIterations());
+
+        try {
+            WarmupOptions.builder().iterations(0);
+            throw new AssertionError("iterations must be positive");
+        } catch (IllegalArgumentException expected) {}
+        try {
+            WarmupOptions.builder().maxDuration(Duration.ZERO);
+            throw new AssertionError("maxDuration must be positive");
+        } catch (IllegalArgumentException expected) {}
+    }
+
+    @Test
+    public void testWarmUp() {
+        AddressParser.getInstance();
+        AddressExpander.getInstance();
+        WarmupReport report = LibPostal.warmUp(WarmupOptions.builder()
+                .addresses(Arrays.asList("30 W 26th St New York NY", "Friedrichstraße 43, 10117 Berlin"))
+                .iterations(3)
+                .build());
+        assertEquals(2, report.getAddresses());
+        assertEquals(3, report.getPasses());
+        assertEquals(3 * (2 * 2 + 2), report.getCalls());
+        assertTrue(report.getTotalTime().compareTo(report.getLastPass()) >= 0);
+    }
+}
@@ -0,0 +1,29 @@
+package com.mapzen.jpostal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class TestXxHash64 {
+
+    @Test
+    public void testReferenceVectors() {
+        assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(new byte[0]));
+        assertEquals(0xD24EC4F1A98C6E5BL, XxHash64.hash("a"));
+        assertEquals(0x44BC2CF5AD770999L, XxHash64.hash("abc"));
+        // Longer than one 32-byte stripe.
+        assertEquals(0xFBCEA83C8A378BF1L, XxHash64.hash("Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    public void testOffsetAndUtf8() {
+        byte[] bytes = "xxmünchenxx".getBytes(StandardCharsets.UTF_8);
+        assertEquals(XxHash64.hash("münchen"), XxHash64.hash(bytes, 2, bytes.length - 4, XxHash64.DEFAULT_SEED));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        XxHash64.hash(new byte[4], 2, 3, XxHash64.DEFAULT_SEED);
+    }
+}
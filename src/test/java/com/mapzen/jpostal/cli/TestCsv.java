@@ -0,0 +1,32 @@
+package com.mapzen.jpostal.cli;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TestCsv {
+    @Test
+    public void testSplit() {
+        assertEquals(Arrays.asList("1", "781 Franklin Ave, Brooklyn", "say \"hi\"", ""),
+                Csv.split("1,\"781 Franklin Ave, Brooklyn\",\"say \"\"hi\"\"\",", ','));
+        assertEquals(Arrays.asList("a,b", "c"), Csv.split("a,b\tc", '\t'));
+    }
+
+    @Test
+    public void testUnterminatedQuote() {
+        assertThrows(IllegalArgumentException.class, () -> Csv.split("\"open,field", ','));
+    }
+
+    @Test
+    public void testWriteFieldRoundTrips() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Csv.writeField(sb, "plain", ',');
+        sb.append(',');
+        Csv.writeField(sb, "with, \"quotes\"", ',');
+        assertEquals("plain,\"with, \"\"quotes\"\"\"", sb.toString());
+        assertEquals(Arrays.asList("plain", "with, \"quotes\""), Csv.split(sb.toString(), ','));
+    }
+}
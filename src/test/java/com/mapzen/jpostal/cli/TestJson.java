@@ -0,0 +1,43 @@
+package com.mapzen.jpostal.cli;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestJson {
+    @Test
+    public void testParse() {
+        Object parsed = Json.parse(" {\"address\": \"781 Franklin \\\"Ave\\\"\\n\\u00e9\", \"n\": -1.5e2, \"ok\": true,"
+                + " \"none\": null, \"list\": [1, \"two\", []], \"nested\": {}} ");
+
+        Map<?, ?> object = (Map<?, ?>) parsed;
+        assertEquals("781 Franklin \"Ave\"\né", object.get("address"));
+        assertEquals(-150.0, object.get("n"));
+        assertEquals(Boolean.TRUE, object.get("ok"));
+        assertTrue(object.containsKey("none"));
+        assertNull(object.get("none"));
+        assertEquals(Arrays.asList(1.0, "two", Arrays.asList()), object.get("list"));
+    }
+
+    @Test
+    public void testParseInvalid() {
+        for (String invalid : new String[] {"", "{", "{\"a\" 1}", "[1,]", "\"unterminated", "{} x", "tru"}) {
+            try {
+                Json.parse(invalid);
+                fail("Should reject " + invalid);
+            } catch (IllegalArgumentException e) {}
+        }
+    }
+
+    @Test
+    public void testWriteStringRoundTrips() throws IOException {
+        String value = "tab\tquote\"back\\slash\u0001 😀";
+        StringBuilder sb = new StringBuilder();
+        Json.writeString(sb, value);
+        assertEquals(value, Json.parse(sb.toString()));
+    }
+}
@@ -0,0 +1,97 @@
+package com.mapzen.jpostal.cli;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestMain {
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("jpostal-cli");
+        dir.toFile().deleteOnExit();
+    }
+
+    private final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+    private int run(String... args) {
+        return Main.run(args, System.out, new PrintStream(stderr, true));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testParseCsvToNdjson() throws IOException {
+        Path input = write("in.csv", "id,address\n"
+                + "1,\"781 Franklin Ave Crown Heights Brooklyn NYC NY 11216 USA\"\n"
+                + "\n"
+                + "2,Rue du Médecin-Colonel Calbairac Toulouse France\n"
+                + "3\n");
+        Path output = dir.resolve("out.ndjson");
+
+        assertEquals(0, run("parse", "--batch-size", "1", input.toString(), output.toString()));
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        Map<?, ?> first = (Map<?, ?>) Json.parse(lines.get(0));
+        assertEquals("781 Franklin Ave Crown Heights Brooklyn NYC NY 11216 USA", first.get("address"));
+        assertEquals("781", first.get("house_number"));
+        assertEquals("11216", first.get("postcode"));
+        assertEquals("toulouse", ((Map<?, ?>) Json.parse(lines.get(1))).get("city"));
+        assertTrue(stderr.toString().contains("Parsed 2 rows"));
+        assertTrue(stderr.toString().contains("1 skipped"));
+    }
+
+    @Test
+    public void testParseNdjsonToCsvWithLabels() throws IOException {
+        Path input = write("in.ndjson", "{\"addr\": \"781 Franklin Ave Crown Heights Brooklyn NYC NY 11216 USA\"}\n");
+        Path output = dir.resolve("out.csv");
+
+        assertEquals(0, run("parse", "--column", "addr", "--labels", "postcode,city", input.toString(),
+                output.toString()));
+
+        assertEquals(List.of("address,postcode,city", "781 Franklin Ave Crown Heights Brooklyn NYC NY 11216 USA,11216,nyc"),
+                Files.readAllLines(output, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExpandTsv() throws IOException {
+        Path input = write("in.tsv", "123 Main St\n");
+        Path output = dir.resolve("out.ndjson");
+
+        assertEquals(0, run("expand", "--column-index", "0", input.toString(), output.toString()));
+
+        Map<?, ?> row = (Map<?, ?>) Json.parse(Files.readAllLines(output, StandardCharsets.UTF_8).get(0));
+        assertTrue(((List<?>) row.get("expansions")).contains("123 main street"));
+    }
+
+    @Test
+    public void testUsage() {
+        assertEquals(2, run("parse", "only-input.csv"));
+        assertEquals(2, run("format", "in.csv", "out.csv"));
+        assertEquals(2, run("expand", "--labels", "city", "in.csv", "out.csv"));
+        assertTrue(stderr.toString().contains("Usage: jpostal"));
+    }
+
+    @Test
+    public void testMissingColumn() throws IOException {
+        Path input = write("in.csv", "id,street\n1,Main St\n");
+        assertEquals(1, run("parse", input.toString(), dir.resolve("out.csv").toString()));
+        assertTrue(stderr.toString().contains("Column address not found"));
+    }
+}
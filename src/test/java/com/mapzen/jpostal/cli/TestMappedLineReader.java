@@ -0,0 +1,59 @@
+package com.mapzen.jpostal.cli;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestMappedLineReader {
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("jpostal-cli");
+        dir.toFile().deleteOnExit();
+    }
+
+    private List<String> readAll(String content, int windowBytes) throws IOException {
+        Path file = Files.createTempFile(dir, "lines", ".txt");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        List<String> lines = new ArrayList<>();
+        try (MappedLineReader reader = new MappedLineReader(file, windowBytes)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            assertEquals(reader.getSize(), reader.getPosition());
+        }
+        return lines;
+    }
+
+    @Test
+    public void testLinesAcrossWindows() throws IOException {
+        List<String> expected = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            String line = i + " Rue du Médecin-Colonel Calbairac " + "x".repeat(i % 13);
+            expected.add(line);
+            content.append(line).append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+
+        for (int windowBytes : new int[] {3, 7, 64, 1 << 20}) {
+            assertEquals(expected, readAll(content.toString(), windowBytes));
+        }
+    }
+
+    @Test
+    public void testTerminatorsAndBom() throws IOException {
+        assertEquals(List.of("a", "", "b"), readAll("\uFEFFa\n\nb", 4));
+        assertEquals(List.of("a"), readAll("a\n", 4));
+        assertEquals(List.of(), readAll("", 4));
+    }
+}
@@ -0,0 +1,116 @@
+package com.mapzen.jpostal.cli;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestMicroBatcher {
+    private static String[] upperCase(List<String> batch) {
+        return batch.stream().map(String::toUpperCase).toArray(String[]::new);
+    }
+
+    @Test
+    public void testCoalescesWhileBusy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> sizes = new CopyOnWriteArrayList<>();
+        MicroBatcher<String> batcher = new MicroBatcher<>("test-batcher", batch -> {
+            sizes.add(batch.size());
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return upperCase(batch);
+        }, 64, 0, 1000);
+
+        // The first request occupies the dispatcher; the rest queue up behind it and go out as one batch.
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        results.add(batcher.submit("a"));
+        while (sizes.isEmpty()) {
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < 10; i++) {
+            results.add(batcher.submit("b" + i));
+        }
+        release.countDown();
+
+        assertEquals("A", results.get(0).get(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            assertEquals("B" + i, results.get(i + 1).get(5, TimeUnit.SECONDS));
+        }
+        batcher.close();
+
+        assertEquals(11, batcher.getRequests());
+        assertEquals(2, batcher.getBatches());
+        assertEquals(List.of(1, 10), sizes);
+    }
+
+    @Test
+    public void testWaitsForMaxDelay() throws Exception {
+        MicroBatcher<String> batcher = new MicroBatcher<>("test-batcher", TestMicroBatcher::upperCase, 2,
+                TimeUnit.SECONDS.toNanos(10), 1000);
+        CompletableFuture<String> first = batcher.submit("a");
+        Thread.sleep(50);
+        assertFalse(first.isDone());
+
+        // Filling the batch dispatches it without waiting for the delay.
+        CompletableFuture<String> second = batcher.submit("b");
+        assertEquals("A", first.get(5, TimeUnit.SECONDS));
+        assertEquals("B", second.get(5, TimeUnit.SECONDS));
+        batcher.close();
+        assertEquals(1, batcher.getBatches());
+    }
+
+    @Test
+    public void testRejectsWhenFullOrClosed() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        MicroBatcher<String> batcher = new MicroBatcher<>("test-batcher", batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return upperCase(batch);
+        }, 1, 0, 1);
+
+        CompletableFuture<String> running = batcher.submit("a");
+        while (batcher.submit("b").isCompletedExceptionally()) {
+            Thread.sleep(1); // "a" has not been taken yet
+        }
+        CompletableFuture<String> rejected = batcher.submit("c");
+        try {
+            rejected.get();
+            fail("Should reject when the queue is full");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        release.countDown();
+        assertEquals("A", running.get(5, TimeUnit.SECONDS));
+        batcher.close();
+        assertTrue(batcher.submit("d").isCompletedExceptionally());
+    }
+
+    @Test
+    public void testFailsBatchOnError() throws Exception {
+        MicroBatcher<String> batcher = new MicroBatcher<>("test-batcher", batch -> {
+            throw new IllegalArgumentException("boom");
+        }, 10, 0, 10);
+        try {
+            batcher.submit("a").get(5, TimeUnit.SECONDS);
+            fail("Should fail with the batch error");
+        } catch (ExecutionException e) {
+            assertEquals("boom", e.getCause().getMessage());
+        }
+        batcher.close();
+    }
+}
@@ -0,0 +1,138 @@
+package com.mapzen.jpostal.cli;
+
+import com.mapzen.jpostal.AddressExpander;
+import com.mapzen.jpostal.AddressParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestServer {
+    private Server server;
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        server = Server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), AddressParser.getInstance(),
+                AddressExpander.getInstance(), 8, 64, TimeUnit.MILLISECONDS.toNanos(1), 1000);
+        baseUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    private static final class Response {
+        final int status;
+        final Object body;
+
+        Response(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private Response request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            in.transferTo(bytes);
+            return new Response(status, Json.parse(new String(bytes.toByteArray(), StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static String label(Object result, String label) {
+        for (Object component : (List<?>) ((Map<?, ?>) result).get("components")) {
+            if (label.equals(((Map<?, ?>) component).get("label"))) {
+                return (String) ((Map<?, ?>) component).get("value");
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        String address = "781 Franklin Ave Crown Heights Brooklyn NYC NY 11216 USA";
+        Response get = request("GET", "/parse?address=" + URLEncoder.encode(address, StandardCharsets.UTF_8), null);
+        assertEquals(200, get.status);
+        assertEquals("11216", label(get.body, "postcode"));
+
+        Response post = request("POST", "/parse", "{\"address\": \"" + address + "\"}");
+        assertEquals(200, post.status);
+        assertEquals(get.body, post.body);
+    }
+
+    @Test
+    public void testBatchRequests() throws IOException {
+        Response parsed = request("POST", "/parse",
+                "{\"addresses\": [\"781 Franklin Ave Brooklyn NY 11216\", \"Rue du Médecin-Colonel Calbairac Toulouse France\"]}");
+        assertEquals(200, parsed.status);
+        List<?> results = (List<?>) ((Map<?, ?>) parsed.body).get("results");
+        assertEquals(2, results.size());
+        assertEquals("toulouse", label(results.get(1), "city"));
+
+        Response expanded = request("POST", "/expand", "{\"addresses\": [\"123 Main St\"]}");
+        assertEquals(200, expanded.status);
+        Map<?, ?> result = (Map<?, ?>) ((List<?>) ((Map<?, ?>) expanded.body).get("results")).get(0);
+        assertTrue(((List<?>) result.get("expansions")).contains("123 main street"));
+    }
+
+    @Test
+    public void testConcurrentRequestsAreCoalesced() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Response>> responses = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String address = (100 + i) + " Main St Brooklyn NY";
+                responses.add(clients.submit(() -> request("POST", "/parse", "{\"address\": \"" + address + "\"}")));
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                Response response = responses.get(i).get();
+                assertEquals(200, response.status);
+                assertEquals(String.valueOf(100 + i), label(response.body, "house_number"));
+            }
+        } finally {
+            clients.shutdown();
+        }
+
+        Map<?, ?> health = (Map<?, ?>) request("GET", "/health", null).body;
+        assertEquals(200.0, health.get("requests"));
+        assertTrue((Double) health.get("batches") < 200.0);
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        assertEquals(400, request("POST", "/parse", "{not json").status);
+        assertEquals(400, request("POST", "/parse", "{\"address\": 5}").status);
+        assertEquals(400, request("GET", "/expand", null).status);
+        assertEquals(405, request("DELETE", "/parse", null).status);
+    }
+}